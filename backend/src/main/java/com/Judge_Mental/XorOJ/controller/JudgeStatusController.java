@@ -0,0 +1,26 @@
+package com.Judge_Mental.XorOJ.controller;
+
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import com.Judge_Mental.XorOJ.service.JudgeDispatcher;
+import com.Judge_Mental.XorOJ.service.JudgeDispatcher.PipelineStats;
+
+@RestController
+@RequestMapping("/api/judge")
+public class JudgeStatusController {
+
+    private final JudgeDispatcher judgeDispatcher;
+
+    public JudgeStatusController(JudgeDispatcher judgeDispatcher) {
+        this.judgeDispatcher = judgeDispatcher;
+    }
+
+    // Compile and execute stage queue depths, pool sizes and the current sandbox launch limit
+    @GetMapping("/queue")
+    public ResponseEntity<PipelineStats> queue() {
+        return ResponseEntity.ok(judgeDispatcher.stats());
+    }
+}
@@ -23,6 +23,7 @@ import com.Judge_Mental.XorOJ.entity.GeneratorFile;
 import com.Judge_Mental.XorOJ.entity.TestFile;
 import com.Judge_Mental.XorOJ.entity.XUser;
 import com.Judge_Mental.XorOJ.service.GeneratorService;
+import com.Judge_Mental.XorOJ.service.ProblemBuildService;
 import com.Judge_Mental.XorOJ.service.ProblemService;
 import com.Judge_Mental.XorOJ.service.TestFileService;
 
@@ -38,10 +39,13 @@ public class ProblemEditorController {
     
     @Autowired
     private TestFileService testFileService;
+
+    @Autowired
+    private ProblemBuildService problemBuildService;
    
 
 
-    public record GeneralInfoDTO(String inputFileType, String outputFileType, int timeLimit, int memoryLimit, Long contestId, Integer difficultyRating, List<String> tags) {}
+    public record GeneralInfoDTO(String inputFileType, String outputFileType, int timeLimit, int memoryLimit, Integer outputLimit, Long contestId, Integer difficultyRating, List<String> tags) {}
 
     @PostMapping("/generalinfo")
     public ResponseEntity<Boolean> editProblem(
@@ -50,7 +54,7 @@ public class ProblemEditorController {
         @AuthenticationPrincipal(expression = "user") XUser user) {
 
         System.out.println("Editing general info for problem ID: " + problemId);
-        return problemService.updateProblem(problemId, user.getId(), generalInfo.inputFileType, generalInfo.outputFileType, generalInfo.timeLimit, generalInfo.memoryLimit, generalInfo.difficultyRating, generalInfo.tags) ? ResponseEntity.ok(true) : ResponseEntity.status(403).body(false);
+        return problemService.updateProblem(problemId, user.getId(), generalInfo.inputFileType, generalInfo.outputFileType, generalInfo.timeLimit, generalInfo.memoryLimit, generalInfo.outputLimit, generalInfo.difficultyRating, generalInfo.tags) ? ResponseEntity.ok(true) : ResponseEntity.status(403).body(false);
     }
 
 
@@ -79,7 +83,7 @@ public class ProblemEditorController {
         
         List<GeneratorFile> generatorFiles = generatorService.getGeneratorFiles(problemId);
         List<GeneratorFileDTO> dtoList = generatorFiles.stream()
-                .map(gf -> new GeneratorFileDTO(gf.getGeneratorId(), gf.getFileName()))
+                .map(gf -> new GeneratorFileDTO(gf.getGeneratorId(), gf.getFileName(), gf.isPretest(), gf.seedList()))
                 .collect(Collectors.toList());
         
         return ResponseEntity.ok(dtoList);
@@ -90,13 +94,15 @@ public class ProblemEditorController {
             @PathVariable Long problemId,
             @RequestParam("id") int generatorId,
             @RequestParam("file") MultipartFile file,
+            @RequestParam(value = "pretest", defaultValue = "false") boolean pretest,
             @AuthenticationPrincipal(expression = "user") XUser user) {
         
         
         try {
-            GeneratorFile generatorFile = generatorService.createGeneratorFile(problemId, user.getId(), generatorId, file);
+            GeneratorFile generatorFile = generatorService.createGeneratorFile(problemId, user.getId(), generatorId, file, pretest);
             System.out.println("2nd");
-            GeneratorFileDTO dto = new GeneratorFileDTO(generatorFile.getGeneratorId(), generatorFile.getFileName());
+            GeneratorFileDTO dto = new GeneratorFileDTO(generatorFile.getGeneratorId(), generatorFile.getFileName(), generatorFile.isPretest(),
+                    generatorFile.seedList());
             System.out.println("3nd");
             return ResponseEntity.ok(dto != null);
         } catch (IOException e) {
@@ -118,6 +124,29 @@ public class ProblemEditorController {
         return success ? ResponseEntity.ok(true) : ResponseEntity.badRequest().body(false);
     }
     
+    @PostMapping("/generator/{generatorId}/pretest")
+    public ResponseEntity<Boolean> setGeneratorPretest(
+            @PathVariable Long problemId,
+            @PathVariable int generatorId,
+            @RequestParam("value") boolean pretest,
+            @AuthenticationPrincipal(expression = "user") XUser user) {
+
+        boolean success = generatorService.setPretest(problemId, user.getId(), generatorId, pretest);
+        return success ? ResponseEntity.ok(true) : ResponseEntity.badRequest().body(false);
+    }
+
+    // One test per entry; each entry is the generator's argument line (e.g. a seed)
+    @PostMapping("/generator/{generatorId}/seeds")
+    public ResponseEntity<Boolean> setGeneratorSeeds(
+            @PathVariable Long problemId,
+            @PathVariable int generatorId,
+            @RequestBody List<String> seeds,
+            @AuthenticationPrincipal(expression = "user") XUser user) {
+
+        boolean success = generatorService.setSeeds(problemId, user.getId(), generatorId, seeds);
+        return success ? ResponseEntity.ok(true) : ResponseEntity.badRequest().body(false);
+    }
+    
     // Test file endpoints
     @GetMapping("/testfile")
     public ResponseEntity<List<TestFileDTO>> getTestFiles(
@@ -130,7 +159,7 @@ public class ProblemEditorController {
         
         List<TestFile> testFiles = testFileService.getTestFiles(problemId);
         List<TestFileDTO> dtoList = testFiles.stream()
-                .map(tf -> new TestFileDTO(tf.getTestId(), tf.getFileName()))
+                .map(tf -> new TestFileDTO(tf.getTestId(), tf.getFileName(), tf.isPretest()))
                 .collect(Collectors.toList());
         
         return ResponseEntity.ok(dtoList);
@@ -141,11 +170,12 @@ public class ProblemEditorController {
             @PathVariable Long problemId,
             @RequestParam("id") int testId,
             @RequestParam("file") MultipartFile file,
+            @RequestParam(value = "pretest", defaultValue = "false") boolean pretest,
             @AuthenticationPrincipal(expression = "user") XUser user) {
         
         try {
-            TestFile testFile = testFileService.createTestFile(problemId, user.getId(), testId, file);
-            TestFileDTO dto = new TestFileDTO(testFile.getTestId(), testFile.getFileName());
+            TestFile testFile = testFileService.createTestFile(problemId, user.getId(), testId, file, pretest);
+            TestFileDTO dto = new TestFileDTO(testFile.getTestId(), testFile.getFileName(), testFile.isPretest());
             return ResponseEntity.ok(dto != null);
         } catch (IOException e) {
             return ResponseEntity.status(500).body(null);
@@ -166,6 +196,17 @@ public class ProblemEditorController {
         return success ? ResponseEntity.ok(true) : ResponseEntity.badRequest().body(false);
     }
 
+    @PostMapping("/testfile/{testId}/pretest")
+    public ResponseEntity<Boolean> setTestPretest(
+            @PathVariable Long problemId,
+            @PathVariable int testId,
+            @RequestParam("value") boolean pretest,
+            @AuthenticationPrincipal(expression = "user") XUser user) {
+
+        boolean success = testFileService.setPretest(problemId, user.getId(), testId, pretest);
+        return success ? ResponseEntity.ok(true) : ResponseEntity.badRequest().body(false);
+    }
+
     @PostMapping("/solution")
     public ResponseEntity<Boolean> createMainSolutionFile(
             @PathVariable Long problemId,
@@ -181,4 +222,35 @@ public class ProblemEditorController {
             return ResponseEntity.badRequest().body(null);
         }
     }
-}
\ No newline at end of file
+
+    // Upload a C++ checker, or pick a built-in one (tokens, exact, float:<eps>, float-abs:<eps>, float-rel:<eps>)
+    @PostMapping("/checker")
+    public ResponseEntity<Boolean> updateChecker(
+            @PathVariable Long problemId,
+            @RequestParam(value = "file", required = false) MultipartFile file,
+            @RequestParam(value = "builtin", required = false) String builtin,
+            @AuthenticationPrincipal(expression = "user") XUser user) {
+
+        try {
+            boolean success = problemService.updateChecker(user.getId(), problemId, file, builtin);
+            return success ? ResponseEntity.ok(true) : ResponseEntity.badRequest().body(false);
+        } catch (IOException e) {
+            return ResponseEntity.status(500).body(null);
+        } catch (RuntimeException e) {
+            return ResponseEntity.badRequest().body(null);
+        }
+    }
+
+    // Precompute generated inputs and expected answers (also triggered automatically on edits)
+    @PostMapping("/build")
+    public ResponseEntity<Boolean> buildProblem(
+            @PathVariable Long problemId,
+            @AuthenticationPrincipal(expression = "user") XUser user) {
+
+        if (!problemService.authorHaveAccess(user.getId(), problemId)) {
+            return ResponseEntity.status(403).body(false);
+        }
+        problemBuildService.rebuildAsync(problemId);
+        return ResponseEntity.ok(true);
+    }
+}
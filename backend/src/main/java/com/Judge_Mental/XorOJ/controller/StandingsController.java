@@ -1,11 +1,15 @@
 package com.Judge_Mental.XorOJ.controller;
 
 import com.Judge_Mental.XorOJ.dto.StandingRow;
-import com.Judge_Mental.XorOJ.dto.StandingsDTO;
+import com.Judge_Mental.XorOJ.live.StandingsBroadcaster;
 import com.Judge_Mental.XorOJ.service.ScoreboardService;
+import com.Judge_Mental.XorOJ.service.ScoreboardService.EncodedStandings;
 import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 import java.util.List;
 
@@ -14,26 +18,50 @@ import java.util.List;
 public class StandingsController {
 
     private final ScoreboardService scoreboard;
+    private final StandingsBroadcaster broadcaster;
 
-    public StandingsController(ScoreboardService scoreboard) {
+    public StandingsController(ScoreboardService scoreboard, StandingsBroadcaster broadcaster) {
         this.scoreboard = scoreboard;
+        this.broadcaster = broadcaster;
     }
 
+    // Pre-serialized bytes per board version; gzip is negotiated here, once per version, not per response
     @GetMapping
-    public ResponseEntity<StandingsDTO> snapshot(
+    public ResponseEntity<byte[]> snapshot(
             @PathVariable Long contestId,
-            @RequestHeader(value = "If-None-Match", required = false) String inm) {
+            @RequestHeader(value = "If-None-Match", required = false) String inm,
+            @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding) {
 
-        StandingsDTO dto = scoreboard.getSnapshot(contestId);
-        String etag = "\"" + dto.version() + "\"";
+        EncodedStandings board = scoreboard.getEncodedSnapshot(contestId);
+        boolean gzip = acceptsGzip(acceptEncoding);
+        String etag = "\"" + board.version() + "\"";
+        String gzipEtag = "\"" + board.version() + "-gzip\"";
 
-        if (etag.equals(inm)) {
-            return ResponseEntity.status(304).eTag(etag).build();
+        if (etag.equals(inm) || gzipEtag.equals(inm)) {
+            return ResponseEntity.status(304).eTag(gzip ? gzipEtag : etag).build();
         }
-        return ResponseEntity.ok()
-                .eTag(etag)
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok()
+                .eTag(gzip ? gzipEtag : etag)
                 .cacheControl(CacheControl.noStore())
-                .body(dto);
+                .contentType(MediaType.APPLICATION_JSON)
+                .varyBy(HttpHeaders.ACCEPT_ENCODING);
+        if (gzip) response.header(HttpHeaders.CONTENT_ENCODING, "gzip");
+        return response.body(gzip ? board.gzip() : board.json());
+    }
+
+    // Live board: SNAPSHOT on connect, then versioned ROW_UPDATE deltas; Last-Event-ID resumes
+    @GetMapping(path = "/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter stream(
+            @PathVariable Long contestId,
+            @RequestHeader(value = "Last-Event-ID", required = false) String lastEventId) {
+        return broadcaster.register(contestId, lastEventId, () -> scoreboard.getSnapshot(contestId));
+    }
+
+    // A single user's place without downloading the board
+    @GetMapping("/users/{userId}/rank")
+    public ResponseEntity<Integer> rank(@PathVariable Long contestId, @PathVariable Long userId) {
+        int rank = scoreboard.getRank(contestId, userId);
+        return rank > 0 ? ResponseEntity.ok(rank) : ResponseEntity.notFound().build();
     }
 
     // Call this from your verdict pipeline when one user's row changed
@@ -49,4 +77,24 @@ public class StandingsController {
     public void finalizeNow(@PathVariable Long contestId) {
         scoreboard.finalizeIfEnded(contestId);
     }
+
+    private static boolean acceptsGzip(String acceptEncoding) {
+        if (acceptEncoding == null) return false;
+        for (String part : acceptEncoding.split(",")) {
+            String[] tokens = part.trim().split(";");
+            if (!tokens[0].trim().equalsIgnoreCase("gzip")) continue;
+            for (int i = 1; i < tokens.length; i++) {
+                String param = tokens[i].trim();
+                if (param.startsWith("q=")) {
+                    try {
+                        return Double.parseDouble(param.substring(2)) > 0;
+                    } catch (NumberFormatException e) {
+                        return false;
+                    }
+                }
+            }
+            return true;
+        }
+        return false;
+    }
 }
@@ -1,11 +1,11 @@
 package com.Judge_Mental.XorOJ.controller;
 
 import java.io.IOException;
-import java.time.LocalDateTime;
 import java.util.List;
 import java.util.stream.Collectors;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
@@ -20,9 +20,7 @@ import com.Judge_Mental.XorOJ.entity.Submission;
 import com.Judge_Mental.XorOJ.entity.XUser;
 import com.Judge_Mental.XorOJ.entity.Submission.SubmissionStatus;
 import com.Judge_Mental.XorOJ.judge.CppExecutor.RunResult;
-import com.Judge_Mental.XorOJ.service.ContestService;
-import com.Judge_Mental.XorOJ.service.JudgingService;
-import com.Judge_Mental.XorOJ.service.ScoreboardService;
+import com.Judge_Mental.XorOJ.service.JudgeDispatcher;
 import com.Judge_Mental.XorOJ.service.SubmissionService;
 
 @RestController
@@ -33,13 +31,7 @@ public class SubmissionController {
     private SubmissionService submissionService;
 
     @Autowired
-    private JudgingService judgingService;
-
-    @Autowired
-    private ScoreboardService scoreboardService;
-
-    @Autowired
-    private ContestService contestService;
+    private JudgeDispatcher judgeDispatcher;
 
     @GetMapping("/contests/{id}/my")
     public List<SubmissionResponseDTO> getSubmissionsForContest(
@@ -64,12 +56,14 @@ public class SubmissionController {
     }
 
     public record submissionRequestDTO(String code, String language) {}
+    public record submitResponse(Long submissionId, SubmissionStatus status) {}
+
     @PostMapping("/contests/{contestId}/problems/{problemId}/submit")
-    public SubmissionStatus submitSolution(
+    public submitResponse submitSolution(
         @PathVariable Long contestId,
         @PathVariable Long problemId,
         @AuthenticationPrincipal(expression = "user") XUser user,
-        @RequestBody submissionRequestDTO submission) throws IOException, InterruptedException {
+        @RequestBody submissionRequestDTO submission) throws IOException {
 
         Submission savedSubmission = submissionService.createSubmissionFromString(
             submission.code(),
@@ -78,30 +72,16 @@ public class SubmissionController {
             user.getId(),
             submission.language()
         );
-        savedSubmission = judgingService.judgeSubmission(savedSubmission);
-        // System.out.println("Judged submission with status: " + savedSubmission.getStatus());
-        if (contestId > 0) {
-            LocalDateTime endTime = contestService.getContestEndTime(contestId);
-            if (endTime != null && endTime.isAfter(savedSubmission.getSubmissionTime())) {
-                scoreboardService.updateStandingsForSubmission(
-                    contestId,
-                    problemId,
-                    user.getId(),
-                    user.getUsername(),
-                    savedSubmission.getStatus() == SubmissionStatus.ACCEPTED,
-                    savedSubmission.getSubmissionTime()
-                );
-            }
-        }
-        
-        return savedSubmission.getStatus();
+        // Judged asynchronously (or answered from the verdict cache); the scoreboard follows the verdict
+        savedSubmission = judgeDispatcher.submit(savedSubmission);
+        return new submitResponse(savedSubmission.getId(), savedSubmission.getStatus());
     }
 
     @PostMapping("/problems/{problemId}/submit")
-    public SubmissionStatus submitSolution(
+    public submitResponse submitSolution(
         @PathVariable Long problemId,
         @AuthenticationPrincipal(expression = "user") XUser user,
-        @RequestBody submissionRequestDTO submission) throws IOException, InterruptedException {
+        @RequestBody submissionRequestDTO submission) throws IOException {
 
         Submission savedSubmission = submissionService.createSubmissionFromString(
             submission.code(),
@@ -110,27 +90,39 @@ public class SubmissionController {
             user.getId(),
             submission.language()
         );
-        savedSubmission = judgingService.judgeSubmission(savedSubmission);
-        System.out.println("Judged submission with status: " + savedSubmission.getStatus());
-        return savedSubmission.getStatus();
+        savedSubmission = judgeDispatcher.submit(savedSubmission);
+        return new submitResponse(savedSubmission.getId(), savedSubmission.getStatus());
+    }
+
+    // Poll for the verdict of a queued submission
+    @GetMapping("/{submissionId}")
+    public ResponseEntity<SubmissionResponseDTO> getSubmission(@PathVariable Long submissionId) {
+        Submission submission = submissionService.findById(submissionId);
+        if (submission == null) {
+            return ResponseEntity.notFound().build();
+        }
+        return ResponseEntity.ok(SubmissionResponseDTO.fromSubmission(submission));
     }
 
     public record runRequest(String code, String language, String stdin) {}
     @PostMapping("/test")
     public RunResult submitSolution(
+        @AuthenticationPrincipal(expression = "user") XUser user,
         @RequestBody runRequest request) throws IOException, InterruptedException {
-        return judgingService.runCodeWithTest(request.code(), request.stdin());
+        // Custom runs share the judge queue at their own priority
+        return judgeDispatcher.runCustom(user.getId(), request.code(), request.stdin());
     }
     
     @PostMapping(value = "/testfile", consumes = "multipart/form-data")
     public RunResult submitSolution(
             @RequestPart("code") String codeFile,
-            @RequestPart("input") String inputFile
+            @RequestPart("input") String inputFile,
+            @AuthenticationPrincipal(expression = "user") XUser user
     ) throws IOException, InterruptedException {
 
         String code  = new String(codeFile.getBytes());
         String input = new String(inputFile.getBytes());
 
-        return judgingService.runCodeWithTest(code, input);
+        return judgeDispatcher.runCustom(user.getId(), code, input);
     }
 }
@@ -1,4 +1,6 @@
 package com.Judge_Mental.XorOJ.dto;
 
-public record GeneratorFileDTO(int id, String fileName) {
+import java.util.List;
+
+public record GeneratorFileDTO(int id, String fileName, boolean pretest, List<String> seeds) {
 }
@@ -3,6 +3,7 @@ package com.Judge_Mental.XorOJ.dto;
 import java.time.LocalDateTime;
 
 import com.Judge_Mental.XorOJ.entity.Submission;
+import com.Judge_Mental.XorOJ.entity.Submission.JudgeScope;
 import com.Judge_Mental.XorOJ.entity.Submission.SubmissionStatus;
 
 import lombok.Data;
@@ -16,7 +17,10 @@ public class SubmissionResponseDTO {
     private LocalDateTime submissionTime;
     private SubmissionStatus status;
     private Long executionTime;
+    private Long wallTime;
     private Long memoryUsed;
+    private Integer tleReruns; // set when a borderline TLE was rerun before the verdict became final
+    private JudgeScope judgeScope; // PRETESTS = provisional until system testing
     
     public SubmissionResponseDTO() {
     }
@@ -45,7 +49,10 @@ public class SubmissionResponseDTO {
         dto.setSubmissionTime(submission.getSubmissionTime());
         dto.setStatus(submission.getStatus());
         dto.setExecutionTime(submission.getExecutionTime());
+        dto.setWallTime(submission.getWallTime());
         dto.setMemoryUsed(submission.getMemoryUsed());
+        dto.setTleReruns(submission.getTleReruns());
+        dto.setJudgeScope(submission.getJudgeScope());
         return dto;
     }
 }
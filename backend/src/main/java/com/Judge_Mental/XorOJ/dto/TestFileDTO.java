@@ -1,4 +1,4 @@
 package com.Judge_Mental.XorOJ.dto;
 
-public record TestFileDTO(int id, String fileName) {
+public record TestFileDTO(int id, String fileName, boolean pretest) {
 }
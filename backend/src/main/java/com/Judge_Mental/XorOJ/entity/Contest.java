@@ -49,6 +49,10 @@ public class Contest {
 
     private int duration; // in minutes
 
+    // Progress of re-judging pretest-passed submissions on the full test set after the end
+    @Enumerated(EnumType.STRING)
+    private SystemTestStatus systemTestStatus = SystemTestStatus.PENDING;
+
     /**
      * This field is kept for backward compatibility with the database
      * but should not be used directly. Use getStatus() instead which
@@ -81,6 +85,12 @@ public class Contest {
         RUNNING,
         ENDED
     }
+
+    public enum SystemTestStatus {
+        PENDING,
+        RUNNING,
+        DONE
+    }
     
     @AssertTrue(message = "End time must be after start time")
     public boolean isEndTimeAfterStartTime() {
@@ -10,6 +10,7 @@ import org.hibernate.annotations.OnDelete;
 import org.hibernate.annotations.OnDeleteAction;
 import com.Judge_Mental.XorOJ.entity.listener.GeneratorFileEntityListener;
 import java.io.Serializable;
+import java.util.List;
 
 @Entity
 @Table(name = "generator_files")
@@ -27,6 +28,14 @@ public class GeneratorFile {
     
     @Column(nullable = false)
     private String filePath;
+
+    // Pretests are the only tests run while the problem's contest is live
+    @Column(nullable = false, columnDefinition = "boolean default false")
+    private boolean pretest;
+
+    // One test per line: the generator's arguments (typically a seed); empty = one run without arguments
+    @Column(columnDefinition = "text")
+    private String seeds;
     
     @ManyToOne
     @MapsId("problemId")
@@ -40,6 +49,12 @@ public class GeneratorFile {
         return this.id.getGeneratorId();
     }
     
+    // Argument lines of this generator, one test each
+    public List<String> seedList() {
+        if (seeds == null || seeds.isBlank()) return List.of("");
+        return seeds.lines().map(String::trim).filter(l -> !l.isEmpty()).toList();
+    }
+    
     // Constructor to make it easier to create a GeneratorFile
     public GeneratorFile(int generatorId, String fileName, String filePath, Problem problem) {
         this.id = new GeneratorFileId(problem.getId(), generatorId);
@@ -16,6 +16,8 @@ import java.util.List;
 @NoArgsConstructor
 @AllArgsConstructor
 public class Problem {
+
+    public static final int DEFAULT_OUTPUT_LIMIT_MB = 64;
     
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
@@ -60,6 +62,10 @@ public class Problem {
     @Column(nullable = false, columnDefinition = "integer default 512")
     private int memoryLimit;
 
+    // Hibernate inserts the Java value, so the column default alone never applies to new problems
+    @Column(nullable = false, columnDefinition = "integer default 64")
+    private int outputLimit = DEFAULT_OUTPUT_LIMIT_MB; // MB of stdout before OUTPUT_LIMIT_EXCEEDED
+
     private String status = "public";
 
     @ElementCollection
@@ -72,6 +78,10 @@ public class Problem {
     String mainSolutionPath;
     String checkerPath;
     String validatorPath;
+
+    // Bumped (by query only, never by save) whenever tests, generators, checker or main solution change
+    @Column(nullable = false, insertable = false, updatable = false, columnDefinition = "bigint default 0")
+    private long testSetVersion;
     
     @OneToMany(mappedBy = "problem", cascade = CascadeType.REMOVE, orphanRemoval = true)
     @JsonManagedReference
@@ -36,17 +36,27 @@ public class Submission {
     private SubmissionStatus status;
 
     @Column
-    private Long executionTime; // in milliseconds
+    private Long executionTime; // CPU time in milliseconds
+
+    @Column
+    private Long wallTime; // in milliseconds
 
     @Column
     private Long memoryUsed; // in kilobytes
 
+    @Column
+    private Integer tleReruns; // confirmation reruns of borderline time limits; null = none needed
+
     @Column(length = 1000)
     private String errorMessage;
 
     @Column
     private Integer score; // 0-100
 
+    @Column(length = 16)
+    @Enumerated(EnumType.STRING)
+    private JudgeScope judgeScope; // which tests the current verdict covers
+
     // Define submission status enum
     public enum SubmissionStatus {
         PENDING,
@@ -55,8 +65,15 @@ public class Submission {
         WRONG_ANSWER,
         TIME_LIMIT_EXCEEDED,
         MEMORY_LIMIT_EXCEEDED,
+        OUTPUT_LIMIT_EXCEEDED,
         COMPILATION_ERROR,
         RUNTIME_ERROR
     }
 
+    public enum JudgeScope {
+        PRETESTS, // judged during a live contest; awaits system testing if accepted
+        FULL,     // every test
+        SYSTEM    // re-judged on every test by contest system testing
+    }
+
 }
@@ -27,6 +27,10 @@ public class TestFile {
     
     @Column(nullable = false)
     private String filePath;
+
+    // Pretests are the only tests run while the problem's contest is live
+    @Column(nullable = false, columnDefinition = "boolean default false")
+    private boolean pretest;
     
     @ManyToOne
     @MapsId("problemId")
@@ -0,0 +1,50 @@
+package com.Judge_Mental.XorOJ.entity;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.AllArgsConstructor;
+import lombok.EqualsAndHashCode;
+import java.io.Serializable;
+
+/**
+ * Judging history of one test of a problem: how often it ran, how often it was the
+ * reported (lowest-numbered) failure, and its accumulated CPU time.
+ */
+@Entity
+@Table(name = "test_stats")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class TestStat {
+
+    public static final int KEY_LENGTH = 64;
+
+    @EmbeddedId
+    private TestStatId id = new TestStatId();
+
+    @Column(nullable = false)
+    private long runs;
+
+    @Column(name = "first_fails", nullable = false)
+    private long firstFails;
+
+    @Column(name = "total_time_ms", nullable = false)
+    private long totalTimeMillis;
+
+    @Embeddable
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @EqualsAndHashCode
+    public static class TestStatId implements Serializable {
+        private static final long serialVersionUID = 1L;
+
+        @Column(name = "problem_id")
+        private Long problemId;
+
+        // "test <id>", "generator <id>" or "generator <id>:<hash of its arguments>"
+        @Column(name = "test_key", length = KEY_LENGTH)
+        private String testKey;
+    }
+}
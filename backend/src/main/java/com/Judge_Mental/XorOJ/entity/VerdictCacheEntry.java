@@ -0,0 +1,40 @@
+package com.Judge_Mental.XorOJ.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+import java.time.LocalDateTime;
+
+import com.Judge_Mental.XorOJ.entity.Submission.SubmissionStatus;
+
+/**
+ * Verdict of an already judged source, reused for byte-identical resubmissions.
+ * The key is a hash over source, problem, test-set version, limits and language.
+ */
+@Entity
+@Table(name = "verdict_cache", indexes = @Index(name = "idx_verdict_cache_problem", columnList = "problem_id"))
+@Getter @Setter @NoArgsConstructor @AllArgsConstructor
+public class VerdictCacheEntry {
+
+    @Id
+    @Column(name = "cache_key", length = 64)
+    private String cacheKey;
+
+    @Column(name = "problem_id", nullable = false)
+    private Long problemId;
+
+    @Column(nullable = false)
+    @Enumerated(EnumType.STRING)
+    private SubmissionStatus status;
+
+    private Long executionTime; // CPU time in milliseconds
+
+    private Long wallTime; // in milliseconds
+
+    private Long memoryUsed; // in kilobytes
+
+    @Column(length = 1000)
+    private String errorMessage;
+
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt = LocalDateTime.now();
+}
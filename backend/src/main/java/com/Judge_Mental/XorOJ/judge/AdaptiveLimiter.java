@@ -0,0 +1,143 @@
+package com.Judge_Mental.XorOJ.judge;
+
+import java.util.Arrays;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PostConstruct;
+
+/**
+ * AIMD concurrency limit on sandbox launches. Every run reports its launch overhead: time
+ * spent preparing the sandbox plus wall time not spent on the program's CPU (docker exec,
+ * namespace setup, scheduling delay). While the recent overhead stays near its long-term
+ * baseline (a low percentile of the last few hundred samples, so the odd unusually fast launch
+ * does not move it) and the limit is actually used, the limit grows by about one per limit's worth of
+ * runs; when it degrades the limit is cut by 10%, at most once per window.
+ *
+ * Too many simultaneous launches make the daemon and the kernel the bottleneck and turn
+ * correct solutions into wall-clock timeouts; this keeps the host just below that point.
+ */
+@Component
+public class AdaptiveLimiter {
+
+    private static final double SHORT_ALPHA = 0.2;    // recent overhead
+    private static final int BASELINE_WINDOW = 256;   // samples the baseline is taken from
+    private static final double BASELINE_RANK = 0.1;  // percentile: near the floor, but no single outlier
+    private static final double BACKOFF = 0.9;
+    private static final double SLACK_MS = 5.0;       // ignore jitter on tiny overheads
+
+    @Value("${judge.limiter.enabled:true}")
+    private boolean enabled;
+
+    @Value("${judge.limiter.initial:0}")
+    private int initialLimit;
+
+    @Value("${judge.limiter.min:1}")
+    private int minLimit;
+
+    @Value("${judge.limiter.max:0}")
+    private int maxLimit;
+
+    /** Recent overhead may exceed the baseline by this factor before the limit backs off. */
+    @Value("${judge.limiter.tolerance:1.5}")
+    private double tolerance;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition capacity = lock.newCondition();
+
+    private double limit;
+    private int inFlight;
+    private double shortOverhead = -1;
+    private double baseline = -1;
+    private final long[] window = new long[BASELINE_WINDOW];
+    private int windowSize;
+    private int windowNext;
+    private int samplesSinceBackoff;
+
+    @PostConstruct
+    public void init() {
+        int cores = Runtime.getRuntime().availableProcessors();
+        if (maxLimit <= 0) maxLimit = 4 * cores;
+        minLimit = Math.max(1, Math.min(minLimit, maxLimit));
+        limit = Math.max(minLimit, Math.min(initialLimit > 0 ? initialLimit : cores, maxLimit));
+    }
+
+    /** Wait for a launch permit. Every acquire must be paired with a release. */
+    public void acquire() throws InterruptedException {
+        if (!enabled) return;
+        lock.lockInterruptibly();
+        try {
+            while (inFlight >= (int) limit) capacity.await();
+            inFlight++;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** Return a permit; {@code overheadMs < 0} means no usable sample (e.g. a compile or failure). */
+    public void release(long overheadMs) {
+        if (!enabled) return;
+        lock.lock();
+        try {
+            boolean saturated = inFlight >= (int) limit;
+            inFlight--;
+            if (overheadMs >= 0) adjust(overheadMs, saturated);
+            capacity.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int limit() {
+        lock.lock();
+        try {
+            return enabled ? (int) limit : -1;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int inFlight() {
+        lock.lock();
+        try {
+            return inFlight;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void adjust(long overheadMs, boolean saturated) {
+        window[windowNext] = overheadMs;
+        windowNext = (windowNext + 1) % BASELINE_WINDOW;
+        windowSize = Math.min(windowSize + 1, BASELINE_WINDOW);
+        if (baseline < 0) {
+            baseline = overheadMs;
+            shortOverhead = overheadMs;
+            return;
+        }
+        shortOverhead += SHORT_ALPHA * (overheadMs - shortOverhead);
+        baseline = baseline();
+        samplesSinceBackoff++;
+
+        if (shortOverhead > baseline * tolerance + SLACK_MS) {
+            // Degraded: multiplicative decrease, once per window so one burst does not collapse the limit
+            if (samplesSinceBackoff >= (int) limit) {
+                limit = Math.max(minLimit, limit * BACKOFF);
+                samplesSinceBackoff = 0;
+            }
+        } else if (saturated) {
+            // Flat and fully used: additive increase of one per limit's worth of runs
+            limit = Math.min(maxLimit, limit + 1.0 / limit);
+        }
+    }
+
+    /** Low percentile of the recent samples; follows slow drift of the environment either way. */
+    private double baseline() {
+        long[] sorted = Arrays.copyOf(window, windowSize);
+        Arrays.sort(sorted);
+        return sorted[(int) (BASELINE_RANK * (windowSize - 1))];
+    }
+}
@@ -0,0 +1,62 @@
+package com.Judge_Mental.XorOJ.judge;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+/**
+ * In-JVM checker selected by a short spec:
+ * {@code exact}, {@code tokens} (the default), {@code float:<eps>} (absolute or relative error),
+ * {@code float-abs:<eps>} and {@code float-rel:<eps>}.
+ */
+public final class BuiltinChecker implements Checker {
+
+    public static final String DEFAULT_SPEC = "tokens";
+
+    private final StreamingComparator.Mode mode;
+    private final double absEps;
+    private final double relEps;
+
+    private BuiltinChecker(StreamingComparator.Mode mode, double absEps, double relEps) {
+        this.mode = mode;
+        this.absEps = absEps;
+        this.relEps = relEps;
+    }
+
+    /** @throws IllegalArgumentException for an unknown spec or a bad tolerance */
+    public static BuiltinChecker parse(String spec) {
+        String s = spec == null ? DEFAULT_SPEC : spec.trim().toLowerCase();
+        int colon = s.indexOf(':');
+        String kind = colon < 0 ? s : s.substring(0, colon);
+        String arg = colon < 0 ? null : s.substring(colon + 1);
+
+        switch (kind) {
+            case "exact":
+                return new BuiltinChecker(StreamingComparator.Mode.EXACT, 0, 0);
+            case "tokens":
+                return new BuiltinChecker(StreamingComparator.Mode.TOKENS, 0, 0);
+            case "float": {
+                double eps = epsilon(arg);
+                return new BuiltinChecker(StreamingComparator.Mode.FLOAT, eps, eps);
+            }
+            case "float-abs":
+                return new BuiltinChecker(StreamingComparator.Mode.FLOAT, epsilon(arg), -1);
+            case "float-rel":
+                return new BuiltinChecker(StreamingComparator.Mode.FLOAT, -1, epsilon(arg));
+            default:
+                throw new IllegalArgumentException("Unknown checker: " + spec);
+        }
+    }
+
+    private static double epsilon(String arg) {
+        try {
+            double eps = Double.parseDouble(arg);
+            if (eps >= 0 && eps < 1) return eps;
+        } catch (NullPointerException | NumberFormatException ignored) {}
+        throw new IllegalArgumentException("Checker tolerance must be a number in [0, 1), e.g. float:1e-6");
+    }
+
+    @Override
+    public Session begin(Path input, Path answer, long outputLimitBytes) throws IOException {
+        return new StreamingComparator(answer, outputLimitBytes, mode, absEps, relEps);
+    }
+}
@@ -0,0 +1,40 @@
+package com.Judge_Mental.XorOJ.judge;
+
+/**
+ * Cooperative cancellation for one sandbox execution. The executor binds a kill action while
+ * the process runs; {@link #cancel()} from another thread stops the process and its container.
+ */
+public final class CancelToken {
+
+    /** Token for callers that never cancel. */
+    public static final CancelToken NONE = new CancelToken();
+
+    private volatile boolean cancelled;
+    private Runnable onCancel;
+
+    public void cancel() {
+        if (this == NONE) return;
+        Runnable action;
+        synchronized (this) {
+            if (cancelled) return;
+            cancelled = true;
+            action = onCancel;
+        }
+        if (action != null) action.run();
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    /** Attach the kill action for the running process; runs it at once if already cancelled. */
+    synchronized void bind(Runnable killAction) {
+        if (this == NONE) return;
+        onCancel = killAction;
+        if (cancelled) killAction.run();
+    }
+
+    synchronized void unbind() {
+        onCancel = null;
+    }
+}
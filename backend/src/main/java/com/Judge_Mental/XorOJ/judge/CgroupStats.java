@@ -0,0 +1,131 @@
+package com.Judge_Mental.XorOJ.judge;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * cgroup v2 counters of one sandbox (a container's cgroup, or a native slot's), read from the host.
+ *
+ * A leased slot runs one job at a time and every run starts without leftovers of the previous
+ * job, so per-job usage is the difference of the cgroup's counters around the run.
+ */
+final class CgroupStats {
+
+    private final Path dir;
+
+    private CgroupStats(Path dir) {
+        this.dir = dir;
+    }
+
+    /** Find the container's cgroup under {@code root} (systemd or cgroupfs driver layout), or null. */
+    static CgroupStats locate(Path root, String containerId) {
+        Path[] candidates = {
+                root.resolve("system.slice").resolve("docker-" + containerId + ".scope"),
+                root.resolve("docker").resolve(containerId),
+                root.resolve("docker.slice").resolve("docker-" + containerId + ".scope"),
+        };
+        for (Path c : candidates) {
+            if (Files.isReadable(c.resolve("cpu.stat")) && Files.isReadable(c.resolve("memory.peak"))) {
+                return new CgroupStats(c);
+            }
+        }
+        return null;
+    }
+
+    /** A cgroup managed by the JVM itself (native backend). */
+    static CgroupStats at(Path dir) {
+        return new CgroupStats(dir);
+    }
+
+    /** Start measuring one job. */
+    Meter start() throws IOException {
+        return new Meter();
+    }
+
+    private long cpuUsageUsec() throws IOException {
+        return statField("cpu.stat", "usage_usec");
+    }
+
+    private long oomKills() throws IOException {
+        return statField("memory.events", "oom_kill");
+    }
+
+    private long memoryCurrent() throws IOException {
+        return Long.parseLong(Files.readString(dir.resolve("memory.current")).trim());
+    }
+
+    private long statField(String file, String key) throws IOException {
+        for (String line : Files.readAllLines(dir.resolve(file))) {
+            if (line.startsWith(key + " ")) {
+                return Long.parseLong(line.substring(key.length() + 1).trim());
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Usage of one job. Peak memory uses the per-descriptor reset of {@code memory.peak}
+     * (Linux 6.12+); on older kernels it falls back to sampling {@code memory.current}.
+     */
+    final class Meter implements AutoCloseable {
+        private final long cpuStart;
+        private final long oomStart;
+        private final FileChannel peak;   // null when the kernel cannot reset memory.peak
+        private volatile long sampledPeak;
+
+        private Meter() throws IOException {
+            cpuStart = cpuUsageUsec();
+            oomStart = oomKills();
+            peak = openResetPeak();
+            sampledPeak = peak == null ? memoryCurrent() : 0;
+        }
+
+        private FileChannel openResetPeak() {
+            FileChannel ch = null;
+            try {
+                ch = FileChannel.open(dir.resolve("memory.peak"), StandardOpenOption.READ, StandardOpenOption.WRITE);
+                ch.write(ByteBuffer.wrap("reset\n".getBytes(StandardCharsets.US_ASCII)));
+                return ch;
+            } catch (IOException e) {
+                try { if (ch != null) ch.close(); } catch (IOException ignored) {}
+                return null;
+            }
+        }
+
+        long cpuMillis() throws IOException {
+            return (cpuUsageUsec() - cpuStart + 500) / 1000;
+        }
+
+        /** Called periodically while the job runs; only needed without a resettable peak. */
+        void sample() {
+            if (peak != null) return;
+            try {
+                sampledPeak = Math.max(sampledPeak, memoryCurrent());
+            } catch (IOException | NumberFormatException ignored) {}
+        }
+
+        long peakKB() throws IOException {
+            if (peak == null) {
+                sample();
+                return sampledPeak / 1024;
+            }
+            ByteBuffer buf = ByteBuffer.allocate(32);
+            peak.read(buf, 0);
+            return Long.parseLong(new String(buf.array(), 0, buf.position(), StandardCharsets.US_ASCII).trim()) / 1024;
+        }
+
+        boolean oomKilled() throws IOException {
+            return oomKills() > oomStart;
+        }
+
+        @Override
+        public void close() {
+            try { if (peak != null) peak.close(); } catch (IOException ignored) {}
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package com.Judge_Mental.XorOJ.judge;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+/**
+ * Decides whether a submission's output on one test is acceptable.
+ *
+ * A checker opens a {@link Session} per test; the executor pumps the candidate's stdout into it
+ * while the program runs and asks for the verdict once the program exited normally. Built-in
+ * checkers ({@link StreamingComparator}) decide while the output streams; custom checkers
+ * ({@link CustomChecker}) spool the output and run a compiled checker in the sandbox.
+ */
+public interface Checker {
+
+    enum Outcome { ACCEPTED, WRONG_ANSWER, CHECKER_FAILED }
+
+    record Result(Outcome outcome, String message) {
+        static Result accepted() { return new Result(Outcome.ACCEPTED, null); }
+        static Result wrongAnswer(String message) { return new Result(Outcome.WRONG_ANSWER, message); }
+    }
+
+    /** Start checking one test; the session receives the candidate's stdout. */
+    Session begin(Path input, Path answer, long outputLimitBytes) throws IOException;
+
+    /** True when checking runs a program in a sandbox of its own; such checkers cannot judge inside a batch run. */
+    default boolean needsSandbox() {
+        return false;
+    }
+
+    interface Session extends OutputSink {
+
+        /** Verdict for an output that was fully written by a program that exited with code 0. */
+        Result verdict() throws IOException, InterruptedException;
+
+        /** Release anything held for this test; called whether or not a verdict was asked for. */
+        default void dispose() {}
+    }
+}
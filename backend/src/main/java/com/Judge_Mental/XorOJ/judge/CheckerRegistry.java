@@ -0,0 +1,43 @@
+package com.Judge_Mental.XorOJ.judge;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+
+import org.springframework.stereotype.Component;
+
+import com.Judge_Mental.XorOJ.judge.CppExecutor.CompiledProgram;
+
+/**
+ * Resolves {@code Problem.checkerPath} to a {@link Checker}.
+ *
+ * {@code null} means the default whitespace-insensitive comparison, {@code builtin:<spec>} one of
+ * the {@link BuiltinChecker} specs, anything else the path of an uploaded C++ checker, compiled
+ * once per source hash through the executor's binary cache.
+ */
+@Component
+public class CheckerRegistry {
+
+    public static final String BUILTIN_PREFIX = "builtin:";
+
+    private final CppExecutor cppExecutor;
+    private final WorkspaceManager workspaces;
+
+    public CheckerRegistry(CppExecutor cppExecutor, WorkspaceManager workspaces) {
+        this.cppExecutor = cppExecutor;
+        this.workspaces = workspaces;
+    }
+
+    public Checker forPath(String checkerPath) throws IOException, InterruptedException {
+        if (checkerPath == null || checkerPath.isBlank()) {
+            return BuiltinChecker.parse(BuiltinChecker.DEFAULT_SPEC);
+        }
+        if (checkerPath.startsWith(BUILTIN_PREFIX)) {
+            return BuiltinChecker.parse(checkerPath.substring(BUILTIN_PREFIX.length()));
+        }
+        CompiledProgram program = cppExecutor.compile(Paths.get(checkerPath));
+        if (!program.success) {
+            throw new IllegalStateException(cppExecutor.compilationError("Checker", program).message);
+        }
+        return new CustomChecker(cppExecutor, workspaces, program);
+    }
+}
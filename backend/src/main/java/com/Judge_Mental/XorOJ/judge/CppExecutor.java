@@ -1,27 +1,81 @@
 package com.Judge_Mental.XorOJ.judge;
 
-import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
 import java.time.Duration;
 import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.Objects;
+import java.util.Locale;
+import java.util.Map;
 import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.regex.Pattern;
 
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
 import com.Judge_Mental.XorOJ.entity.Submission.SubmissionStatus;
+import com.Judge_Mental.XorOJ.util.Hashing;
 
 @Component
 public class CppExecutor {
 
-    private static final String DOCKER_IMAGE = "gcc-time:13";
     private static final String TIME_FMT = "TIME_USED_MS=%e\\nMEM_USED_KB=%M";
-    private static final int DEFAULT_PIDS_LIMIT = 256;
+    private static final long COMPILE_TIMEOUT_MS = 30_000L;
+    private static final int COMPILE_MEMORY_MB = 1024;
+    private static final String BINARY_NAME = "main";
+    private static final String COMPILE_LOG = "compile-error.txt";
+    private static final long CAPTURE_LIMIT_BYTES = 1L << 20;            // custom runs shown to the user
+    private static final long REFERENCE_OUTPUT_LIMIT_BYTES = 256L << 20; // generator / main solution output
+    private static final int STDERR_HEAD_BYTES = 64 * 1024;
+    private static final int STDERR_TAIL_BYTES = 4 * 1024;              // /usr/bin/time writes its report last
+    private static final int CHECKER_TIME_LIMIT_MS = 10_000;
+    private static final int CHECKER_MEMORY_KB = 256 * 1024;
+    private static final long CPU_POLL_MS = 5;
+    private static final long WALL_EXTRA_MS = 1_000L;
+    private static final int SIGXFSZ_EXIT = 128 + 25;                  // RLIMIT_FSIZE hit in a batch run
+    private static final byte[] BATCH_HARNESS = loadResource("/sandbox/batch.sh");
+    private static final long BUILD_RESERVE_BYTES = 16L << 20;          // workspace room for a compiled binary
+    private static final long CACHE_PIN_MS = 10 * 60_000L;              // builds used this recently may be running
+    private static final Pattern CACHE_ENTRY = Pattern.compile("[0-9a-f]{64}");
+    // "file:line[:col]: [fatal ]error:" as printed by g++, and the linker's symbol errors
+    private static final Pattern DIAGNOSTIC = Pattern.compile(
+            "(?m)^[^\\s:]+:\\d+(?::\\d+)?: (?:fatal )?error: |undefined reference to|multiple definition of");
+    // The compiler was killed or ran out of something: says nothing about the source
+    private static final Pattern RESOURCE_FAILURE = Pattern.compile(
+            "(?i)killed signal|terminated program|internal compiler error|out of memory|memory exhausted"
+                    + "|cannot allocate memory|no space left on device");
+
+    /** Root of the content-addressed binary cache: {@code <root>/<sha256 of source>/main}. */
+    @Value("${judge.compile.cache-dir:${java.io.tmpdir}/xoroj-bin}")
+    private String binaryCacheDir;
+
+    /** Size cap of the binary cache; the least recently used builds beyond it are removed. */
+    @Value("${judge.compile.cache-max-mb:2048}")
+    private long cacheMaxMB;
+
+    /** Wall-clock cap as a multiple of the CPU-time limit; catches sleeping or blocked programs. */
+    @Value("${judge.limits.wall-time-factor:3.0}")
+    private double wallTimeFactor;
+
+    private final SandboxBackend sandboxBackend;
+    private final AdaptiveLimiter limiter;
+    private final WorkspaceManager workspaces;
+
+    /** Compilations currently in flight, so concurrent submissions of the same source share one g++ run. */
+    private final ConcurrentHashMap<String, CompletableFuture<CompiledProgram>> compiling = new ConcurrentHashMap<>();
+
+    /** Bytes in the binary cache as of the last trim plus builds published since; -1 = not measured yet. */
+    private final AtomicLong cacheBytes = new AtomicLong(-1);
 
     /** Pooled daemon threads for stream reading; prevents thread leaks. */
     private static final ExecutorService STREAM_POOL = Executors.newCachedThreadPool(r -> {
@@ -37,144 +91,371 @@ public class CppExecutor {
         }, "cpp-exec-stream-shutdown"));
     }
 
-    /** Immutable process spec so the container name always travels with the command. */
+    public CppExecutor(SandboxBackend sandboxBackend, AdaptiveLimiter limiter, WorkspaceManager workspaces) {
+        this.sandboxBackend = sandboxBackend;
+        this.limiter = limiter;
+        this.workspaces = workspaces;
+    }
+
+    /** Immutable process spec so the leased sandbox always travels with the command. */
     private static final class ProcSpec {
         final List<String> command;
-        final String containerName;
-        ProcSpec(List<String> command, String containerName) {
+        final SandboxBackend.Sandbox sandbox;
+        final long cpuLimitMs; // enforced from the sandbox's cgroup; 0 = not metered
+        final Consumer<OutputStream> stdin; // gets the process's stdin once started; null = unused
+        ProcSpec(List<String> command, SandboxBackend.Sandbox sandbox, long cpuLimitMs) {
+            this(command, sandbox, cpuLimitMs, null);
+        }
+        ProcSpec(List<String> command, SandboxBackend.Sandbox sandbox, long cpuLimitMs, Consumer<OutputStream> stdin) {
             this.command = command;
-            this.containerName = containerName;
+            this.sandbox = sandbox;
+            this.cpuLimitMs = cpuLimitMs;
+            this.stdin = stdin;
         }
     }
 
     public static class JudgeVerdict {
         public final SubmissionStatus status;
         public final String message;
-        public final long timeUsedMillis;
+        public final long timeUsedMillis;  // CPU time
+        public final long wallTimeMillis;
         public final long memoryUsedKB;
 
         public JudgeVerdict(SubmissionStatus status, String message) {
-            this(status, message, -1, -1);
+            this(status, message, -1, -1, -1);
         }
 
-        public JudgeVerdict(SubmissionStatus status, String message, long timeUsedMillis, long memoryUsedKB) {
+        public JudgeVerdict(SubmissionStatus status, String message, RunResult r) {
+            this(status, message, r.timeUsedMillis, r.wallTimeMillis, r.memoryUsedKB);
+        }
+
+        public JudgeVerdict(SubmissionStatus status, String message, long timeUsedMillis, long wallTimeMillis, long memoryUsedKB) {
             this.status = status;
             this.message = message;
             this.timeUsedMillis = timeUsedMillis;
+            this.wallTimeMillis = wallTimeMillis;
             this.memoryUsedKB = memoryUsedKB;
         }
     }
 
+    /** Outcome of compiling one source file; successful binaries are shared by every test of every submission with the same source. */
+    public static class CompiledProgram {
+        public final String sourceHash;
+        public final Path binaryDir;      // directory holding the "main" binary, mounted read-only at /out
+        public final boolean success;
+        public final String compileLog;   // compiler diagnostics when !success
+
+        CompiledProgram(String sourceHash, Path binaryDir, boolean success, String compileLog) {
+            this.sourceHash = sourceHash;
+            this.binaryDir = binaryDir;
+            this.success = success;
+            this.compileLog = compileLog;
+        }
+    }
+
     public static class RunResult {
         public final int exitCode;
         public final String stdout;
         public final String stderr;
-        public final long timeUsedMillis;
+        public final long timeUsedMillis;  // CPU time (wall time when cgroup accounting is unavailable)
+        public final long wallTimeMillis;
         public final long memoryUsedKB;
 
         RunResult(int exitCode, String stdout, String stderr, long timeUsedMillis, long memoryUsedKB) {
+            this(exitCode, stdout, stderr, timeUsedMillis, -1, memoryUsedKB);
+        }
+
+        RunResult(int exitCode, String stdout, String stderr, long timeUsedMillis, long wallTimeMillis, long memoryUsedKB) {
             this.exitCode = exitCode;
             this.stdout = stdout;
             this.stderr = stderr;
             this.timeUsedMillis = timeUsedMillis;
+            this.wallTimeMillis = wallTimeMillis;
             this.memoryUsedKB = memoryUsedKB;
         }
     }
 
     /**
-     * Compile and run C++17 source inside Docker (gcc:13), using a mounted input file (Option A).
+     * Compile and run C++17 source in a sandbox (custom runs). Source and input live in a
+     * workspace that is removed as soon as the run is over.
      */
     public RunResult execute(String cppSource, String stdinContent,
                              int timeLimitMs, int memoryKB, double cpuCores) throws IOException, InterruptedException {
+        byte[] source = cppSource.getBytes(StandardCharsets.UTF_8);
+        byte[] input = (stdinContent == null ? "" : stdinContent).getBytes(StandardCharsets.UTF_8);
+
+        try (WorkspaceManager.Workspace work = workspaces.allocate(source.length + input.length
+                + BUILD_RESERVE_BYTES)) {
+            Path mainCpp = Files.write(work.resolve("main.cpp"), source);
+            Path inputTxt = Files.write(work.resolve("input.txt"), input);
+
+            // Scratch code: built into the workspace, so it never fills the shared binary cache
+            CompiledProgram program = compileUncached(mainCpp, work.resolve("build"));
+            if (!program.success) {
+                return new RunResult(1, "", program.compileLog, -1, -1);
+            }
+
+            OutputSink.Capture stdout = new OutputSink.Capture(CAPTURE_LIMIT_BYTES);
+            return runInSandbox(program, inputTxt, timeLimitMs, memoryKB, cpuCores, stdout, CancelToken.NONE);
+        }
+    }
 
-        // 1) Isolated sandbox directories
-        Path work = Files.createTempDirectory("cpp-job-").toAbsolutePath();
-        Path srcDir = work.resolve("src");
-        Path binDir = work.resolve("bin");
-        Files.createDirectories(srcDir);
-        Files.createDirectories(binDir);
+    /* ===================== Compilation ===================== */
 
-        // 2) Files
-        Path mainCpp = srcDir.resolve("main.cpp");
-        Files.writeString(mainCpp, cppSource, StandardCharsets.UTF_8);
+    /**
+     * Compile a source file once per content hash. Later calls with identical source (any path)
+     * reuse the cached binary; compile errors are cached too so broken code is not rebuilt on every test.
+     */
+    public CompiledProgram compile(Path sourceFile) throws IOException, InterruptedException {
+        String hash = Hashing.sha256(sourceFile);
+
+        CompiledProgram cached = lookupCompiled(hash);
+        if (cached != null) return cached;
+
+        CompletableFuture<CompiledProgram> mine = new CompletableFuture<>();
+        CompletableFuture<CompiledProgram> inFlight = compiling.putIfAbsent(hash, mine);
+        if (inFlight != null) {
+            try {
+                return inFlight.get();
+            } catch (ExecutionException e) {
+                throw new IOException("Compilation failed: " + e.getCause().getMessage(), e.getCause());
+            }
+        }
 
-        Path inputTxt = srcDir.resolve("input.txt");
-        Files.writeString(inputTxt, stdinContent == null ? "" : stdinContent, StandardCharsets.UTF_8);
+        try {
+            CompiledProgram result = doCompile(sourceFile, hash);
+            mine.complete(result);
+            return result;
+        } catch (IOException | InterruptedException | RuntimeException e) {
+            mine.completeExceptionally(e);
+            throw e;
+        } finally {
+            compiling.remove(hash, mine);
+        }
+    }
 
-        // 3) Build & run (input file mounted and redirected inside container)
-        ProcSpec spec = buildCompileRunSpec(
-                mainCpp,          // source file
-                binDir,           // /out mount
-                inputTxt,         // input file to mount and redirect from
-                timeLimitMs,
-                memoryKB,
-                cpuCores
-        );
+    /** Reuse a cached build of the same source if there is one, otherwise build into {@code buildDir}. */
+    private CompiledProgram compileUncached(Path sourceFile, Path buildDir) throws IOException, InterruptedException {
+        String hash = Hashing.sha256(sourceFile);
+        CompiledProgram cached = lookupCompiled(hash);
+        if (cached != null) return cached;
 
-        // Give a small buffer for compile cost
-        return runProcess(spec, timeLimitMs + 10_000L);
+        RunResult r = compileInSandbox(sourceFile, buildDir);
+        if (r.exitCode == 0 && Files.isRegularFile(buildDir.resolve(BINARY_NAME))) {
+            return new CompiledProgram(hash, buildDir, true, "");
+        }
+        return new CompiledProgram(hash, buildDir, false, compileLog(r));
     }
 
-    /* ===================== Public judging APIs ===================== */
+    private CompiledProgram lookupCompiled(String hash) throws IOException {
+        Path dir = binaryCacheRoot().resolve(hash);
+        if (Files.isRegularFile(dir.resolve(BINARY_NAME))) {
+            touch(dir);
+            return new CompiledProgram(hash, dir, true, "");
+        }
+        Path log = dir.resolve(COMPILE_LOG);
+        if (Files.isRegularFile(log)) {
+            return new CompiledProgram(hash, dir, false, Files.readString(log, StandardCharsets.UTF_8));
+        }
+        return null;
+    }
+
+    private CompiledProgram doCompile(Path sourceFile, String hash) throws IOException, InterruptedException {
+        Path root = binaryCacheRoot();
+        Path finalDir = root.resolve(hash);
+
+        // Build into a private directory and publish it with an atomic rename
+        Path buildDir = Files.createTempDirectory(root, hash + ".build-");
+        RunResult r = compileInSandbox(sourceFile, buildDir);
+
+        if (r.exitCode == 0 && Files.isRegularFile(buildDir.resolve(BINARY_NAME))) {
+            publish(buildDir, finalDir);
+            return new CompiledProgram(hash, finalDir, true, "");
+        }
+
+        String log = compileLog(r);
+        if (isDeterministicFailure(r)) {
+            // Genuine diagnostics are deterministic for this source; remember them
+            Files.writeString(buildDir.resolve(COMPILE_LOG), log, StandardCharsets.UTF_8);
+            publish(buildDir, finalDir);
+        } else {
+            deleteQuietly(buildDir);
+        }
+        return new CompiledProgram(hash, finalDir, false, log);
+    }
+
+    private static String compileLog(RunResult r) {
+        return r.exitCode == 124 ? "Compilation timed out" : firstLines(r.stderr, 40);
+    }
 
     /**
-     * Compare output of source code with generator + main solution (Option A).
+     * Whether a failed compile would fail the same way again: g++ reported file:line errors (or
+     * the linker missing symbols) and was not killed. Timeouts, signals and resource exhaustion
+     * are not remembered, since the next attempt may well succeed.
      */
-    public JudgeVerdict compareWithGenerator(String codePath, String mainSolutionPath, String generatorPath,
-                                             long timeoutMillis, long memoryLimitKB) {
+    static boolean isDeterministicFailure(RunResult r) {
+        if (r.exitCode == 0 || r.exitCode >= 124 || r.stderr == null) return false;
+        return DIAGNOSTIC.matcher(r.stderr).find() && !RESOURCE_FAILURE.matcher(r.stderr).find();
+    }
+
+    private void publish(Path buildDir, Path finalDir) throws IOException {
         try {
-            if (!new File(codePath).exists() || !new File(mainSolutionPath).exists() || !new File(generatorPath).exists()) {
-                return new JudgeVerdict(SubmissionStatus.RUNTIME_ERROR, "One or more required files not found");
+            Files.move(buildDir, finalDir, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            // Another JVM/thread published the same hash first; keep theirs
+            deleteQuietly(buildDir);
+            if (!Files.isDirectory(finalDir)) throw e;
+            return;
+        }
+        long total = cacheBytes.get() < 0 ? -1 : cacheBytes.addAndGet(sizeOf(finalDir));
+        if (total < 0 || total > cacheMaxMB * 1024 * 1024) trimCache();
+    }
+
+    /** Mark a cached build as used; its directory's mtime is the LRU clock. */
+    private static void touch(Path dir) {
+        try {
+            long now = System.currentTimeMillis();
+            if (now - Files.getLastModifiedTime(dir).toMillis() > 60_000L) {
+                Files.setLastModifiedTime(dir, FileTime.fromMillis(now));
             }
+        } catch (IOException ignored) {}
+    }
 
-            Path codeFilePath = Path.of(codePath);
-            Path mainFilePath = Path.of(mainSolutionPath);
-            Path genFilePath  = Path.of(generatorPath);
-
-            Path workDir = Files.createTempDirectory("compare-generator-");
-            Path outDir  = workDir.resolve("out");
-            Files.createDirectories(outDir);
-
-            // 1) Run generator (no input), capture stdout and persist as input file
-            ProcSpec genSpec = buildCompileRunSpec(
-                    genFilePath,
-                    outDir,
-                    null,
-                    (int) timeoutMillis,
-                    (int) memoryLimitKB,
-                    1.0
-            );
-            RunResult gen = runProcess(genSpec, timeoutMillis);
-            if (gen.exitCode != 0) {
-                return new JudgeVerdict(SubmissionStatus.RUNTIME_ERROR, "Generator failed: " + gen.stderr, gen.timeUsedMillis, gen.memoryUsedKB);
+    /**
+     * Remove the least recently used builds until the cache fits {@code judge.compile.cache-max-mb}.
+     * Builds used within {@link #CACHE_PIN_MS} stay even over the cap, since a judge may be running
+     * them; anything that is not a finished build (helper binaries, builds in progress) is left alone.
+     */
+    void trimCache() {
+        synchronized (cacheBytes) {
+            record Entry(Path dir, long bytes, long usedMs) {}
+            List<Entry> entries = new ArrayList<>();
+            long total = 0;
+            try (var list = Files.list(binaryCacheRoot())) {
+                for (Path dir : list.toList()) {
+                    if (!CACHE_ENTRY.matcher(dir.getFileName().toString()).matches()) continue;
+                    long bytes = sizeOf(dir);
+                    entries.add(new Entry(dir, bytes, Files.getLastModifiedTime(dir).toMillis()));
+                    total += bytes;
+                }
+            } catch (IOException e) {
+                System.out.println("Binary cache not trimmed: " + e.getMessage());
+                return;
             }
+            entries.sort(Comparator.comparingLong(Entry::usedMs));
+            long cap = cacheMaxMB * 1024 * 1024;
+            long pinnedSince = System.currentTimeMillis() - CACHE_PIN_MS;
+            for (Entry e : entries) {
+                if (total <= cap) break;
+                try {
+                    // Re-read: a lookup may have just picked it up
+                    if (Files.getLastModifiedTime(e.dir()).toMillis() > pinnedSince) continue;
+                } catch (IOException ex) {
+                    continue;
+                }
+                deleteQuietly(e.dir());
+                total -= e.bytes();
+            }
+            cacheBytes.set(total);
+        }
+    }
+
+    /** Bytes in a file, or in the files below a directory. */
+    private static long sizeOf(Path path) {
+        try (var walk = Files.walk(path)) {
+            return walk.filter(Files::isRegularFile).mapToLong(p -> {
+                try { return Files.size(p); } catch (IOException e) { return 0; }
+            }).sum();
+        } catch (IOException e) {
+            return 0;
+        }
+    }
 
-            Path inputPath = Files.createTempFile(workDir, "input-", ".txt");
-            Files.writeString(inputPath, gen.stdout, StandardCharsets.UTF_8);
+    private Path binaryCacheRoot() throws IOException {
+        Path root = Path.of(binaryCacheDir).toAbsolutePath().normalize();
+        Files.createDirectories(root);
+        return root;
+    }
 
-            // 2) Judge both solutions on the generated input
-            return judgeOnInputPaths(codeFilePath, mainFilePath, inputPath, (int) timeoutMillis, (int) memoryLimitKB, 1.0);
-        } catch (Exception e) {
-            return new JudgeVerdict(SubmissionStatus.RUNTIME_ERROR, "Error during execution: " + e.getMessage());
+    private static void deleteQuietly(Path dir) {
+        try (var walk = Files.walk(dir)) {
+            walk.sorted(Comparator.reverseOrder()).forEach(p -> {
+                try { Files.deleteIfExists(p); } catch (IOException ignored) {}
+            });
+        } catch (IOException ignored) {}
+    }
+
+    /* ===================== Public judging APIs ===================== */
+
+    /**
+     * Verdict for a program that failed to compile.
+     */
+    public JudgeVerdict compilationError(String who, CompiledProgram program) {
+        return new JudgeVerdict(SubmissionStatus.COMPILATION_ERROR,
+                who + " compilation failed:\n" + program.compileLog);
+    }
+
+    /**
+     * Run a compiled program on an input file (or empty stdin), streaming stdout into a file.
+     * Used to produce generated inputs and reference answers at problem build time.
+     */
+    public RunResult runToFile(CompiledProgram program, Path inputFileOrNull, Path stdoutFile, int timeLimitMs, int memoryKB)
+            throws IOException, InterruptedException {
+        OutputSink.ToFile stdout = new OutputSink.ToFile(stdoutFile, REFERENCE_OUTPUT_LIMIT_BYTES);
+        RunResult r = runInSandbox(program, inputFileOrNull, timeLimitMs, memoryKB, 1.0, stdout, CancelToken.NONE);
+        if (stdout.limitExceeded()) {
+            throw new IllegalStateException("Output exceeds " + (REFERENCE_OUTPUT_LIMIT_BYTES >> 20) + "MB");
         }
+        return r;
     }
 
     /**
-     * Compare output of source code vs main solution on a provided input file (Option A).
+     * Run a generator as {@code ./main <args>} with no stdin, its stdout going to a file.
+     * {@code args} is split on whitespace and every word is passed literally.
      */
-    public JudgeVerdict compareWithInputFile(String codePath, String mainSolutionPath, String inputFilePath,
-                                             long timeoutMillis, long memoryLimitKB) {
+    public RunResult runGenerator(CompiledProgram generator, String args, Path stdoutFile, int timeLimitMs, int memoryKB)
+            throws IOException, InterruptedException {
+        StringBuilder argv = new StringBuilder();
+        for (String word : args.trim().split("\\s+")) {
+            if (!word.isEmpty()) argv.append(" '").append(word.replace("'", "'\\''")).append('\'');
+        }
+        OutputSink.ToFile stdout = new OutputSink.ToFile(stdoutFile, REFERENCE_OUTPUT_LIMIT_BYTES);
+        RunResult r = runStaged(generator, Map.of(), argv + " < /dev/null", timeLimitMs, memoryKB, 1.0, stdout,
+                CancelToken.NONE);
+        if (stdout.limitExceeded()) {
+            throw new IllegalStateException("Output exceeds " + (REFERENCE_OUTPUT_LIMIT_BYTES >> 20) + "MB");
+        }
+        return r;
+    }
+
+    /**
+     * Run a custom checker as {@code ./main input.txt output.txt answer.txt} in the sandbox.
+     */
+    public RunResult runChecker(CompiledProgram checker, Path input, Path output, Path answer)
+            throws IOException, InterruptedException {
+        Map<String, Path> files = new LinkedHashMap<>();
+        files.put("input.txt", input);
+        files.put("output.txt", output);
+        files.put("answer.txt", answer);
+        OutputSink.Capture stdout = new OutputSink.Capture(CAPTURE_LIMIT_BYTES);
+        return runStaged(checker, files, " input.txt output.txt answer.txt < /dev/null",
+                CHECKER_TIME_LIMIT_MS, CHECKER_MEMORY_KB, 1.0, stdout, CancelToken.NONE);
+    }
+
+    /**
+     * Judge a compiled submission on one input against a precomputed expected answer file.
+     * The program is stopped after {@code killAfterMillis} of CPU time (at least the time limit),
+     * so a TLE within that grace reports how far over the limit it really was.
+     */
+    public JudgeVerdict compareWithAnswer(CompiledProgram candidate, Checker checker, Path inputPath, Path answerPath,
+                                          long timeoutMillis, long killAfterMillis, long memoryLimitKB, long outputLimitKB,
+                                          CancelToken cancel) {
         try {
-            if (!new File(codePath).exists() || !new File(mainSolutionPath).exists() || !new File(inputFilePath).exists()) {
+            if (!Files.exists(inputPath) || !Files.exists(answerPath)) {
                 return new JudgeVerdict(SubmissionStatus.RUNTIME_ERROR, "One or more required files not found");
             }
-
-            Path codeFilePath = Path.of(codePath);
-            Path mainFilePath = Path.of(mainSolutionPath);
-            Path inputPath    = Path.of(inputFilePath);
-
-            // Unified judging core
-            return judgeOnInputPaths(codeFilePath, mainFilePath, inputPath, (int) timeoutMillis, (int) memoryLimitKB, 1.0);
+            return judgeOnInputPaths(candidate, checker, inputPath, answerPath, (int) timeoutMillis,
+                    (int) Math.max(timeoutMillis, killAfterMillis), (int) memoryLimitKB, outputLimitKB * 1024L, 1.0, cancel);
         } catch (Exception e) {
             return new JudgeVerdict(SubmissionStatus.RUNTIME_ERROR, "Error during execution: " + e.getMessage());
         }
@@ -182,106 +463,325 @@ public class CppExecutor {
 
     /* ===================== Unified judging core ===================== */
 
-    private JudgeVerdict judgeOnInputPaths(Path candidate, Path mainSolution, Path inputPath,
-                                           int timeLimitMs, int memoryKB, double cpuCores) throws IOException, InterruptedException {
+    private JudgeVerdict judgeOnInputPaths(CompiledProgram candidate, Checker checker, Path inputPath, Path answerPath,
+                                           int timeLimitMs, int killAfterMs, int memoryKB, long outputLimitBytes,
+                                           double cpuCores, CancelToken cancel) throws IOException, InterruptedException {
+
+        // Run candidate with its stdout streaming into the checker
+        Checker.Session session = checker.begin(inputPath, answerPath, outputLimitBytes);
+        try {
+            RunResult cand = runInSandbox(candidate, inputPath, killAfterMs, memoryKB, cpuCores, session, cancel);
 
-        Path workDir = Files.createTempDirectory("judge-io-");
-        Path outDir  = workDir.resolve("out");
-        Files.createDirectories(outDir);
+            if (session.limitExceeded()) {
+                return new JudgeVerdict(SubmissionStatus.OUTPUT_LIMIT_EXCEEDED,
+                        "Submission output limit exceeded: " + (outputLimitBytes / 1024) + "KB", cand);
+            }
 
-        // Run main to get expected
-        RunResult main = runProcess(
-                buildCompileRunSpec(mainSolution, outDir, inputPath, timeLimitMs, memoryKB, cpuCores),
-                timeLimitMs + 5_000L
-        );
-        if (main.exitCode != 0) {
-            return classifyNonZero("Main solution", main, timeLimitMs, memoryKB);
+            // A program may finish just past its CPU limit before the monitor stops it
+            if (cand.exitCode != 0 || cand.timeUsedMillis > timeLimitMs) {
+                return classifyNonZero("Submission", cand, timeLimitMs, memoryKB);
+            }
+
+            return checked(session.verdict(), cand);
+        } finally {
+            session.dispose();
+        }
+    }
+
+    private static JudgeVerdict checked(Checker.Result result, RunResult cand) {
+        switch (result.outcome()) {
+            case ACCEPTED:
+                return new JudgeVerdict(SubmissionStatus.ACCEPTED,
+                        "Time: " + cand.timeUsedMillis + "ms (wall " + cand.wallTimeMillis + "ms), Memory: "
+                                + cand.memoryUsedKB + "KB", cand);
+            case WRONG_ANSWER:
+                return new JudgeVerdict(SubmissionStatus.WRONG_ANSWER,
+                        "Wrong answer: " + result.message(), cand);
+            default:
+                return new JudgeVerdict(SubmissionStatus.RUNTIME_ERROR, result.message(), cand);
         }
-        String expected = main.stdout.trim();
+    }
 
-        // Run candidate
-        RunResult cand = runProcess(
-                buildCompileRunSpec(candidate, outDir, inputPath, timeLimitMs, memoryKB, cpuCores),
-                timeLimitMs + 5_000L
-        );
+    /* ===================== Batch runs ===================== */
 
-        if (cand.exitCode != 0) {
-            return classifyNonZero("Submission", cand, timeLimitMs, memoryKB);
+    /** Receives each test's verdict in batch order; return false to stop the batch. */
+    @FunctionalInterface
+    public interface BatchVerdicts {
+        boolean accept(int position, JudgeVerdict verdict);
+    }
+
+    /**
+     * Judge one submission on many tests in a single sandbox lease. The harness
+     * ({@code batch.sh}) runs as root and each test as a fresh process of the work dir's owner,
+     * with its own limits, in an empty directory; it reports usage and output digest where the
+     * job cannot write. Outputs are checked here while later tests run. Only for checkers that
+     * need no sandbox of their own, since the batch holds one throughout.
+     *
+     * @return how many tests were reported, in order; the caller judges the rest one by one
+     *         (stopped batch, harness or root unsupported by the sandbox, overall time cap)
+     */
+    public int judgeBatch(CompiledProgram candidate, Checker checker, List<Path> inputs, List<Path> answers,
+                          int timeLimitMs, int killAfterMs, int memoryKB, long outputLimitBytes,
+                          CancelToken cancel, BatchVerdicts verdicts) throws IOException, InterruptedException {
+        if (checker.needsSandbox()) {
+            throw new IllegalArgumentException("Batch runs need a checker that runs in the JVM");
         }
+        if (inputs.isEmpty()) return 0;
+
+        // The harness removes outputs once they are judged, so about two are on disk at a time
+        long staged = sizeOf(candidate.binaryDir.resolve(BINARY_NAME)) + 2 * outputLimitBytes;
+        for (Path input : inputs) staged += sizeOf(input);
+        try (WorkspaceManager.Reservation _ = workspaces.reserve(staged)) {
+            return runBatch(candidate, checker, inputs, answers, timeLimitMs, killAfterMs, memoryKB, outputLimitBytes,
+                    cancel, verdicts);
+        }
+    }
 
-        String actual = cand.stdout.trim();
-        if (Objects.equals(actual, expected)) {
-            return new JudgeVerdict(SubmissionStatus.ACCEPTED,
-                    "Time: " + cand.timeUsedMillis + "ms, Memory: " + cand.memoryUsedKB + "KB",
-                    cand.timeUsedMillis, cand.memoryUsedKB);
-        } else {
-            return new JudgeVerdict(SubmissionStatus.WRONG_ANSWER,
-                    "Expected output and actual output differ",
-                    cand.timeUsedMillis, cand.memoryUsedKB);
+    private int runBatch(CompiledProgram candidate, Checker checker, List<Path> inputs, List<Path> answers,
+                         int timeLimitMs, int killAfterMs, int memoryKB, long outputLimitBytes,
+                         CancelToken cancel, BatchVerdicts verdicts) throws IOException, InterruptedException {
+        int n = inputs.size();
+        long perTestWallMs = (long) (killAfterMs * wallTimeFactor) + WALL_EXTRA_MS;
+        int memoryMB = (int) Math.ceil(memoryKB / 1024.0);
+
+        limiter.acquire();
+        SandboxBackend.Sandbox sandbox = null;
+        try {
+            sandbox = sandboxBackend.acquire(memoryMB, 1.0);
+            // One KB over the limit, so an output of exactly the limit is still told apart from an overflow
+            String line = String.format(Locale.ROOT, "bash batch.sh %d %d %.3f %d", n,
+                    (int) Math.ceil(killAfterMs / 1000.0), perTestWallMs / 1000.0, outputLimitBytes / 1024 + 1);
+            List<String> command = sandbox.supervisorCommand(line);
+            if (command == null) return 0; // nothing the job could not tamper with; test by test instead
+
+            Path box = sandbox.workDir();
+            stage(candidate.binaryDir.resolve(BINARY_NAME), box.resolve(BINARY_NAME));
+            Files.write(box.resolve("batch.sh"), BATCH_HARNESS);
+            Files.createDirectories(box.resolve("in"));
+            for (int i = 0; i < n; i++) {
+                stage(inputs.get(i), box.resolve("in").resolve(String.valueOf(i)));
+            }
+
+            BatchSink sink = new BatchSink(sandbox, checker, inputs, answers, timeLimitMs, memoryKB, outputLimitBytes,
+                    verdicts);
+            try {
+                runProcess(new ProcSpec(command, sandbox, 0, sink::attach),
+                        n * (perTestWallMs + WALL_EXTRA_MS) + 5_000L, sink, cancel);
+                // The harness is gone (on a timeout it was killed), so the pump ends; wait for it before
+                // the lease goes: its callbacks write the caller's state and read files in the work dir
+                sink.awaitClosed();
+            } finally {
+                sink.detach();
+            }
+            return sink.reported;
+        } finally {
+            if (sandbox != null) sandboxBackend.release(sandbox);
+            limiter.release(-1); // a batch's wall time says nothing about one launch
         }
     }
 
-    private JudgeVerdict classifyNonZero(String who, RunResult r, long timeoutMs, long memoryKB) {
-        // 1) Compilation / Linker error: no timing info (time/mem < 0) and compiler markers in stderr
-        if ((r.timeUsedMillis < 0 && r.memoryUsedKB < 0) && hasCompileMarkers(r.stderr)) {
-            String snippet = firstLines(r.stderr, 40); // keep the message short
-            return new JudgeVerdict(
-                    SubmissionStatus.COMPILATION_ERROR,        // <-- ensure this exists in your enum
-                    who + " compilation failed:\n" + snippet,
-                    r.timeUsedMillis, r.memoryUsedKB
-            );
+    /** Parses the harness's RESULT lines as they arrive and judges each test right away. */
+    private final class BatchSink implements OutputSink {
+        private final SandboxBackend.Sandbox sandbox;
+        private final Checker checker;
+        private final List<Path> inputs;
+        private final List<Path> answers;
+        private final int timeLimitMs;
+        private final int memoryKB;
+        private final long outputLimitBytes;
+        private final BatchVerdicts verdicts;
+        private final StringBuilder pending = new StringBuilder();
+        private final CountDownLatch closed = new CountDownLatch(1);
+        private volatile OutputStream harness; // stdin of batch.sh: tests whose files may go
+        volatile int reported;
+        private boolean stopped; // guarded by this, like every call into the checker and the callback
+
+        BatchSink(SandboxBackend.Sandbox sandbox, Checker checker, List<Path> inputs, List<Path> answers,
+                  int timeLimitMs, int memoryKB, long outputLimitBytes, BatchVerdicts verdicts) {
+            this.sandbox = sandbox;
+            this.checker = checker;
+            this.inputs = inputs;
+            this.answers = answers;
+            this.timeLimitMs = timeLimitMs;
+            this.memoryKB = memoryKB;
+            this.outputLimitBytes = outputLimitBytes;
+            this.verdicts = verdicts;
+        }
+
+        @Override
+        public synchronized boolean write(byte[] buf, int off, int len) {
+            pending.append(new String(buf, off, len, StandardCharsets.US_ASCII));
+            int nl;
+            while ((nl = pending.indexOf("\n")) >= 0) {
+                String line = pending.substring(0, nl).trim();
+                pending.delete(0, nl + 1);
+                if (!stopped && line.startsWith("RESULT ")) onResult(line);
+            }
+            return true;
+        }
+
+        @Override
+        public void close() {
+            closed.countDown();
         }
 
-        // 2) Time limit exceeded
-        if (r.exitCode == 124 || (r.timeUsedMillis >= 0 && r.timeUsedMillis >= timeoutMs)) {
+        @Override
+        public boolean limitExceeded() {
+            return false;
+        }
+
+        void attach(OutputStream stdin) {
+            harness = stdin;
+        }
+
+        void awaitClosed() throws InterruptedException {
+            closed.await();
+        }
+
+        /** No verdict reaches the caller after this; waits for one being judged right now. */
+        synchronized void detach() {
+            stopped = true;
+        }
+
+        /** Results come in test order; a line that is not the next test's ends the batch as a judge error. */
+        private void onResult(String line) {
+            int pos = reported;
+            if (pos >= inputs.size()) {
+                stop();
+                return;
+            }
+            String[] f = line.split(" ");
+            int code;
+            long cpuMs, wallMs, rssKB;
+            try {
+                if (f.length != 8 || Integer.parseInt(f[1]) != pos) {
+                    throw new NumberFormatException("expected test " + pos);
+                }
+                code = Integer.parseInt(f[2]);
+                cpuMs = Long.parseLong(f[3]);
+                wallMs = Long.parseLong(f[4]);
+                rssKB = Long.parseLong(f[5]);
+            } catch (NumberFormatException e) {
+                reported = pos + 1;
+                verdicts.accept(pos, new JudgeVerdict(SubmissionStatus.RUNTIME_ERROR,
+                        "Error during judging: malformed batch result (" + e.getMessage() + ")"));
+                stop();
+                return;
+            }
+
+            // Root-owned and removed by the harness once acknowledged below
+            Path output = sandbox.workDir().resolve("out").resolve(f[7]);
+            Path errors = sandbox.workDir().resolve("out").resolve(f[7] + ".err");
+            JudgeVerdict v;
+            try {
+                RunResult r = new RunResult(code, "", readHead(errors, STDERR_TAIL_BYTES), cpuMs, wallMs, rssKB);
+                v = batchVerdict(r, output, f[6], inputs.get(pos), answers.get(pos));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                stop();
+                return;
+            } catch (IOException | RuntimeException e) {
+                v = new JudgeVerdict(SubmissionStatus.RUNTIME_ERROR, "Error during execution: " + e.getMessage());
+            }
+            acknowledge(pos);
+            reported = pos + 1;
+            if (!verdicts.accept(pos, v)) stop();
+        }
+
+        private void acknowledge(int pos) {
+            try {
+                harness.write((pos + "\n").getBytes(StandardCharsets.US_ASCII));
+                harness.flush();
+            } catch (IOException ignored) {
+                // The harness is done; the sandbox's release removes the files
+            }
+        }
+
+        private void stop() {
+            stopped = true;
+            sandbox.killJob();
+        }
+
+        private JudgeVerdict batchVerdict(RunResult r, Path output, String digest, Path input, Path answer)
+                throws IOException, InterruptedException {
+            if (r.exitCode == SIGXFSZ_EXIT || Files.size(output) > outputLimitBytes) {
+                return new JudgeVerdict(SubmissionStatus.OUTPUT_LIMIT_EXCEEDED,
+                        "Submission output limit exceeded: " + (outputLimitBytes / 1024) + "KB", r);
+            }
+            if (r.exitCode != 0 || r.timeUsedMillis > timeLimitMs) {
+                return classifyNonZero("Submission", r, timeLimitMs, memoryKB);
+            }
+            // Every in-JVM checker accepts the jury answer byte for byte
+            if (digest.equals(Hashing.sha256(answer))) {
+                return checked(Checker.Result.accepted(), r);
+            }
+            Checker.Session session = checker.begin(input, answer, outputLimitBytes);
+            try {
+                byte[] buf = new byte[64 * 1024];
+                try (InputStream in = Files.newInputStream(output)) {
+                    int n;
+                    while ((n = in.read(buf)) > 0 && session.write(buf, 0, n)) {}
+                }
+                session.close();
+                return checked(session.verdict(), r);
+            } finally {
+                session.dispose();
+            }
+        }
+    }
+
+    private static String readHead(Path file, int maxBytes) throws IOException {
+        if (!Files.exists(file)) return "";
+        try (InputStream in = Files.newInputStream(file)) {
+            return new String(in.readNBytes(maxBytes), StandardCharsets.UTF_8);
+        }
+    }
+
+    private static byte[] loadResource(String name) {
+        try (InputStream in = CppExecutor.class.getResourceAsStream(name)) {
+            if (in == null) throw new IllegalStateException("Missing " + name);
+            return in.readAllBytes();
+        } catch (IOException e) {
+            throw new IllegalStateException("Cannot read " + name, e);
+        }
+    }
+
+    public JudgeVerdict classifyNonZero(String who, RunResult r, long timeoutMs, long memoryKB) {
+        // 1) Time limit exceeded: over the CPU limit, or stopped by the wall-clock cap
+        if (r.timeUsedMillis > timeoutMs) {
+            return new JudgeVerdict(
+                    SubmissionStatus.TIME_LIMIT_EXCEEDED,
+                    who + " time limit exceeded: " + timeoutMs + "ms", r);
+        }
+        if (r.exitCode == 124) {
             return new JudgeVerdict(
                     SubmissionStatus.TIME_LIMIT_EXCEEDED,
-                    who + " time limit exceeded: " + timeoutMs + "ms",
-                    r.timeUsedMillis, r.memoryUsedKB
-            );
+                    who + " wall-clock limit exceeded (CPU " + r.timeUsedMillis + "ms of " + timeoutMs + "ms)", r);
         }
 
-        // 3) Memory limit exceeded (common: 137/SIGKILL or 'Killed')
+        // 2) Memory limit exceeded (common: 137/SIGKILL or 'Killed')
         if (r.exitCode == 137 || r.stderr.contains("Killed")) {
             return new JudgeVerdict(
                     SubmissionStatus.MEMORY_LIMIT_EXCEEDED,
-                    who + " memory limit exceeded: " + memoryKB + "KB",
-                    r.timeUsedMillis, r.memoryUsedKB
-            );
+                    who + " memory limit exceeded: " + memoryKB + "KB", r);
         }
 
-        // 4) Heuristic backup using measured RSS
+        // 3) Heuristic backup using measured RSS
         if (r.memoryUsedKB >= 0 && r.memoryUsedKB >= memoryKB) {
             return new JudgeVerdict(
                     SubmissionStatus.MEMORY_LIMIT_EXCEEDED,
-                    who + " memory usage " + r.memoryUsedKB + "KB exceeded limit " + memoryKB + "KB",
-                    r.timeUsedMillis, r.memoryUsedKB
-            );
+                    who + " memory usage " + r.memoryUsedKB + "KB exceeded limit " + memoryKB + "KB", r);
         }
 
-        // 5) Generic runtime error
+        // 4) Generic runtime error
         return new JudgeVerdict(
                 SubmissionStatus.RUNTIME_ERROR,
-                who + " runtime error: " + (r.stderr.isBlank() ? ("exitCode=" + r.exitCode) : r.stderr),
-                r.timeUsedMillis, r.memoryUsedKB
-        );
+                who + " runtime error: " + (r.stderr.isBlank() ? ("exitCode=" + r.exitCode) : r.stderr), r);
     }
 
 
     /* ===================== Internal helpers ===================== */
 
-    private static boolean hasCompileMarkers(String err) {
-        if (err == null) return false;
-        String e = err.toLowerCase();
-        return  e.contains("error:") ||                 // gcc/g++ diagnostics
-                e.contains("fatal error:") ||
-                e.contains("g++: ") ||                  // driver messages
-                e.contains("collect2: error") ||        // linker wrapper
-                e.contains("undefined reference to") || // linker errors
-                e.contains("multiple definition of") ||
-                e.contains("ld: ");                     // ld messages
-    }
-
     private static String firstLines(String s, int maxLines) {
         if (s == null || s.isEmpty()) return "";
         String[] lines = s.split("\\R");
@@ -293,102 +793,269 @@ public class CppExecutor {
     }
 
 
-    private ProcSpec buildCompileRunSpec(Path sourceFile,
-                                         Path outDir,
-                                         Path inputFileOrNull, // nullable
-                                         int timeLimitMs,
-                                         int memoryKB,
-                                         double cpuCores) throws IOException {
-
-        Files.createDirectories(outDir);
-
-        Path sourceParent = sourceFile.toAbsolutePath().getParent();
-        String srcMount   = toDockerMountPath(sourceParent);
-        String srcName    = sourceFile.getFileName().toString();
-        String binMount   = toDockerMountPath(outDir.toAbsolutePath());
-
-        String containerName = "cpp-job-" + System.nanoTime();
-        int timeLimitSeconds = (int) Math.ceil(timeLimitMs / 1000.0);
-        int memoryMB         = (int) Math.ceil(memoryKB / 1024.0);
-
-        List<String> cmd = new ArrayList<>();
-        cmd.add("docker"); cmd.add("run"); cmd.add("--rm");
-        cmd.add("--name"); cmd.add(containerName);
-        cmd.add("--network"); cmd.add("none");
-        cmd.add("--cpus=" + cpuCores);
-        cmd.add("-m"); cmd.add(memoryMB + "m");
-        cmd.add("--pids-limit"); cmd.add(String.valueOf(DEFAULT_PIDS_LIMIT));
-        cmd.add("--read-only");
-        cmd.add("-v"); cmd.add(srcMount + ":/work:ro");
-        cmd.add("-v"); cmd.add(binMount + ":/out:rw");
-
-        String runLine;
-        if (inputFileOrNull != null) {
-            String inputMount = toDockerMountPath(inputFileOrNull.toAbsolutePath().getParent());
-            String inputName  = inputFileOrNull.getFileName().toString();
-            cmd.add("-v"); cmd.add(inputMount + ":/input:ro");
-            runLine = "g++ -O2 -std=c++17 /work/" + srcName + " -o /out/main && " +
-                      "/usr/bin/time -f '" + TIME_FMT + "' timeout " + timeLimitSeconds + "s /out/main < /input/" + inputName;
-        } else {
-            runLine = "g++ -O2 -std=c++17 /work/" + srcName + " -o /out/main && " +
-                      "/usr/bin/time -f '" + TIME_FMT + "' timeout " + timeLimitSeconds + "s /out/main";
+    /**
+     * Compile inside a pooled sandbox; on success the binary is moved to {@code outDir/main}.
+     * Like every lease, it holds workspace quota for what it writes into the sandbox's directory.
+     */
+    private RunResult compileInSandbox(Path sourceFile, Path outDir) throws IOException, InterruptedException {
+        try (WorkspaceManager.Reservation _ = workspaces.reserve(sizeOf(sourceFile) + BUILD_RESERVE_BYTES)) {
+            return compileReserved(sourceFile, outDir);
+        }
+    }
+
+    private RunResult compileReserved(Path sourceFile, Path outDir) throws IOException, InterruptedException {
+        limiter.acquire();
+        SandboxBackend.Sandbox sandbox = null;
+        try {
+            sandbox = sandboxBackend.acquire(COMPILE_MEMORY_MB, 1.0);
+            Files.createDirectories(sandbox.workDir().resolve("out"));
+            Files.copy(sourceFile, sandbox.workDir().resolve("main.cpp"), StandardCopyOption.REPLACE_EXISTING);
+
+            String line = "g++ -O2 -std=c++17 main.cpp -o out/" + BINARY_NAME;
+            OutputSink.Capture stdout = new OutputSink.Capture(CAPTURE_LIMIT_BYTES);
+            RunResult r = runProcess(new ProcSpec(sandbox.command(line), sandbox, 0), COMPILE_TIMEOUT_MS, stdout, CancelToken.NONE);
+
+            Path built = sandbox.workDir().resolve("out").resolve(BINARY_NAME);
+            if (r.exitCode == 0 && Files.isRegularFile(built)) {
+                Files.createDirectories(outDir);
+                Files.move(built, outDir.resolve(BINARY_NAME), StandardCopyOption.REPLACE_EXISTING);
+            }
+            return r;
+        } finally {
+            if (sandbox != null) sandboxBackend.release(sandbox);
+            limiter.release(-1); // compile time says nothing about launch overhead
         }
+    }
 
-        cmd.add("--tmpfs"); cmd.add("/tmp:rw,noexec,nosuid,size=64m");
-        cmd.add(DOCKER_IMAGE);
-        cmd.add("bash"); cmd.add("-lc");
-        cmd.add(runLine);
+    /** Run a prebuilt binary inside a pooled sandbox; no compiler is invoked. */
+    private RunResult runInSandbox(CompiledProgram program,
+                                   Path inputFileOrNull, // nullable
+                                   int timeLimitMs,
+                                   int memoryKB,
+                                   double cpuCores,
+                                   OutputSink stdout,
+                                   CancelToken cancel) throws IOException, InterruptedException {
+        if (inputFileOrNull == null) {
+            return runStaged(program, Map.of(), " < /dev/null", timeLimitMs, memoryKB, cpuCores, stdout, cancel);
+        }
+        return runStaged(program, Map.of("input.txt", inputFileOrNull), " < input.txt",
+                timeLimitMs, memoryKB, cpuCores, stdout, cancel);
+    }
+
+    /** Stage the binary plus named files into a leased sandbox and run {@code ./main<argsAndRedirect>}. */
+    private RunResult runStaged(CompiledProgram program,
+                                Map<String, Path> files,
+                                String argsAndRedirect,
+                                int timeLimitMs,
+                                int memoryKB,
+                                double cpuCores,
+                                OutputSink stdout,
+                                CancelToken cancel) throws IOException, InterruptedException {
+        long staged = sizeOf(program.binaryDir.resolve(BINARY_NAME));
+        for (Path f : files.values()) staged += sizeOf(f);
+        try (WorkspaceManager.Reservation _ = workspaces.reserve(staged)) {
+            return runReserved(program, files, argsAndRedirect, timeLimitMs, memoryKB, cpuCores, stdout, cancel);
+        }
+    }
+
+    private RunResult runReserved(CompiledProgram program, Map<String, Path> files, String argsAndRedirect,
+                                  int timeLimitMs, int memoryKB, double cpuCores, OutputSink stdout,
+                                  CancelToken cancel) throws IOException, InterruptedException {
+        long wallLimitMs = (long) (timeLimitMs * wallTimeFactor) + WALL_EXTRA_MS;
+        int memoryMB     = (int) Math.ceil(memoryKB / 1024.0);
+
+        limiter.acquire();
+        long overheadMs = -1;
+        SandboxBackend.Sandbox sandbox = null;
+        try {
+            long setupStart = System.nanoTime();
+            sandbox = sandboxBackend.acquire(memoryMB, cpuCores);
+            stage(program.binaryDir.resolve(BINARY_NAME), sandbox.workDir().resolve(BINARY_NAME));
+            for (Map.Entry<String, Path> f : files.entrySet()) {
+                stage(f.getValue(), sandbox.workDir().resolve(f.getKey()));
+            }
+            long setupMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - setupStart);
+
+            RunResult r;
+            if (sandbox.cgroup() != null) {
+                // CPU time and peak memory come from the container's cgroup; RLIMIT_CPU is only a backstop
+                int cpuBackstopSeconds = (int) Math.ceil(timeLimitMs / 1000.0) + 1;
+                String line = "ulimit -t " + cpuBackstopSeconds + "; exec ./" + BINARY_NAME + argsAndRedirect;
+                r = runProcess(new ProcSpec(sandbox.command(line), sandbox, timeLimitMs),
+                        wallLimitMs, stdout, cancel);
+                // Launch overhead: setup plus wall time the program did not spend on its CPU
+                if (r.exitCode == 0) overheadMs = setupMs + Math.max(0, r.wallTimeMillis - r.timeUsedMillis);
+                return r;
+            }
+
+            // No cgroup access: wall time and max RSS as reported by /usr/bin/time
+            int wallLimitSeconds = (int) Math.ceil(wallLimitMs / 1000.0);
+            String line = "/usr/bin/time -f '" + TIME_FMT + "' timeout " + wallLimitSeconds + "s ./" + BINARY_NAME
+                    + argsAndRedirect;
+            r = runProcess(new ProcSpec(sandbox.command(line), sandbox, 0), wallLimitMs + 5_000L, stdout, cancel);
+            overheadMs = setupMs;
+            return r;
+        } finally {
+            if (sandbox != null) sandboxBackend.release(sandbox);
+            limiter.release(overheadMs);
+        }
+    }
 
-        return new ProcSpec(cmd, containerName);
+    /**
+     * Copy a file into the sandbox work dir. Never hard-link: the sandbox user could then
+     * rewrite the cached binary or the problem's test input through the shared inode.
+     */
+    private static void stage(Path from, Path to) throws IOException {
+        Files.copy(from, to, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.COPY_ATTRIBUTES);
     }
 
-    private RunResult runProcess(ProcSpec spec, long timeoutMillis) throws IOException, InterruptedException {
-        ProcessBuilder pb = new ProcessBuilder(spec.command);
-        pb.redirectErrorStream(false);
-        Process p = pb.start();
+    private RunResult runProcess(ProcSpec spec, long timeoutMillis, OutputSink stdout, CancelToken cancel)
+            throws IOException, InterruptedException {
+        if (cancel.isCancelled()) {
+            stdout.close();
+            return new RunResult(124, "", "Cancelled.", -1, -1);
+        }
+        CgroupStats cgroup = spec.cpuLimitMs > 0 ? spec.sandbox.cgroup() : null;
+        try (CgroupStats.Meter meter = cgroup != null ? cgroup.start() : null) {
+            ProcessBuilder pb = new ProcessBuilder(spec.command);
+            pb.redirectErrorStream(false);
+            long started = System.nanoTime();
+            Process p = pb.start();
+            if (spec.stdin != null) spec.stdin.accept(p.getOutputStream());
+
+            // stdout is pumped into the sink; past its limit the sandbox is killed instead of buffering on
+            CompletableFuture<Void> outF = pumpAsync(p.getInputStream(), stdout, () -> killSandboxProcess(p, spec));
+            CompletableFuture<String> errF = readStderrAsync(p.getErrorStream());
+
+            cancel.bind(() -> killSandboxProcess(p, spec));
+            boolean finished;
+            boolean cpuLimitHit = false;
+            try {
+                if (meter == null) {
+                    finished = p.waitFor(timeoutMillis, TimeUnit.MILLISECONDS);
+                } else {
+                    long deadline = started + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+                    while (true) {
+                        if (p.waitFor(CPU_POLL_MS, TimeUnit.MILLISECONDS)) { finished = true; break; }
+                        meter.sample();
+                        if (meter.cpuMillis() > spec.cpuLimitMs) {
+                            cpuLimitHit = true;
+                            finished = spec.sandbox.killJob() && p.waitFor(2, TimeUnit.SECONDS);
+                            break;
+                        }
+                        if (System.nanoTime() >= deadline) { finished = false; break; }
+                    }
+                }
+            } finally {
+                cancel.unbind();
+            }
+            long wallMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started);
 
-        CompletableFuture<String> outF = readAsync(p.getInputStream());
-        CompletableFuture<String> errF = readAsync(p.getErrorStream());
+            if (!finished || cancel.isCancelled()) {
+                long cpuMs = meter != null ? meter.cpuMillis() : -1; // the cgroup goes away with the container
+                killSandboxProcess(p, spec);
 
-        boolean finished = p.waitFor(timeoutMillis, TimeUnit.MILLISECONDS);
-        if (!finished) {
-            p.destroyForcibly();
-            bestEffortKillContainer(spec.containerName);
+                awaitQuietly(outF, Duration.ofSeconds(2));
+                String why = cancel.isCancelled() ? "Cancelled."
+                        : meter != null ? "Wall-clock limit exceeded." : "Runner timed out (hard cap).";
+                return new RunResult(124, capturedText(stdout), why, cpuMs, wallMs, -1);
+            }
 
-            String out = getFuture(outF, Duration.ofMillis(200));
-            return new RunResult(124, out == null ? "" : out, "Runner timed out (hard cap).", -1, -1);
+            int code = p.exitValue();
+            awaitQuietly(outF, Duration.ofSeconds(5));
+            String err = getFuture(errF, Duration.ofSeconds(1));
+            if (err == null) err = "";
+
+            long timeMs;
+            long memKB;
+            String cleanErr;
+            if (meter != null) {
+                timeMs = meter.cpuMillis();
+                memKB = meter.peakKB();
+                if (cpuLimitHit) code = 124;
+                else if (meter.oomKilled()) code = 137;
+                cleanErr = err.trim();
+            } else {
+                ParsedUsage usage = parseUsageAndStrip(err);
+                timeMs = usage.timeMs;
+                memKB = usage.memKB;
+                cleanErr = usage.cleanStderr.trim();
+            }
+            if (stdout.limitExceeded()) {
+                cleanErr = (cleanErr + "\nOutput limit exceeded.").trim();
+            }
+            return new RunResult(code, capturedText(stdout), cleanErr, timeMs, wallMs, memKB);
         }
+    }
 
-        int code = p.exitValue();
-        String out = getFuture(outF, Duration.ofSeconds(1));
-        String err = getFuture(errF, Duration.ofSeconds(1));
-        if (out == null) out = "";
-        if (err == null) err = "";
+    private static String capturedText(OutputSink sink) {
+        return sink instanceof OutputSink.Capture c ? c.text() : "";
+    }
 
-        ParsedUsage usage = parseUsageAndStrip(err);
-        return new RunResult(code, out, usage.cleanStderr.trim(), usage.timeMs, usage.memKB);
+    /** Killing the local process is not enough to stop the job; the backend tears the sandbox down. */
+    private static void killSandboxProcess(Process p, ProcSpec spec) {
+        p.destroyForcibly();
+        spec.sandbox.destroy();
     }
 
-    private static void bestEffortKillContainer(String name) {
-        if (name == null || name.isBlank()) return;
-        try {
-            new ProcessBuilder("docker", "rm", "-f", name)
-                    .redirectErrorStream(true)
-                    .start()
-                    .waitFor(3, TimeUnit.SECONDS);
-        } catch (Exception ignored) {}
+    private static CompletableFuture<Void> pumpAsync(InputStream in, OutputSink sink, Runnable onLimit) {
+        return CompletableFuture.runAsync(() -> {
+            byte[] buf = new byte[64 * 1024];
+            try (in) {
+                int n;
+                while ((n = in.read(buf)) > 0) {
+                    if (!sink.write(buf, 0, n)) {
+                        onLimit.run();
+                        break;
+                    }
+                }
+            } catch (IOException ignored) {
+            } finally {
+                try { sink.close(); } catch (IOException ignored) {}
+            }
+        }, STREAM_POOL);
     }
 
-    private static CompletableFuture<String> readAsync(InputStream in) {
+    /** Reads stderr keeping only its head and tail, so a flood of diagnostics cannot exhaust the heap. */
+    private static CompletableFuture<String> readStderrAsync(InputStream in) {
         return CompletableFuture.supplyAsync(() -> {
+            byte[] head = new byte[STDERR_HEAD_BYTES];
+            byte[] tail = new byte[STDERR_TAIL_BYTES];
+            int headLen = 0;
+            long tailTotal = 0;
+            byte[] buf = new byte[8 * 1024];
             try (in) {
-                return new String(in.readAllBytes(), StandardCharsets.UTF_8);
-            } catch (IOException e) {
-                return "";
+                int n;
+                while ((n = in.read(buf)) > 0) {
+                    int toHead = Math.min(n, head.length - headLen);
+                    System.arraycopy(buf, 0, head, headLen, toHead);
+                    headLen += toHead;
+                    for (int i = toHead; i < n; i++) {
+                        tail[(int) (tailTotal++ % tail.length)] = buf[i];
+                    }
+                }
+            } catch (IOException ignored) {}
+
+            StringBuilder sb = new StringBuilder(new String(head, 0, headLen, StandardCharsets.UTF_8));
+            if (tailTotal > 0) {
+                int len = (int) Math.min(tailTotal, tail.length);
+                byte[] ordered = new byte[len];
+                for (int i = 0; i < len; i++) {
+                    ordered[i] = tail[(int) ((tailTotal - len + i) % tail.length)];
+                }
+                if (tailTotal > len) sb.append("\n... (truncated)\n");
+                sb.append(new String(ordered, StandardCharsets.UTF_8));
             }
+            return sb.toString();
         }, STREAM_POOL);
     }
 
+    private static void awaitQuietly(CompletableFuture<?> f, Duration timeout) {
+        try {
+            f.get(timeout.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (Exception ignored) {}
+    }
+
     private static String getFuture(CompletableFuture<String> f, Duration timeout) {
         try {
             return f.get(timeout.toMillis(), TimeUnit.MILLISECONDS);
@@ -397,11 +1064,6 @@ public class CppExecutor {
         }
     }
 
-    private static String toDockerMountPath(Path p) {
-        String raw = p.isAbsolute() ? p.toString() : p.toAbsolutePath().toString();
-        return raw.replace('\\', '/');
-    }
-
     /* ---------- stderr parsing for /usr/bin/time output ---------- */
 
     private static final class ParsedUsage {
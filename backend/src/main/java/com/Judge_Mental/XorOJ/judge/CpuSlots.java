@@ -0,0 +1,171 @@
+package com.Judge_Mental.XorOJ.judge;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.Semaphore;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PostConstruct;
+
+/**
+ * The host's cores as exclusive worker slots. A slot is one physical core (all of its SMT
+ * siblings, so no neighbour shares its caches or execution units) plus the NUMA node it sits
+ * on. Sandbox backends lease one for every job and pin the sandbox to it with cpuset, so
+ * concurrently running submissions never share a core and their timings stay comparable.
+ *
+ * Disabled by default ({@code judge.cpu-pinning.enabled}); when disabled, {@link #acquire(int)}
+ * returns null and sandboxes keep their plain CFS quota.
+ */
+@Component
+public class CpuSlots {
+
+    private static final Path CPU_ROOT = Path.of("/sys/devices/system/cpu");
+    private static final Path NODE_ROOT = Path.of("/sys/devices/system/node");
+
+    @Value("${judge.cpu-pinning.enabled:false}")
+    private boolean enabled;
+
+    /** CPUs that may be used, in cpulist syntax (e.g. {@code 2-15}); empty = every online CPU. */
+    @Value("${judge.cpu-pinning.cpus:}")
+    private String allowedCpus;
+
+    /** Physical cores left to the JVM, the database and the Docker daemon. */
+    @Value("${judge.cpu-pinning.reserved-cores:1}")
+    private int reservedCores;
+
+    /** Also bind memory to the slot's NUMA node. */
+    @Value("${judge.cpu-pinning.numa:false}")
+    private boolean numa;
+
+    /** One physical core. {@code mems} is null unless NUMA binding is on. */
+    public record Slot(int index, String cpus, String mems) {}
+
+    private final List<Slot> slots = new ArrayList<>();
+    private boolean[] busy;
+    private Semaphore free;
+
+    @PostConstruct
+    public void init() {
+        if (!enabled) return;
+        try {
+            slots.addAll(discover());
+        } catch (IOException | RuntimeException e) {
+            System.out.println("CPU pinning disabled, topology unreadable: " + e.getMessage());
+        }
+        if (slots.isEmpty()) {
+            enabled = false;
+            return;
+        }
+        busy = new boolean[slots.size()];
+        free = new Semaphore(slots.size(), true);
+        System.out.println("CPU pinning: " + slots.size() + " exclusive core slots " + slots);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /** Number of jobs that can run at once when pinning; 0 when disabled. */
+    public int size() {
+        return enabled ? slots.size() : 0;
+    }
+
+    /**
+     * Lease a free slot for one job, preferring {@code preferred} (the slot the sandbox had last,
+     * so its cpuset usually needs no change). Blocks until one is free; null when disabled.
+     */
+    public Slot acquire(int preferred) throws InterruptedException {
+        if (!enabled) return null;
+        free.acquire();
+        synchronized (this) {
+            int pick = preferred >= 0 && preferred < busy.length && !busy[preferred] ? preferred : -1;
+            for (int i = 0; pick < 0 && i < busy.length; i++) {
+                if (!busy[i]) pick = i;
+            }
+            busy[pick] = true;
+            return slots.get(pick);
+        }
+    }
+
+    public void release(Slot slot) {
+        if (slot == null) return;
+        synchronized (this) {
+            if (!busy[slot.index()]) return;
+            busy[slot.index()] = false;
+        }
+        free.release();
+    }
+
+    // ---------- Topology ----------
+
+    private List<Slot> discover() throws IOException {
+        TreeSet<Integer> cpus = parseCpuList(Files.readString(CPU_ROOT.resolve("online")).trim());
+        if (!allowedCpus.isBlank()) cpus.retainAll(parseCpuList(allowedCpus));
+
+        Map<Integer, Integer> nodeOf = new TreeMap<>();
+        if (Files.isDirectory(NODE_ROOT)) {
+            try (var nodes = Files.list(NODE_ROOT)) {
+                for (Path node : nodes.filter(p -> p.getFileName().toString().matches("node\\d+")).toList()) {
+                    int id = Integer.parseInt(node.getFileName().toString().substring(4));
+                    for (int cpu : parseCpuList(Files.readString(node.resolve("cpulist")).trim())) nodeOf.put(cpu, id);
+                }
+            }
+        }
+
+        // Group SMT siblings into physical cores, keyed by their lowest CPU number
+        Map<Integer, TreeSet<Integer>> cores = new TreeMap<>();
+        for (int cpu : cpus) {
+            Path siblings = CPU_ROOT.resolve("cpu" + cpu).resolve("topology").resolve("thread_siblings_list");
+            TreeSet<Integer> core = Files.isReadable(siblings)
+                    ? parseCpuList(Files.readString(siblings).trim())
+                    : new TreeSet<>(List.of(cpu));
+            core.retainAll(cpus);
+            cores.putIfAbsent(core.first(), core);
+        }
+
+        List<TreeSet<Integer>> usable = new ArrayList<>(cores.values());
+        int skip = Math.min(Math.max(reservedCores, 0), usable.size() - 1);
+        usable = usable.subList(skip, usable.size()); // the lowest cores usually carry IRQs and housekeeping
+
+        List<Slot> result = new ArrayList<>();
+        for (TreeSet<Integer> core : usable) {
+            Integer node = nodeOf.get(core.first());
+            result.add(new Slot(result.size(), toCpuList(core), numa && node != null ? String.valueOf(node) : null));
+        }
+        return result;
+    }
+
+    static TreeSet<Integer> parseCpuList(String list) {
+        TreeSet<Integer> cpus = new TreeSet<>();
+        for (String part : list.split(",")) {
+            part = part.trim();
+            if (part.isEmpty()) continue;
+            int dash = part.indexOf('-');
+            if (dash < 0) {
+                cpus.add(Integer.parseInt(part));
+            } else {
+                int from = Integer.parseInt(part.substring(0, dash));
+                int to = Integer.parseInt(part.substring(dash + 1));
+                for (int c = from; c <= to; c++) cpus.add(c);
+            }
+        }
+        return cpus;
+    }
+
+    private static String toCpuList(TreeSet<Integer> cpus) {
+        StringBuilder sb = new StringBuilder();
+        for (int c : cpus) {
+            if (sb.length() > 0) sb.append(',');
+            sb.append(c);
+        }
+        return sb.toString();
+    }
+}
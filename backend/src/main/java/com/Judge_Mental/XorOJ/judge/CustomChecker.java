@@ -0,0 +1,103 @@
+package com.Judge_Mental.XorOJ.judge;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.file.Path;
+
+import com.Judge_Mental.XorOJ.judge.CppExecutor.CompiledProgram;
+import com.Judge_Mental.XorOJ.judge.CppExecutor.RunResult;
+
+/**
+ * Problem-supplied C++ checker, testlib style: run in the sandbox as
+ * {@code checker input.txt output.txt answer.txt}; exit code 0 accepts, 1 (WA) and
+ * 2 (presentation error) reject, anything else means the checker itself failed.
+ *
+ * The candidate's output is spooled to a file (bounded by the output limit) in a workspace
+ * that lives as long as the session.
+ */
+final class CustomChecker implements Checker {
+
+    private final CppExecutor cppExecutor;
+    private final WorkspaceManager workspaces;
+    private final CompiledProgram program;
+
+    CustomChecker(CppExecutor cppExecutor, WorkspaceManager workspaces, CompiledProgram program) {
+        this.cppExecutor = cppExecutor;
+        this.workspaces = workspaces;
+        this.program = program;
+    }
+
+    @Override
+    public boolean needsSandbox() {
+        return true;
+    }
+
+    @Override
+    public Session begin(Path input, Path answer, long outputLimitBytes) throws IOException {
+        WorkspaceManager.Workspace work;
+        try {
+            work = workspaces.allocate(outputLimitBytes);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for workspace quota");
+        }
+        Path spool = work.resolve("output.txt");
+        try {
+            return new SpoolSession(input, answer, spool, work, new OutputSink.ToFile(spool, outputLimitBytes));
+        } catch (IOException | RuntimeException e) {
+            work.close();
+            throw e;
+        }
+    }
+
+    private final class SpoolSession implements Session {
+        private final Path input;
+        private final Path answer;
+        private final Path spool;
+        private final WorkspaceManager.Workspace work;
+        private final OutputSink.ToFile out;
+
+        SpoolSession(Path input, Path answer, Path spool, WorkspaceManager.Workspace work, OutputSink.ToFile out) {
+            this.input = input;
+            this.answer = answer;
+            this.spool = spool;
+            this.work = work;
+            this.out = out;
+        }
+
+        @Override
+        public boolean write(byte[] buf, int off, int len) throws IOException {
+            return out.write(buf, off, len);
+        }
+
+        @Override
+        public void close() throws IOException {
+            out.close();
+        }
+
+        @Override
+        public boolean limitExceeded() {
+            return out.limitExceeded();
+        }
+
+        @Override
+        public Result verdict() throws IOException, InterruptedException {
+            RunResult r = cppExecutor.runChecker(program, input, spool, answer);
+            String message = r.stderr.isBlank() ? r.stdout.trim() : r.stderr;
+            switch (r.exitCode) {
+                case 0:
+                    return Result.accepted();
+                case 1:
+                case 2:
+                    return Result.wrongAnswer(message.isEmpty() ? "Rejected by checker" : message);
+                default:
+                    return new Result(Outcome.CHECKER_FAILED, "Checker failed (exit " + r.exitCode + "): " + message);
+            }
+        }
+
+        @Override
+        public void dispose() {
+            work.close();
+        }
+    }
+}
@@ -0,0 +1,390 @@
+package com.Judge_Mental.XorOJ.judge;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Docker sandbox backend: a pool of pre-started, resource-limited containers reused through
+ * {@code docker exec}.
+ *
+ * Every container owns one host work directory, under {@link WorkspaceManager#sandboxRoot()},
+ * mounted at {@code /box}; a job stages its files there, execs, and the directory is wiped on release. A container that timed out (or fails its
+ * health check) is removed and replaced, so a runaway job never leaks into the next one.
+ */
+@Component
+@ConditionalOnProperty(name = "judge.sandbox.backend", havingValue = "docker", matchIfMissing = true)
+public class DockerSandboxBackend implements SandboxBackend {
+
+    static final String DOCKER_IMAGE = "gcc-time:13";
+    static final String BOX = "/box";
+    private static final int DEFAULT_PIDS_LIMIT = 256;
+    private static final long HEALTH_CHECK_IDLE_MS = 30_000L;
+
+    @Value("${judge.sandbox.pool-size:0}")
+    private int configuredPoolSize;
+
+    @Value("${judge.workers:0}")
+    private int configuredWorkers;
+
+    @Value("${judge.compile.workers:0}")
+    private int configuredCompileWorkers;
+
+    @Value("${judge.sandbox.max-memory-mb:1024}")
+    private int maxMemoryMB;
+
+    /** Host mount of the cgroup v2 hierarchy; usage is read from the containers' cgroups below it. */
+    @Value("${judge.sandbox.cgroup-root:/sys/fs/cgroup}")
+    private String cgroupRoot;
+
+    private final CpuSlots cpuSlots;
+    private final WorkspaceManager workspaces;
+    private final BlockingQueue<Slot> idle = new LinkedBlockingQueue<>();
+    private final List<Slot> slots = new ArrayList<>();
+    private volatile String userSpec; // uid:gid of the JVM so files in /box stay host-owned
+
+    public DockerSandboxBackend(CpuSlots cpuSlots, WorkspaceManager workspaces) {
+        this.cpuSlots = cpuSlots;
+        this.workspaces = workspaces;
+    }
+
+    /** One reusable sandbox: a container plus its private work directory. */
+    final class Slot implements Sandbox {
+        final int index;
+        final Path workDir;
+        volatile String containerName;
+        volatile int memoryMB;
+        volatile double cpus;
+        volatile long lastUsedMs;
+        volatile boolean broken;
+        volatile CgroupStats cgroup; // null when the container's cgroup is not visible to the JVM
+        volatile CpuSlots.Slot cpu;   // exclusive core while leased, when CPU pinning is on
+        volatile CpuSlots.Slot pinnedTo; // cpuset currently applied to the container
+
+        Slot(int index, Path workDir) {
+            this.index = index;
+            this.workDir = workDir;
+        }
+
+        @Override
+        public Path workDir() { return workDir; }
+
+        @Override
+        public List<String> command(String shellLine) { return execCommand(this, null, shellLine); }
+
+        @Override
+        public List<String> supervisorCommand(String shellLine) { return execCommand(this, "0", shellLine); }
+
+        @Override
+        public CgroupStats cgroup() { return cgroup; }
+
+        @Override
+        public boolean killJob() { return killJobProcesses(this); }
+
+        /** docker exec does not stop the process inside; remove the container, release replaces it. */
+        @Override
+        public void destroy() {
+            if (broken) return;
+            broken = true;
+            removeContainer(containerName);
+        }
+    }
+
+    // ---------- Lifecycle ----------
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void warmUp() {
+        int n = poolSize();
+        Thread t = new Thread(() -> {
+            for (int i = 0; i < n; i++) {
+                Slot s = newSlot(i);
+                try {
+                    ensureContainer(s);
+                } catch (Exception e) {
+                    System.out.println("Sandbox slot " + i + " warm-up failed: " + e.getMessage());
+                }
+                idle.offer(s);
+            }
+            System.out.println("Sandbox pool ready with " + n + " containers");
+        }, "sandbox-warmup");
+        t.setDaemon(true);
+        t.start();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        synchronized (slots) {
+            for (Slot s : slots) removeContainer(s.containerName);
+        }
+    }
+
+    public int poolSize() {
+        if (configuredPoolSize > 0) return configuredPoolSize;
+        // Pinned jobs cannot outnumber the core slots; a few spares absorb container restarts
+        if (cpuSlots.isEnabled()) return cpuSlots.size() + 2;
+        // Compile and execute stages lease sandboxes concurrently
+        int cores = Runtime.getRuntime().availableProcessors();
+        int execute = configuredWorkers > 0 ? configuredWorkers : cores;
+        int compile = configuredCompileWorkers > 0 ? configuredCompileWorkers : Math.max(1, cores / 2);
+        return execute + compile;
+    }
+
+    // ---------- Leasing ----------
+
+    /**
+     * Lease a ready sandbox, adjusting its memory/CPU limits for this job.
+     * Blocks until one is free.
+     */
+    @Override
+    public Slot acquire(int memoryMB, double cpus) throws IOException, InterruptedException {
+        Slot s = idle.take();
+        try {
+            if (System.currentTimeMillis() - s.lastUsedMs > HEALTH_CHECK_IDLE_MS && !isRunning(s.containerName)) {
+                s.broken = true;
+            }
+            if (s.broken || s.containerName == null) {
+                replace(s);
+            }
+            applyLimits(s, memoryMB, cpus);
+            pin(s);
+            resetWorkDir(s);
+            return s;
+        } catch (IOException | InterruptedException | RuntimeException e) {
+            s.broken = true;
+            cpuSlots.release(s.cpu);
+            s.cpu = null;
+            idle.offer(s);
+            throw e;
+        }
+    }
+
+    /**
+     * Return a sandbox to the pool; broken containers are replaced, the work dir is wiped.
+     * Every job uses the same uid, so whatever the job left running is killed here, before the
+     * next job's files are staged into /box; a container that cannot be scrubbed is replaced.
+     */
+    @Override
+    public void release(Sandbox sandbox) {
+        Slot s = (Slot) sandbox;
+        s.lastUsedMs = System.currentTimeMillis();
+        cpuSlots.release(s.cpu);
+        s.cpu = null;
+        try {
+            if (!s.broken && !scrub(s)) s.broken = true;
+            if (s.broken) replace(s);
+            resetWorkDir(s);
+        } catch (Exception e) {
+            s.broken = true;
+        }
+        idle.offer(s);
+    }
+
+    /**
+     * {@code docker exec} command running a shell line inside the slot's container, as the
+     * container's user or as {@code user} (then with stdin attached). Leftover processes and
+     * /tmp contents from the previous job are cleared first.
+     */
+    private List<String> execCommand(Slot s, String user, String shellLine) {
+        List<String> cmd = new ArrayList<>();
+        cmd.add("docker"); cmd.add("exec");
+        if (user != null) { cmd.add("-i"); cmd.add("-u"); cmd.add(user); }
+        cmd.add("-w"); cmd.add(BOX);
+        cmd.add(s.containerName);
+        cmd.add("bash"); cmd.add("-c");
+        cmd.add("kill -9 -1 2>/dev/null; rm -rf /tmp/* /tmp/.[!.]* 2>/dev/null; " + shellLine);
+        return cmd;
+    }
+
+    /**
+     * Kill the job's processes but keep the container: {@code kill -1} spares PID 1, the idle
+     * {@code sleep}. Used when a CPU limit is hit, which is common and should not cost a restart.
+     * Runs as root, so a batch harness goes too.
+     */
+    private boolean killJobProcesses(Slot s) {
+        try {
+            return docker(List.of("docker", "exec", "-u", "0", s.containerName, "kill", "-9", "-1"), 5) >= 0;
+        } catch (Exception e) {
+            return false;
+        }
+    }
+
+    /**
+     * Kill every job process (PID 1, the idle {@code sleep}, survives), empty /tmp and /dev/shm,
+     * and empty /box, which a batch run leaves owned by root, giving it back to the JVM user.
+     */
+    private boolean scrub(Slot s) {
+        try {
+            return docker(List.of("docker", "exec", "-u", "0", s.containerName, "bash", "-c",
+                    "kill -9 -1 2>/dev/null; rm -rf /tmp/* /tmp/.[!.]* /dev/shm/* /dev/shm/.[!.]* "
+                            + BOX + "/* " + BOX + "/.[!.]* 2>/dev/null; chown " + userSpec(s.workDir) + " " + BOX),
+                    10) == 0;
+        } catch (Exception e) {
+            return false;
+        }
+    }
+
+    // ---------- Internal ----------
+
+    private Slot newSlot(int index) {
+        Slot s = new Slot(index, workspaces.sandboxRoot().resolve("slot-" + index));
+        synchronized (slots) { slots.add(s); }
+        return s;
+    }
+
+    private void replace(Slot s) throws IOException, InterruptedException {
+        removeContainer(s.containerName);
+        s.containerName = null;
+        ensureContainer(s);
+        // The old container may have died in a batch run, leaving /box to root
+        if (!scrub(s)) throw new IOException("Failed to clean sandbox " + s.containerName);
+    }
+
+    private void ensureContainer(Slot s) throws IOException, InterruptedException {
+        if (s.containerName != null) return;
+        Files.createDirectories(s.workDir);
+
+        String name = "xoroj-sandbox-" + s.index + "-" + System.nanoTime();
+        List<String> cmd = new ArrayList<>();
+        cmd.add("docker"); cmd.add("run"); cmd.add("-d");
+        cmd.add("--name"); cmd.add(name);
+        cmd.add("--user"); cmd.add(userSpec(s.workDir));
+        cmd.add("--network"); cmd.add("none");
+        cmd.add("--cpus=1.0");
+        cmd.add("-m"); cmd.add(maxMemoryMB + "m");
+        cmd.add("--memory-swap"); cmd.add(maxMemoryMB + "m");
+        cmd.add("--pids-limit"); cmd.add(String.valueOf(DEFAULT_PIDS_LIMIT));
+        cmd.add("--read-only");
+        cmd.add("-v"); cmd.add(s.workDir.toString().replace('\\', '/') + ":" + BOX + ":rw");
+        cmd.add("--tmpfs"); cmd.add("/tmp:rw,noexec,nosuid,size=256m");
+        cmd.add(DOCKER_IMAGE);
+        cmd.add("sleep"); cmd.add("infinity");
+
+        if (docker(cmd, 30) != 0) {
+            removeContainer(name);
+            throw new IOException("Failed to start sandbox container " + name);
+        }
+        s.containerName = name;
+        s.cgroup = locateCgroup(name);
+        s.memoryMB = maxMemoryMB;
+        s.cpus = 1.0;
+        s.pinnedTo = null;
+        s.broken = false;
+        s.lastUsedMs = System.currentTimeMillis();
+    }
+
+    private void applyLimits(Slot s, int memoryMB, double cpus) throws IOException, InterruptedException {
+        int mem = Math.min(Math.max(memoryMB, 8), maxMemoryMB);
+        if (mem == s.memoryMB && cpus == s.cpus) return;
+        List<String> cmd = List.of("docker", "update",
+                "--memory", mem + "m", "--memory-swap", mem + "m",
+                "--cpus=" + cpus,
+                s.containerName);
+        if (docker(cmd, 10) != 0) {
+            throw new IOException("Failed to update sandbox limits for " + s.containerName);
+        }
+        s.memoryMB = mem;
+        s.cpus = cpus;
+    }
+
+    /** Give the job an exclusive core; the container keeps its last cpuset when it gets the same one. */
+    private void pin(Slot s) throws IOException, InterruptedException {
+        s.cpu = cpuSlots.acquire(s.pinnedTo == null ? -1 : s.pinnedTo.index());
+        if (s.cpu == null || s.cpu.equals(s.pinnedTo)) return;
+        List<String> cmd = new ArrayList<>(List.of("docker", "update", "--cpuset-cpus=" + s.cpu.cpus()));
+        if (s.cpu.mems() != null) cmd.add("--cpuset-mems=" + s.cpu.mems());
+        cmd.add(s.containerName);
+        if (docker(cmd, 10) != 0) {
+            throw new IOException("Failed to pin sandbox " + s.containerName + " to CPUs " + s.cpu.cpus());
+        }
+        s.pinnedTo = s.cpu;
+    }
+
+    private static void resetWorkDir(Slot s) throws IOException {
+        Files.createDirectories(s.workDir);
+        try (var walk = Files.walk(s.workDir)) {
+            for (Path p : walk.sorted(Comparator.reverseOrder()).toList()) {
+                if (!p.equals(s.workDir)) Files.deleteIfExists(p);
+            }
+        }
+    }
+
+    private boolean isRunning(String name) {
+        if (name == null) return false;
+        try {
+            Process p = new ProcessBuilder("docker", "inspect", "-f", "{{.State.Running}}", name)
+                    .redirectErrorStream(true)
+                    .start();
+            String out = new String(p.getInputStream().readAllBytes()).trim();
+            return p.waitFor(5, TimeUnit.SECONDS) && p.exitValue() == 0 && "true".equals(out);
+        } catch (Exception e) {
+            return false;
+        }
+    }
+
+    private CgroupStats locateCgroup(String name) {
+        try {
+            Process p = new ProcessBuilder("docker", "inspect", "-f", "{{.Id}}", name)
+                    .redirectErrorStream(true)
+                    .start();
+            String id = new String(p.getInputStream().readAllBytes()).trim();
+            if (!p.waitFor(5, TimeUnit.SECONDS) || p.exitValue() != 0) return null;
+            CgroupStats cg = CgroupStats.locate(Path.of(cgroupRoot), id);
+            if (cg == null) {
+                System.out.println("Sandbox " + name + ": cgroup not found under " + cgroupRoot + ", using /usr/bin/time");
+            }
+            return cg;
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
+    private static void removeContainer(String name) {
+        if (name == null || name.isBlank()) return;
+        try {
+            docker(List.of("docker", "rm", "-f", name), 10);
+        } catch (Exception ignored) {}
+    }
+
+    /** Read from a file created here: a work dir left over from a batch run may belong to root. */
+    private String userSpec(Path dir) throws IOException {
+        if (userSpec == null) {
+            Path probe = Files.createTempFile(dir.getParent(), ".owner", null);
+            try {
+                Object uid = Files.getAttribute(probe, "unix:uid");
+                Object gid = Files.getAttribute(probe, "unix:gid");
+                userSpec = uid + ":" + gid;
+            } catch (UnsupportedOperationException e) {
+                userSpec = "1000:1000";
+            } finally {
+                Files.deleteIfExists(probe);
+            }
+        }
+        return userSpec;
+    }
+
+    private static int docker(List<String> cmd, int timeoutSeconds) throws IOException, InterruptedException {
+        Process p = new ProcessBuilder(cmd)
+                .redirectErrorStream(true)
+                .redirectOutput(ProcessBuilder.Redirect.DISCARD)
+                .start();
+        if (!p.waitFor(timeoutSeconds, TimeUnit.SECONDS)) {
+            p.destroyForcibly();
+            return -1;
+        }
+        return p.exitValue();
+    }
+}
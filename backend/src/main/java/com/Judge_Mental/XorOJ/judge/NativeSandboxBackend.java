@@ -0,0 +1,268 @@
+package com.Judge_Mental.XorOJ.judge;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import com.Judge_Mental.XorOJ.util.Hashing;
+
+/**
+ * Native sandbox backend: no daemon, no containers. Each run is started by the small
+ * {@code nsbox} helper (bundled as C source, built on first start) which joins the slot's
+ * cgroup, unshares user/pid/mount/net/ipc/uts namespaces and pivots into a read-only root
+ * bind-mounted from {@code judge.sandbox.native.rootfs}. Starting a run costs a few forks
+ * and mounts instead of a {@code docker exec} round trip.
+ *
+ * Slots are cgroups below {@code judge.sandbox.native.cgroup-parent}, which must be a
+ * delegated cgroup v2 subtree writable by the JVM user; the kernel must allow unprivileged
+ * user namespaces. Memory, CPU and pids limits are written to the slot cgroup per lease.
+ */
+@Component
+@ConditionalOnProperty(name = "judge.sandbox.backend", havingValue = "native")
+public class NativeSandboxBackend implements SandboxBackend {
+
+    private static final String HELPER_SOURCE = "/sandbox/nsbox.c";
+    private static final int PIDS_LIMIT = 256;
+    private static final long CPU_PERIOD_US = 100_000L;
+
+    @Value("${judge.sandbox.pool-size:0}")
+    private int configuredPoolSize;
+
+    @Value("${judge.workers:0}")
+    private int configuredWorkers;
+
+    @Value("${judge.compile.workers:0}")
+    private int configuredCompileWorkers;
+
+    @Value("${judge.sandbox.max-memory-mb:1024}")
+    private int maxMemoryMB;
+
+    /** Root file system the jobs see; must contain bash and g++. */
+    @Value("${judge.sandbox.native.rootfs:/}")
+    private String rootfs;
+
+    @Value("${judge.sandbox.native.cgroup-parent:/sys/fs/cgroup/xoroj}")
+    private String cgroupParent;
+
+    /** Prebuilt helper binary; empty = build the bundled source with the host C compiler. */
+    @Value("${judge.sandbox.native.helper:}")
+    private String helperPath;
+
+    @Value("${judge.compile.cache-dir:${java.io.tmpdir}/xoroj-bin}")
+    private String binaryCacheDir;
+
+    private final CpuSlots cpuSlots;
+    private final WorkspaceManager workspaces;
+    private final BlockingQueue<Slot> idle = new LinkedBlockingQueue<>();
+    private volatile Path helper;
+    private volatile int readySlots;
+    private volatile String setupError; // why warm-up stopped early; null while it runs or after it succeeds
+
+    public NativeSandboxBackend(CpuSlots cpuSlots, WorkspaceManager workspaces) {
+        this.cpuSlots = cpuSlots;
+        this.workspaces = workspaces;
+    }
+
+    /** One reusable sandbox: a cgroup plus its private work directory. */
+    final class Slot implements Sandbox {
+        final Path workDir;
+        final Path cgroupDir;
+        final CgroupStats cgroup;
+        int memoryMB;
+        double cpus;
+        CpuSlots.Slot cpu;      // exclusive core while leased, when CPU pinning is on
+        CpuSlots.Slot pinnedTo; // cpuset currently written to the slot cgroup
+
+        Slot(Path workDir, Path cgroupDir) {
+            this.workDir = workDir;
+            this.cgroupDir = cgroupDir;
+            this.cgroup = CgroupStats.at(cgroupDir);
+        }
+
+        @Override
+        public Path workDir() { return workDir; }
+
+        @Override
+        public List<String> command(String shellLine) {
+            return List.of(helper.toString(),
+                    "-r", rootfs,
+                    "-w", workDir.toString(),
+                    "-c", cgroupDir.toString(),
+                    "--", "/bin/bash", "-c", shellLine);
+        }
+
+        @Override
+        public CgroupStats cgroup() { return cgroup; }
+
+        @Override
+        public boolean killJob() { return killAll(this); }
+
+        /** Nothing outlives a kill here, so the slot stays usable. */
+        @Override
+        public void destroy() { killAll(this); }
+    }
+
+    // ---------- Lifecycle ----------
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void warmUp() {
+        try {
+            helper = helperPath.isBlank() ? buildHelper() : Path.of(helperPath);
+            Path parent = Path.of(cgroupParent);
+            Files.createDirectories(parent);
+            Files.writeString(parent.resolve("cgroup.subtree_control"), "+cpu +memory +pids");
+            if (cpuSlots.isEnabled()) Files.writeString(parent.resolve("cgroup.subtree_control"), "+cpuset");
+
+            int n = poolSize();
+            for (int i = 0; i < n; i++) {
+                Slot s = new Slot(workspaces.sandboxRoot().resolve("slot-" + i),
+                        parent.resolve("slot-" + i));
+                Files.createDirectories(s.workDir);
+                Files.createDirectories(s.cgroupDir);
+                setLimits(s, maxMemoryMB, 1.0);
+                idle.offer(s);
+                readySlots++;
+            }
+            System.out.println("Native sandbox ready with " + n + " slots under " + cgroupParent);
+        } catch (Exception e) {
+            setupError = e.getMessage();
+            System.out.println("Native sandbox setup failed after " + readySlots + " slots: " + e.getMessage());
+        }
+    }
+
+    public int poolSize() {
+        if (configuredPoolSize > 0) return configuredPoolSize;
+        // Pinned jobs cannot outnumber the core slots
+        if (cpuSlots.isEnabled()) return cpuSlots.size();
+        // Compile and execute stages lease sandboxes concurrently
+        int cores = Runtime.getRuntime().availableProcessors();
+        int execute = configuredWorkers > 0 ? configuredWorkers : cores;
+        int compile = configuredCompileWorkers > 0 ? configuredCompileWorkers : Math.max(1, cores / 2);
+        return execute + compile;
+    }
+
+    // ---------- Leasing ----------
+
+    /** Blocks until a slot is free; fails at once when warm-up could not create any slot. */
+    @Override
+    public Slot acquire(int memoryMB, double cpus) throws IOException, InterruptedException {
+        if (setupError != null && readySlots == 0) {
+            throw new IOException("Native sandbox is not available: " + setupError);
+        }
+        Slot s = idle.take();
+        try {
+            setLimits(s, memoryMB, cpus);
+            pin(s);
+            resetWorkDir(s.workDir);
+            return s;
+        } catch (IOException | InterruptedException | RuntimeException e) {
+            cpuSlots.release(s.cpu);
+            s.cpu = null;
+            idle.offer(s);
+            throw e;
+        }
+    }
+
+    @Override
+    public void release(Sandbox sandbox) {
+        Slot s = (Slot) sandbox;
+        killAll(s);
+        cpuSlots.release(s.cpu);
+        s.cpu = null;
+        try {
+            resetWorkDir(s.workDir);
+        } catch (IOException ignored) {}
+        idle.offer(s);
+    }
+
+    // ---------- Internal ----------
+
+    private void setLimits(Slot s, int memoryMB, double cpus) throws IOException {
+        int mem = Math.min(Math.max(memoryMB, 8), maxMemoryMB);
+        if (mem == s.memoryMB && cpus == s.cpus) return;
+        Files.writeString(s.cgroupDir.resolve("memory.max"), String.valueOf(mem * 1024L * 1024L));
+        Files.writeString(s.cgroupDir.resolve("memory.swap.max"), "0");
+        Files.writeString(s.cgroupDir.resolve("cpu.max"), Math.round(cpus * CPU_PERIOD_US) + " " + CPU_PERIOD_US);
+        Files.writeString(s.cgroupDir.resolve("pids.max"), String.valueOf(PIDS_LIMIT));
+        s.memoryMB = mem;
+        s.cpus = cpus;
+    }
+
+    /** Give the job an exclusive core through the slot cgroup's cpuset. */
+    private void pin(Slot s) throws IOException, InterruptedException {
+        s.cpu = cpuSlots.acquire(s.pinnedTo == null ? -1 : s.pinnedTo.index());
+        if (s.cpu == null || s.cpu.equals(s.pinnedTo)) return;
+        Files.writeString(s.cgroupDir.resolve("cpuset.cpus"), s.cpu.cpus());
+        if (s.cpu.mems() != null) Files.writeString(s.cgroupDir.resolve("cpuset.mems"), s.cpu.mems());
+        s.pinnedTo = s.cpu;
+    }
+
+    /** cgroup.kill (Linux 5.14+) stops every process of the job at once. */
+    private static boolean killAll(Slot s) {
+        try {
+            Files.writeString(s.cgroupDir.resolve("cgroup.kill"), "1");
+            return true;
+        } catch (IOException e) {
+            // Older kernels: signal the members one by one
+            try {
+                for (String pid : Files.readAllLines(s.cgroupDir.resolve("cgroup.procs"))) {
+                    ProcessHandle.of(Long.parseLong(pid.trim())).ifPresent(ProcessHandle::destroyForcibly);
+                }
+                return true;
+            } catch (IOException | NumberFormatException ignored) {
+                return false;
+            }
+        }
+    }
+
+    /** Build the bundled helper once per source hash into the binary cache. */
+    private Path buildHelper() throws IOException, InterruptedException {
+        byte[] source;
+        try (InputStream in = NativeSandboxBackend.class.getResourceAsStream(HELPER_SOURCE)) {
+            if (in == null) throw new IOException("Missing " + HELPER_SOURCE);
+            source = in.readAllBytes();
+        }
+        Path dir = Path.of(binaryCacheDir).toAbsolutePath().normalize().resolve("nsbox-" + Hashing.sha256(source));
+        Path binary = dir.resolve("nsbox");
+        if (Files.isExecutable(binary)) return binary;
+
+        Files.createDirectories(dir);
+        Path src = dir.resolve("nsbox.c");
+        Files.write(src, source);
+        Path tmp = dir.resolve("nsbox.tmp");
+        Process p = new ProcessBuilder("cc", "-O2", "-o", tmp.toString(), src.toString())
+                .redirectErrorStream(true)
+                .start();
+        String log = new String(p.getInputStream().readAllBytes());
+        if (!p.waitFor(60, TimeUnit.SECONDS) || p.exitValue() != 0) {
+            throw new IOException("Failed to build sandbox helper: " + log);
+        }
+        Files.move(tmp, binary, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        return binary;
+    }
+
+    private static void resetWorkDir(Path workDir) throws IOException {
+        Files.createDirectories(workDir);
+        List<Path> entries = new ArrayList<>();
+        try (var walk = Files.walk(workDir)) {
+            walk.sorted(Comparator.reverseOrder()).forEach(entries::add);
+        }
+        for (Path p : entries) {
+            if (!p.equals(workDir)) Files.deleteIfExists(p);
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package com.Judge_Mental.XorOJ.judge;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Destination for a sandboxed program's stdout. The executor pumps output in chunks and stops
+ * (killing the program) as soon as a sink reports that its byte limit was exceeded, so nothing
+ * ever buffers an unbounded stream in the JVM.
+ */
+public interface OutputSink {
+
+    /**
+     * Consume the next chunk of output.
+     * @return false once the output limit has been exceeded; the program is then killed
+     */
+    boolean write(byte[] buf, int off, int len) throws IOException;
+
+    /** Called once after the stream ended (or was cut off). */
+    default void close() throws IOException {}
+
+    boolean limitExceeded();
+
+    /** Keeps up to {@code limitBytes} in memory; used for custom runs shown to the user. */
+    final class Capture implements OutputSink {
+        private final ByteArrayOutputStream buf = new ByteArrayOutputStream();
+        private final long limitBytes;
+        private boolean exceeded;
+
+        public Capture(long limitBytes) {
+            this.limitBytes = limitBytes;
+        }
+
+        @Override
+        public boolean write(byte[] b, int off, int len) {
+            int room = (int) Math.max(0, limitBytes - buf.size());
+            buf.write(b, off, Math.min(room, len));
+            if (len > room) exceeded = true;
+            return !exceeded;
+        }
+
+        @Override
+        public boolean limitExceeded() {
+            return exceeded;
+        }
+
+        public String text() {
+            return buf.toString(StandardCharsets.UTF_8);
+        }
+    }
+
+    /** Streams output straight to a file; used for generated inputs and reference answers. */
+    final class ToFile implements OutputSink {
+        private final OutputStream out;
+        private final long limitBytes;
+        private long written;
+        private boolean exceeded;
+
+        public ToFile(Path target, long limitBytes) throws IOException {
+            this.out = Files.newOutputStream(target);
+            this.limitBytes = limitBytes;
+        }
+
+        @Override
+        public boolean write(byte[] b, int off, int len) throws IOException {
+            long room = Math.max(0, limitBytes - written);
+            int n = (int) Math.min(room, len);
+            out.write(b, off, n);
+            written += n;
+            if (len > room) exceeded = true;
+            return !exceeded;
+        }
+
+        @Override
+        public void close() throws IOException {
+            out.close();
+        }
+
+        @Override
+        public boolean limitExceeded() {
+            return exceeded;
+        }
+    }
+}
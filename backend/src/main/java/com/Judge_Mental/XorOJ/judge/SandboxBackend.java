@@ -0,0 +1,53 @@
+package com.Judge_Mental.XorOJ.judge;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+
+/**
+ * Where compiled programs run. Selected with {@code judge.sandbox.backend}:
+ * {@code docker} (default, {@link DockerSandboxBackend}) or {@code native}
+ * ({@link NativeSandboxBackend}).
+ *
+ * A backend leases {@link Sandbox}es one job at a time. The executor stages files into the
+ * sandbox's work directory, starts {@link Sandbox#command(String)} as a local process and
+ * pumps its stdout/stderr; everything else (isolation, limits, cleanup) is the backend's job.
+ */
+public interface SandboxBackend {
+
+    /** Lease a sandbox limited to the given memory and CPU share; blocks until one is free. */
+    Sandbox acquire(int memoryMB, double cpus) throws IOException, InterruptedException;
+
+    /** Return a sandbox; its work directory is wiped and a destroyed sandbox is replaced. */
+    void release(Sandbox sandbox);
+
+    interface Sandbox {
+
+        /** Host directory seen by the job as its working directory. */
+        Path workDir();
+
+        /**
+         * Local command that runs {@code shellLine} with bash inside the sandbox, in the work
+         * directory, with an empty /tmp and no processes left over from earlier jobs.
+         */
+        List<String> command(String shellLine);
+
+        /**
+         * Like {@link #command(String)}, but as root, with stdin connected, so the line can run
+         * jobs as the work dir's owner while keeping what it records out of their reach. Null
+         * when the backend has no second user for jobs to run as.
+         */
+        default List<String> supervisorCommand(String shellLine) {
+            return null;
+        }
+
+        /** Kernel accounting for this sandbox, or null when only /usr/bin/time is available. */
+        CgroupStats cgroup();
+
+        /** Kill the running job's processes but keep the sandbox usable. */
+        boolean killJob();
+
+        /** Hard stop after a timeout or cancellation; the backend replaces the sandbox on release. */
+        void destroy();
+    }
+}
@@ -0,0 +1,210 @@
+package com.Judge_Mental.XorOJ.judge;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Built-in checker session: compares a program's stdout with the expected answer while the
+ * output is still streaming. The answer is memory-mapped, so there is no read buffer and an
+ * expected token can be looked at in place when a numeric comparison needs it.
+ *
+ * Modes:
+ * - EXACT: byte for byte once leading and trailing whitespace is stripped from both sides, which
+ *   is how outputs were compared before checkers existed; whitespace inside must match.
+ * - TOKENS: whitespace runs are a single separator, leading/trailing whitespace is ignored.
+ * - FLOAT: as TOKENS, but differing numeric tokens pass within an absolute or relative error.
+ *
+ * Mismatch messages name the position only, never the expected text of a hidden test. After
+ * the first difference the remaining output is only counted against the limit.
+ */
+public final class StreamingComparator implements Checker.Session {
+
+    enum Mode { EXACT, TOKENS, FLOAT }
+
+    /** Longest actual token kept for a numeric comparison; longer ones must match byte for byte. */
+    private static final int MAX_NUMBER_TOKEN = 64;
+
+    private final Mode mode;
+    private final double absEps;
+    private final double relEps;
+
+    private final ByteBuffer expected;
+    private final int expLen;
+    private int expPos;
+    private boolean started; // EXACT: leading whitespace of the output is behind us
+
+    private final long limitBytes;
+    private long seen;
+    private boolean exceeded;
+    private String mismatch; // first difference; null while the output still matches
+
+    // State of the actual token being read (token modes)
+    private boolean inToken;
+    private int tokenNo;
+    private int expTokenStart;
+    private boolean tokenDiffers;
+    private final byte[] actualToken = new byte[MAX_NUMBER_TOKEN];
+    private int actualTokenLen;
+
+    StreamingComparator(Path expectedAnswer, long limitBytes, Mode mode, double absEps, double relEps) throws IOException {
+        try (FileChannel ch = FileChannel.open(expectedAnswer, StandardOpenOption.READ)) {
+            long size = ch.size();
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException("Expected answer too large: " + size + " bytes");
+            }
+            this.expected = ch.map(FileChannel.MapMode.READ_ONLY, 0, size);
+        }
+        int end = expected.limit();
+        if (mode == Mode.EXACT) {
+            while (end > 0 && isSpace(expected.get(end - 1))) end--;
+            while (expPos < end && isSpace(expected.get(expPos))) expPos++;
+        }
+        this.expLen = end;
+        this.limitBytes = limitBytes;
+        this.mode = mode;
+        this.absEps = absEps;
+        this.relEps = relEps;
+    }
+
+    @Override
+    public boolean write(byte[] b, int off, int len) {
+        seen += len;
+        if (seen > limitBytes) {
+            exceeded = true;
+            return false;
+        }
+        if (mismatch != null) return true;
+
+        if (mode == Mode.EXACT) writeExact(b, off, len);
+        else writeTokens(b, off, len);
+        return true;
+    }
+
+    @Override
+    public boolean limitExceeded() {
+        return exceeded;
+    }
+
+    @Override
+    public Checker.Result verdict() {
+        if (mismatch == null) {
+            if (mode == Mode.EXACT) {
+                if (expPos < expLen) mismatch = "Output ends early at byte " + (seen + 1);
+            } else {
+                if (inToken) endToken();
+                if (mismatch == null) {
+                    skipExpectedSpaces();
+                    if (expPos < expLen) mismatch = "Output is shorter than expected (" + tokenNo + " tokens read)";
+                }
+            }
+        }
+        return mismatch == null ? Checker.Result.accepted() : Checker.Result.wrongAnswer(mismatch);
+    }
+
+    // ---------- EXACT ----------
+
+    private void writeExact(byte[] b, int off, int len) {
+        long base = seen - len;
+        for (int i = off; i < off + len; i++) {
+            byte c = b[i];
+            if (!started) {
+                if (isSpace(c)) continue;
+                started = true;
+            }
+            if (expPos < expLen && expected.get(expPos) == c) {
+                expPos++;
+            } else if (expPos >= expLen && isSpace(c)) {
+                // trailing whitespace after the whole answer is tolerated
+            } else {
+                mismatch = "Difference at byte " + (base + (i - off) + 1);
+                return;
+            }
+        }
+    }
+
+    // ---------- TOKENS / FLOAT ----------
+
+    private void writeTokens(byte[] b, int off, int len) {
+        for (int i = off; i < off + len && mismatch == null; i++) {
+            byte c = b[i];
+            if (isSpace(c)) {
+                if (inToken) endToken();
+                continue;
+            }
+            if (!inToken) startToken();
+            if (mismatch != null) return;
+
+            if (!tokenDiffers) {
+                if (expPos < expLen && expected.get(expPos) == c) expPos++;
+                else tokenDiffers = true;
+            }
+            if (actualTokenLen < MAX_NUMBER_TOKEN) actualToken[actualTokenLen] = c;
+            actualTokenLen++;
+        }
+    }
+
+    private void startToken() {
+        skipExpectedSpaces();
+        inToken = true;
+        tokenNo++;
+        expTokenStart = expPos;
+        tokenDiffers = false;
+        actualTokenLen = 0;
+        if (expPos >= expLen) {
+            mismatch = "Output has extra tokens starting at token " + tokenNo;
+        }
+    }
+
+    private void endToken() {
+        inToken = false;
+        // The actual token ended; the expected one must end here too
+        if (!tokenDiffers && expPos < expLen && !isSpace(expected.get(expPos))) tokenDiffers = true;
+        if (!tokenDiffers) return;
+
+        int expEnd = expTokenStart;
+        while (expEnd < expLen && !isSpace(expected.get(expEnd))) expEnd++;
+        if (mode != Mode.FLOAT || !numbersClose(expTokenStart, expEnd)) {
+            mismatch = "Token " + tokenNo + " differs from the expected answer";
+        }
+        expPos = expEnd;
+    }
+
+    private boolean numbersClose(int expStart, int expEnd) {
+        if (actualTokenLen > MAX_NUMBER_TOKEN || expEnd - expStart > MAX_NUMBER_TOKEN) return false;
+        byte[] exp = new byte[expEnd - expStart];
+        expected.get(expStart, exp);
+        double expectedValue = parseNumber(new String(exp, StandardCharsets.ISO_8859_1));
+        double actualValue = parseNumber(new String(actualToken, 0, actualTokenLen, StandardCharsets.ISO_8859_1));
+        if (Double.isNaN(expectedValue) || Double.isNaN(actualValue)) return false;
+
+        double diff = Math.abs(actualValue - expectedValue);
+        return diff <= absEps || diff <= relEps * Math.abs(expectedValue);
+    }
+
+    /** Plain decimal number, or NaN for anything else (hex floats, "Infinity", suffixes...). */
+    private static double parseNumber(String s) {
+        for (int i = 0; i < s.length(); i++) {
+            char ch = s.charAt(i);
+            if ((ch < '0' || ch > '9') && ch != '.' && ch != '-' && ch != '+' && ch != 'e' && ch != 'E') {
+                return Double.NaN;
+            }
+        }
+        try {
+            return Double.parseDouble(s);
+        } catch (NumberFormatException e) {
+            return Double.NaN;
+        }
+    }
+
+    private void skipExpectedSpaces() {
+        while (expPos < expLen && isSpace(expected.get(expPos))) expPos++;
+    }
+
+    private static boolean isSpace(byte c) {
+        return c == ' ' || c == '\n' || c == '\r' || c == '\t' || c == '\f' || c == 0x0B;
+    }
+}
@@ -0,0 +1,178 @@
+package com.Judge_Mental.XorOJ.judge;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PostConstruct;
+
+/**
+ * Short-lived per-execution directories (custom run sources and inputs, checker spools) under
+ * {@code judge.workspace.root}, by default on tmpfs so judging creates no inodes on disk. The
+ * sandboxes' work directories live there too, under {@code sandbox/}: they are mounted into
+ * long-lived containers, so they outlive a run, but each lease reserves what it stages there
+ * and the backend empties the directory when the lease ends.
+ *
+ * Each workspace reserves its expected size from {@code judge.workspace.quota-mb} when it is
+ * allocated and blocks while the quota is used up; writers stay within their reservation (spools
+ * are bounded by the output limit). Closing a workspace deletes it and returns the reservation.
+ * The root belongs to this judge alone: whatever is in it on startup was left by a crash and is removed.
+ */
+@Component
+public class WorkspaceManager {
+
+    @Value("${judge.workspace.root:/dev/shm/xoroj-work}")
+    private String configuredRoot;
+
+    @Value("${judge.workspace.quota-mb:1024}")
+    private long quotaMB;
+
+    private final AtomicLong sequence = new AtomicLong();
+    // Reservations held by the current thread; see reserve()
+    private final ThreadLocal<int[]> held = ThreadLocal.withInitial(() -> new int[1]);
+    private Path root;
+    private int quotaKB;
+    private Semaphore quota;
+
+    @PostConstruct
+    public void init() throws IOException {
+        root = resolveRoot();
+        quotaKB = (int) Math.min(Integer.MAX_VALUE, Math.max(1, quotaMB) * 1024);
+        quota = new Semaphore(quotaKB, true);
+        reapOrphans();
+        Files.createDirectories(root.resolve("sandbox"));
+    }
+
+    /** Allocate an empty directory, reserving {@code reserveBytes} of the quota until it is closed. */
+    public Workspace allocate(long reserveBytes) throws IOException, InterruptedException {
+        Reservation reservation = reserve(reserveBytes);
+        try {
+            return new Workspace(Files.createDirectory(root.resolve("ws-" + sequence.incrementAndGet())), reservation);
+        } catch (IOException | RuntimeException e) {
+            reservation.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Reserve {@code bytes} of the quota for files written elsewhere under the root, such as what a
+     * sandbox lease stages. A thread that already holds a reservation does not wait for another
+     * (a checker run inside a spool's lifetime, a custom run's compile): the nested one is only
+     * counted when the quota has room, so nesting cannot deadlock, at the cost of overshooting.
+     */
+    public Reservation reserve(long bytes) throws InterruptedException {
+        int kb = (int) Math.min(quotaKB, Math.max(1, (bytes + 1023) / 1024));
+        int[] count = held.get();
+        if (count[0] == 0) {
+            quota.acquire(kb);
+        } else if (!quota.tryAcquire(kb)) {
+            kb = 0;
+        }
+        count[0]++;
+        return new Reservation(kb, count);
+    }
+
+    /** Parent of the sandbox slots' work directories; they are created and emptied by the backend. */
+    public Path sandboxRoot() {
+        return root.resolve("sandbox");
+    }
+
+    /** Part of the quota; close it on the thread that reserved it. */
+    public final class Reservation implements AutoCloseable {
+        private final int reservedKB;
+        private final int[] count;
+        private final AtomicBoolean closed = new AtomicBoolean();
+
+        private Reservation(int reservedKB, int[] count) {
+            this.reservedKB = reservedKB;
+            this.count = count;
+        }
+
+        @Override
+        public void close() {
+            if (!closed.compareAndSet(false, true)) return;
+            count[0]--;
+            quota.release(reservedKB);
+        }
+    }
+
+    /** One execution's directory; use with try-with-resources. */
+    public final class Workspace implements AutoCloseable {
+        private final Path dir;
+        private final Reservation reservation;
+        private final AtomicBoolean closed = new AtomicBoolean();
+
+        private Workspace(Path dir, Reservation reservation) {
+            this.dir = dir;
+            this.reservation = reservation;
+        }
+
+        public Path dir() {
+            return dir;
+        }
+
+        public Path resolve(String name) {
+            return dir.resolve(name);
+        }
+
+        @Override
+        public void close() {
+            if (!closed.compareAndSet(false, true)) return;
+            try {
+                deleteTree(dir);
+            } catch (IOException e) {
+                System.out.println("Workspace " + dir + " not removed: " + e.getMessage());
+            } finally {
+                reservation.close();
+            }
+        }
+    }
+
+    // ---------- Internal ----------
+
+    /** The configured root, or a directory under java.io.tmpdir when it is not usable (e.g. no /dev/shm). */
+    private Path resolveRoot() throws IOException {
+        Path configured = Path.of(configuredRoot).toAbsolutePath().normalize();
+        try {
+            Files.createDirectories(configured);
+            if (Files.isWritable(configured)) return configured;
+        } catch (IOException ignored) {}
+        Path fallback = Path.of(System.getProperty("java.io.tmpdir"), "xoroj-work").toAbsolutePath().normalize();
+        System.out.println("Workspace root " + configured + " unusable, using " + fallback);
+        return Files.createDirectories(fallback);
+    }
+
+    private void reapOrphans() throws IOException {
+        List<Path> orphans;
+        try (var entries = Files.list(root)) {
+            orphans = entries.toList();
+        }
+        for (Path p : orphans) {
+            try {
+                deleteTree(p);
+            } catch (IOException e) {
+                // e.g. files a batch run left to root in a sandbox dir; the sandbox scrubs those itself
+                System.out.println("Orphaned workspace " + p + " not removed: " + e.getMessage());
+            }
+        }
+        if (!orphans.isEmpty()) System.out.println("Removed orphaned workspaces under " + root);
+    }
+
+    private static void deleteTree(Path top) throws IOException {
+        if (!Files.exists(top)) return;
+        List<Path> entries = new ArrayList<>();
+        try (var walk = Files.walk(top)) {
+            walk.sorted(Comparator.reverseOrder()).forEach(entries::add);
+        }
+        for (Path p : entries) Files.deleteIfExists(p);
+    }
+}
@@ -1,48 +1,287 @@
 package com.Judge_Mental.XorOJ.live;
 
+import com.Judge_Mental.XorOJ.dto.StandingRow;
+import com.Judge_Mental.XorOJ.dto.StandingsDTO;
 import com.Judge_Mental.XorOJ.dto.StandingsEvent;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter.DataWithMediaType;
 import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Supplier;
 
+/**
+ * Live standings over SSE. Every board change is published here as a versioned event
+ * (ROW_UPDATE with the changed rows, SNAPSHOT, RESET); the event id is the board version.
+ *
+ * A new client gets a SNAPSHOT first. A reconnecting client sends Last-Event-ID and gets only
+ * the events it missed, replayed from a bounded per-contest ring; when the ring no longer
+ * reaches back that far it gets a fresh SNAPSHOT instead.
+ *
+ * Publishing never waits on the network: each event is encoded to one SSE frame, and the frame
+ * is put on every viewer's bounded queue, which a virtual thread per viewer writes out. A viewer
+ * whose queue overflows loses the queued deltas and gets a fresh SNAPSHOT once it catches up;
+ * one that is still behind after {@code standings.stream.max-lag-ms} is disconnected.
+ *
+ * Row changes are not sent one by one: they collect per contest and go out as one merged
+ * ROW_UPDATE per tick ({@code standings.stream.tick-ms}), holding the latest version of each
+ * changed row, so viewers see at most one delta frame per tick however many verdicts arrive.
+ */
 @Component
 public class StandingsBroadcaster {
 
-    private final ConcurrentHashMap<Long, CopyOnWriteArrayList<SseEmitter>> emitters = new ConcurrentHashMap<>();
+    // Ids of an earlier process may name versions this one reuses for different rows
+    private static final String BOOT = Long.toString(System.currentTimeMillis(), 36);
+    private static final MediaType FRAME_TYPE = new MediaType(MediaType.TEXT_PLAIN, StandardCharsets.UTF_8);
+    private static final Frame CLOSE = new Frame(-1, -1, Set.of());
 
-    public SseEmitter register(Long contestId) {
+    @Value("${standings.stream.replay-events:256}")
+    private int replayEvents;
+
+    @Value("${standings.stream.queue-events:64}")
+    private int queueEvents;
+
+    @Value("${standings.stream.max-lag-ms:15000}")
+    private long maxLagMs;
+
+    private final ObjectMapper objectMapper;
+    private final ConcurrentHashMap<Long, Channel> channels = new ConcurrentHashMap<>();
+
+    public StandingsBroadcaster(ObjectMapper objectMapper) {
+        this.objectMapper = objectMapper;
+    }
+
+    /**
+     * One event, serialized once and written as-is to every viewer. It brings a client from
+     * version {@code from} up to {@code version}; -1 = unversioned.
+     */
+    private record Frame(long from, long version, Set<DataWithMediaType> payload) {}
+
+    /** Viewers of one contest, its recent events in version order and the rows of the current tick. */
+    private static final class Channel {
+        final Long contestId;
+        final CopyOnWriteArrayList<Client> clients = new CopyOnWriteArrayList<>();
+        final ArrayDeque<Frame> recent = new ArrayDeque<>();
+        final LinkedHashMap<Long, StandingRow> pending = new LinkedHashMap<>(); // userId -> latest row
+        long pendingVersion = -1;
+        long latest = -1;
+
+        Channel(Long contestId) { this.contestId = contestId; }
+
+        /**
+         * Events after {@code version}, or null when the ring cannot prove none are missing.
+         * {@code current} marks a version read from the board itself, which may be newer than
+         * anything published since startup; a client's version is only trusted up to the latest.
+         */
+        List<Frame> since(long version, boolean current) {
+            if (version == latest || (current && version > latest)) return List.of();
+            if (version > latest || recent.isEmpty() || recent.peekFirst().from() > version) return null;
+            List<Frame> missed = new ArrayList<>();
+            for (var f : recent) {
+                if (f.version() > version) missed.add(f);
+            }
+            return missed;
+        }
+    }
+
+    /** One connected viewer: its emitter, its outgoing queue and the thread that drains it. */
+    private final class Client {
+        final Long contestId;
+        final SseEmitter emitter;
+        final Supplier<StandingsDTO> snapshot;
+        final ArrayBlockingQueue<Frame> queue = new ArrayBlockingQueue<>(Math.max(2, queueEvents));
+        volatile boolean resync;
+        volatile boolean closed;
+        volatile long behindSince; // 0 while the viewer keeps up
+
+        Client(Long contestId, SseEmitter emitter, Supplier<StandingsDTO> snapshot) {
+            this.contestId = contestId;
+            this.emitter = emitter;
+            this.snapshot = snapshot;
+        }
+
+        /**
+         * Queue a frame without blocking. On overflow the pending deltas are dropped in favour of
+         * a fresh snapshot; returns false when the viewer has been behind for too long.
+         */
+        boolean offer(Frame f) {
+            if (queue.offer(f)) return true;
+            long now = System.currentTimeMillis();
+            if (behindSince == 0) behindSince = now;
+            else if (now - behindSince > maxLagMs) return false;
+            queue.clear();
+            resync = true;
+            queue.offer(f);
+            return true;
+        }
+
+        void close() {
+            if (closed) return;
+            closed = true;
+            queue.clear();
+            queue.offer(CLOSE);
+        }
+
+        void drain() {
+            long floor = -1; // frames up to this version are covered by the last resync snapshot
+            try {
+                while (true) {
+                    Frame f = queue.take();
+                    if (closed) break;
+                    if (resync) {
+                        resync = false;
+                        StandingsDTO board = snapshot.get();
+                        floor = board.version();
+                        emitter.send(encode(new StandingsEvent("SNAPSHOT", contestId, board.version(), board.rows()), -1).payload());
+                    }
+                    if (f.version() < 0 || f.version() > floor) emitter.send(f.payload());
+                    if (queue.isEmpty()) behindSince = 0;
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (IOException | RuntimeException e) {
+                // Client went away or the write failed; completing below cleans up
+            }
+            emitter.complete();
+        }
+    }
+
+    /**
+     * Open a stream for the contest. {@code snapshot} is only called when the client cannot be
+     * caught up from the ring, and never while a channel lock is held (publishers call in with
+     * the board locked).
+     */
+    public SseEmitter register(Long contestId, String lastEventId, Supplier<StandingsDTO> snapshot) {
         var emitter = new SseEmitter(Duration.ofMinutes(30).toMillis());
-        emitters.computeIfAbsent(contestId, _ -> new CopyOnWriteArrayList<>()).add(emitter);
+        Channel ch = channels.computeIfAbsent(contestId, Channel::new);
+        Client client = new Client(contestId, emitter, snapshot);
 
-        emitter.onCompletion(() -> remove(contestId, emitter));
-        emitter.onTimeout(() -> remove(contestId, emitter));
-        emitter.onError((_) -> remove(contestId, emitter));
+        emitter.onCompletion(() -> drop(ch, client));
+        emitter.onTimeout(() -> drop(ch, client));
+        emitter.onError((_) -> drop(ch, client));
 
-        trySend(emitter, new StandingsEvent("HEARTBEAT", contestId, null, java.util.List.of()));
+        Long after = parseEventId(lastEventId);
+        while (true) {
+            StandingsDTO board = null;
+            if (after == null || !resumable(ch, after)) {
+                board = snapshot.get();
+                after = board.version();
+            }
+            synchronized (ch) {
+                List<Frame> missed = ch.since(after, board != null);
+                if (missed == null) {
+                    // The ring moved past us while the snapshot was built; take a newer one
+                    after = null;
+                    continue;
+                }
+                if (board != null) {
+                    client.offer(encode(new StandingsEvent("SNAPSHOT", contestId, board.version(), board.rows()), -1));
+                } else if (missed.isEmpty()) {
+                    client.offer(encode(new StandingsEvent("HEARTBEAT", contestId, null, List.of()), -1));
+                }
+                for (var f : missed) client.offer(f);
+                ch.clients.add(client);
+                break;
+            }
+        }
+        Thread.ofVirtual().name("standings-sse-" + contestId).start(client::drain);
         return emitter;
     }
 
-    public void broadcast(Long contestId, StandingsEvent ev) {
-        var list = emitters.getOrDefault(contestId, new CopyOnWriteArrayList<>());
-        for (var em : list) trySend(em, ev);
+    /**
+     * Row changes wait for the next tick; SNAPSHOT and RESET go out at once and replace any rows
+     * still waiting, which they already include or make obsolete.
+     */
+    public void publish(StandingsEvent ev) {
+        Channel ch = channels.computeIfAbsent(ev.contestId(), Channel::new);
+        synchronized (ch) {
+            if ("ROW_UPDATE".equals(ev.type()) && ev.version() != null) {
+                for (var row : ev.rows()) ch.pending.put(row.userId(), row);
+                ch.pendingVersion = ev.version();
+                return;
+            }
+            ch.pending.clear();
+            emit(ch, encode(ev, ch.latest));
+        }
+    }
+
+    /** Send each contest's rows of the past tick as one merged ROW_UPDATE. */
+    @Scheduled(fixedRateString = "${standings.stream.tick-ms:250}")
+    public void flush() {
+        for (Channel ch : channels.values()) {
+            synchronized (ch) {
+                if (ch.pending.isEmpty()) continue;
+                var ev = new StandingsEvent("ROW_UPDATE", ch.contestId, ch.pendingVersion, List.copyOf(ch.pending.values()));
+                ch.pending.clear();
+                emit(ch, encode(ev, ch.latest));
+            }
+        }
+    }
+
+    /** Record the frame for resuming clients and queue it for every viewer; channel lock held. */
+    private void emit(Channel ch, Frame frame) {
+        if (frame.version() >= 0) {
+            ch.recent.addLast(frame);
+            while (ch.recent.size() > Math.max(1, replayEvents)) ch.recent.removeFirst();
+            ch.latest = frame.version();
+        }
+        for (var c : ch.clients) {
+            if (!c.offer(frame)) {
+                System.out.println("Disconnecting standings viewer of contest " + ch.contestId
+                        + ": behind for more than " + maxLagMs + " ms");
+                drop(ch, c);
+            }
+        }
+    }
+
+    private static void drop(Channel ch, Client c) {
+        ch.clients.remove(c);
+        c.close();
+    }
+
+    private static boolean resumable(Channel ch, long after) {
+        synchronized (ch) {
+            return ch.since(after, false) != null;
+        }
     }
 
-    private void trySend(SseEmitter emitter, StandingsEvent ev) {
+    private static Long parseEventId(String lastEventId) {
+        if (lastEventId == null || !lastEventId.startsWith(BOOT + "-")) return null;
         try {
-            emitter.send(SseEmitter.event()
-                .name(ev.type())
-                .data(ev)
-                .reconnectTime(5000));
-        } catch (IOException e) {
-            emitter.complete();
+            return Long.parseLong(lastEventId.substring(BOOT.length() + 1));
+        } catch (NumberFormatException e) {
+            return null;
         }
     }
 
-    private void remove(Long contestId, SseEmitter emitter) {
-        emitters.getOrDefault(contestId, new CopyOnWriteArrayList<>()).remove(emitter);
+    /** The complete SSE frame (id, event, retry, data) as one text part. */
+    private Frame encode(StandingsEvent ev, long from) {
+        String json;
+        try {
+            json = objectMapper.writeValueAsString(ev);
+        } catch (JsonProcessingException e) {
+            throw new RuntimeException("Failed to serialize standings event", e);
+        }
+        StringBuilder sb = new StringBuilder(json.length() + 64);
+        if (ev.version() != null) sb.append("id:").append(BOOT).append('-').append(ev.version()).append('\n');
+        sb.append("event:").append(ev.type()).append('\n');
+        sb.append("retry:5000\n");
+        sb.append("data:").append(json).append("\n\n");
+        return new Frame(from, ev.version() == null ? -1 : ev.version(), Set.of(new DataWithMediaType(sb.toString(), FRAME_TYPE)));
     }
 }
@@ -13,10 +13,12 @@ public interface ContestReadRepository extends JpaRepository<Contest, Long> {
         LocalDateTime getStartTime();
         LocalDateTime getEndTime();
         Contest.ContestStatus getStatus();
+        Contest.SystemTestStatus getSystemTestStatus();
     }
 
     @Query("""
-      select c.startTime as startTime, c.endTime as endTime, c.status as status
+      select c.startTime as startTime, c.endTime as endTime, c.status as status,
+             c.systemTestStatus as systemTestStatus
       from Contest c where c.id = :id
     """)
     Times getTimes(@Param("id") Long contestId);
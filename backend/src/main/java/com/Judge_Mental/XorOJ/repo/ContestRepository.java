@@ -36,6 +36,14 @@ public interface ContestRepository extends JpaRepository<Contest, Long> {
 
     List<Contest> findContestsByAuthorId(Long authorId);
 
+    // Ended contests whose system testing has not completed (null = created before system tests existed)
+    @Query("""
+      select c from Contest c
+      where c.endTime < :now
+        and (c.systemTestStatus is null or c.systemTestStatus <> com.Judge_Mental.XorOJ.entity.Contest.SystemTestStatus.DONE)
+    """)
+    List<Contest> findEndedWithoutSystemTest(@Param("now") LocalDateTime now);
+
     @Query("""
       select new com.Judge_Mental.XorOJ.dto.ContestResponseDTO(
         c.id, c.title, c.description, c.startTime, c.endTime, 
@@ -5,8 +5,10 @@ import java.util.Optional;
 import java.util.Set;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
 import com.Judge_Mental.XorOJ.dto.ProblemViewDTO;
 import com.Judge_Mental.XorOJ.entity.Problem;
@@ -46,4 +48,9 @@ public interface ProblemRepository extends JpaRepository<Problem, Long> {
         """, nativeQuery = true)
     List<ProblemViewDTO> findAllProblemsAsView();
 
+    @Modifying
+    @Transactional
+    @Query("UPDATE Problem p SET p.testSetVersion = p.testSetVersion + 1 WHERE p.id = :problemId")
+    int incrementTestSetVersion(Long problemId);
+
 }
@@ -24,6 +24,33 @@ public interface SubmissionRepository extends JpaRepository<Submission, Long> {
     
     List<Submission> findByContestIdOrderBySubmissionTimeDesc(Long contestId);
 
+    // Judge queue recovery: submissions that never received a verdict
+    List<Submission> findByStatusInOrderByIdAsc(List<Submission.SubmissionStatus> statuses);
+
+    long countByContestIdAndStatusIn(Long contestId, List<Submission.SubmissionStatus> statuses);
+
+    // System testing: per user and problem, the earliest submission still accepted on pretests
+    // only, unless an earlier one already passed system testing (that one decides the score)
+    @Query(value = """
+        select distinct on (s.user_id, s.problem_id) s.id
+        from submissions s
+        where s.contest_id = :contestId
+          and s.submission_time < :endTime
+          and s.status = 'ACCEPTED'
+          and s.judge_scope = 'PRETESTS'
+          and not exists (
+              select 1 from submissions e
+              where e.contest_id = s.contest_id
+                and e.user_id = s.user_id
+                and e.problem_id = s.problem_id
+                and e.status = 'ACCEPTED'
+                and e.judge_scope = 'SYSTEM'
+                and (e.submission_time < s.submission_time
+                     or (e.submission_time = s.submission_time and e.id < s.id)))
+        order by s.user_id, s.problem_id, s.submission_time, s.id
+    """, nativeQuery = true)
+    List<Long> findAwaitingSystemTest(@Param("contestId") Long contestId, @Param("endTime") LocalDateTime endTime);
+
     // Lightweight projection for standings rebuild
     interface SubmView {
         Long getUserId();
@@ -0,0 +1,32 @@
+package com.Judge_Mental.XorOJ.repo;
+
+import com.Judge_Mental.XorOJ.entity.TestStat;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+
+@Repository
+public interface TestStatRepository extends JpaRepository<TestStat, TestStat.TestStatId> {
+
+    @Query("SELECT s FROM TestStat s WHERE s.id.problemId = :problemId")
+    List<TestStat> findByProblemId(@Param("problemId") Long problemId);
+
+    // Add deltas atomically, so several judge nodes can flush into the same row
+    @Modifying
+    @Transactional
+    @Query(value = """
+            INSERT INTO test_stats (problem_id, test_key, runs, first_fails, total_time_ms)
+            VALUES (:problemId, :testKey, :runs, :firstFails, :totalTime)
+            ON CONFLICT (problem_id, test_key) DO UPDATE SET
+                runs = test_stats.runs + EXCLUDED.runs,
+                first_fails = test_stats.first_fails + EXCLUDED.first_fails,
+                total_time_ms = test_stats.total_time_ms + EXCLUDED.total_time_ms
+            """, nativeQuery = true)
+    void addCounts(@Param("problemId") Long problemId, @Param("testKey") String testKey,
+                   @Param("runs") long runs, @Param("firstFails") long firstFails, @Param("totalTime") long totalTime);
+}
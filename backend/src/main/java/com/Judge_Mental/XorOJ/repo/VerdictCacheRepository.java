@@ -0,0 +1,14 @@
+package com.Judge_Mental.XorOJ.repo;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.Judge_Mental.XorOJ.entity.VerdictCacheEntry;
+
+@Repository
+public interface VerdictCacheRepository extends JpaRepository<VerdictCacheEntry, String> {
+
+    @Transactional
+    void deleteByProblemId(Long problemId);
+}
@@ -0,0 +1,143 @@
+package com.Judge_Mental.XorOJ.service;
+
+import java.util.ArrayDeque;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Judge queue with priority classes and per-user fair share.
+ *
+ * Classes are served in priority order, except that a class with waiting work and fewer than
+ * its reserved number of jobs in flight goes first, so no class starves completely. Within a
+ * class, users take turns (round robin), so one user's burst of submissions only delays that
+ * user.
+ */
+final class FairJudgeQueue {
+
+    /** Highest priority first. */
+    enum JudgeClass { LIVE_CONTEST, PRACTICE, CUSTOM_RUN, REJUDGE }
+
+    /**
+     * One unit of work: a submission to judge, or a custom run carrying its own task.
+     * {@code userId} may be null (system jobs share one turn).
+     */
+    record Job(Long submissionId, Long userId, JudgeClass judgeClass, long seq,
+               Callable<?> task, CompletableFuture<Object> result) implements Comparable<Job> {
+
+        boolean isCustom() {
+            return task != null;
+        }
+
+        @Override
+        public int compareTo(Job o) {
+            int c = judgeClass.compareTo(o.judgeClass);
+            return c != 0 ? c : Long.compare(seq, o.seq);
+        }
+    }
+
+    /** Waiting jobs of one class: a queue per user and the order in which users take turns. */
+    private static final class ClassQueue {
+        final Map<Long, ArrayDeque<Job>> byUser = new HashMap<>();
+        final ArrayDeque<Long> turns = new ArrayDeque<>();
+        int size;
+        int running;
+    }
+
+    private static final Long NO_USER = -1L;
+
+    private final Map<JudgeClass, ClassQueue> classes = new EnumMap<>(JudgeClass.class);
+    private final Map<JudgeClass, Integer> reserved;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition nonEmpty = lock.newCondition();
+
+    FairJudgeQueue(Map<JudgeClass, Integer> reserved) {
+        this.reserved = new EnumMap<>(reserved);
+        for (JudgeClass c : JudgeClass.values()) classes.put(c, new ClassQueue());
+    }
+
+    void offer(Job job) {
+        lock.lock();
+        try {
+            ClassQueue q = classes.get(job.judgeClass());
+            Long user = job.userId() == null ? NO_USER : job.userId();
+            ArrayDeque<Job> jobs = q.byUser.computeIfAbsent(user, _ -> new ArrayDeque<>());
+            if (jobs.isEmpty()) q.turns.addLast(user);
+            jobs.addLast(job);
+            q.size++;
+            nonEmpty.signal();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** Next job to start; it counts as in flight until {@link #done(Job)}. */
+    Job take() throws InterruptedException {
+        lock.lockInterruptibly();
+        try {
+            JudgeClass next;
+            while ((next = pickClass()) == null) nonEmpty.await();
+
+            ClassQueue q = classes.get(next);
+            Long user = q.turns.pollFirst();
+            ArrayDeque<Job> jobs = q.byUser.get(user);
+            Job job = jobs.pollFirst();
+            if (jobs.isEmpty()) {
+                q.byUser.remove(user);
+            } else {
+                q.turns.addLast(user); // back of the line for this user's next job
+            }
+            q.size--;
+            q.running++;
+            return job;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    void done(Job job) {
+        lock.lock();
+        try {
+            classes.get(job.judgeClass()).running--;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    int size() {
+        lock.lock();
+        try {
+            return classes.values().stream().mapToInt(q -> q.size).sum();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    Map<String, Integer> sizeByClass() {
+        lock.lock();
+        try {
+            Map<String, Integer> sizes = new LinkedHashMap<>();
+            classes.forEach((c, q) -> sizes.put(c.name(), q.size));
+            return sizes;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** Under-served classes with reserved capacity first, then strict priority. */
+    private JudgeClass pickClass() {
+        for (JudgeClass c : JudgeClass.values()) {
+            ClassQueue q = classes.get(c);
+            if (q.size > 0 && q.running < reserved.getOrDefault(c, 0)) return c;
+        }
+        for (JudgeClass c : JudgeClass.values()) {
+            if (classes.get(c).size > 0) return c;
+        }
+        return null;
+    }
+}
@@ -23,12 +23,15 @@ public class GeneratorService {
     
     @Autowired
     private ProblemService problemService;
+
+    @Autowired
+    private ProblemBuildService problemBuildService;
     
     public List<GeneratorFile> getGeneratorFiles(Long problemId) {
         return generatorFileRepository.findByProblemId(problemId);
     }
     
-    public GeneratorFile createGeneratorFile(Long problemId, Long userId, int generatorId, MultipartFile file) throws IOException {
+    public GeneratorFile createGeneratorFile(Long problemId, Long userId, int generatorId, MultipartFile file, boolean pretest) throws IOException {
         // Check if user has access to the problem
         if (!problemService.authorHaveAccess(userId, problemId)) {
             // System.out.println("User does not have access to problem: " + problemId);
@@ -62,10 +65,13 @@ public class GeneratorService {
         generatorFile.setFileName(file.getOriginalFilename());
         generatorFile.setFilePath(filePath);
         generatorFile.setProblem(problem);
+        generatorFile.setPretest(pretest);
 
         // System.out.println("Created generator file: " + generatorFile.getFileName());
 
-        return generatorFileRepository.save(generatorFile);
+        GeneratorFile saved = generatorFileRepository.save(generatorFile);
+        problemBuildService.testsChanged(problemId);
+        return saved;
     }
     
     public boolean deleteGeneratorFile(Long problemId, Long userId, int generatorId) {
@@ -93,7 +99,43 @@ public class GeneratorService {
         // Also delete the physical file if needed
         String filePath = generatorFileOpt.get().getFilePath();
         fileStorageService.deleteFile(filePath);
+        problemBuildService.testsChanged(problemId);
+
+        return true;
+    }
+
+    /** Mark or unmark a generator as a pretest. */
+    public boolean setPretest(Long problemId, Long userId, int generatorId, boolean pretest) {
+        if (!problemService.authorHaveAccess(userId, problemId)) {
+            return false;
+        }
+        Optional<GeneratorFile> existing = generatorFileRepository.findById(new GeneratorFile.GeneratorFileId(problemId, generatorId));
+        if (existing.isEmpty()) {
+            return false;
+        }
+        GeneratorFile generatorFile = existing.get();
+        generatorFile.setPretest(pretest);
+        generatorFileRepository.save(generatorFile);
+        // The pretest set is part of what a cached verdict was judged against
+        problemBuildService.testsChanged(problemId);
+        return true;
+    }
 
+    /** Replace the generator's seed list; each non-blank entry becomes one test. */
+    public boolean setSeeds(Long problemId, Long userId, int generatorId, List<String> seeds) {
+        if (!problemService.authorHaveAccess(userId, problemId)) {
+            return false;
+        }
+        Optional<GeneratorFile> existing = generatorFileRepository.findById(new GeneratorFile.GeneratorFileId(problemId, generatorId));
+        if (existing.isEmpty()) {
+            return false;
+        }
+        GeneratorFile generatorFile = existing.get();
+        String joined = seeds == null ? null : String.join("\n", seeds.stream()
+                .flatMap(String::lines).map(String::trim).filter(l -> !l.isEmpty()).toList());
+        generatorFile.setSeeds(joined == null || joined.isEmpty() ? null : joined);
+        generatorFileRepository.save(generatorFile);
+        problemBuildService.testsChanged(problemId);
         return true;
     }
 }
@@ -0,0 +1,379 @@
+package com.Judge_Mental.XorOJ.service;
+
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import com.Judge_Mental.XorOJ.entity.Submission;
+import com.Judge_Mental.XorOJ.entity.Submission.JudgeScope;
+import com.Judge_Mental.XorOJ.entity.Submission.SubmissionStatus;
+import com.Judge_Mental.XorOJ.entity.XUser;
+import com.Judge_Mental.XorOJ.judge.AdaptiveLimiter;
+import com.Judge_Mental.XorOJ.judge.CppExecutor.RunResult;
+import com.Judge_Mental.XorOJ.repo.SubmissionRepository;
+import com.Judge_Mental.XorOJ.repo.XUserRepository;
+import com.Judge_Mental.XorOJ.service.FairJudgeQueue.Job;
+import com.Judge_Mental.XorOJ.service.FairJudgeQueue.JudgeClass;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Runs judging off the HTTP thread. Submit persists a PENDING submission and returns;
+ * judging is a two-stage pipeline so compilation and test runs overlap across submissions:
+ * <pre>
+ *   queue --(compile workers: g++, checker, test plan)--> ready --(execute workers: tests)--> verdict
+ * </pre>
+ * Each stage has its own pool ({@code judge.compile.workers}, {@code judge.workers}); the
+ * ready queue is bounded ({@code judge.execute.queue-capacity}) so compilation only runs a
+ * little ahead of execution.
+ *
+ * The submissions table is the durable queue: anything left PENDING or RUNNING when the
+ * server stopped is re-queued on startup, so the in-memory queue only holds ids.
+ *
+ * Work enters through a {@link FairJudgeQueue}: live contest submissions before practice,
+ * custom runs and rejudges, users taking turns within a class, and a configurable number of
+ * in-flight jobs reserved per class ({@code judge.scheduling.reserved.*}).
+ */
+@Service
+public class JudgeDispatcher {
+
+    private final JudgingService judgingService;
+    private final SubmissionRepository submissionRepository;
+    private final ScoreboardService scoreboardService;
+    private final ContestService contestService;
+    private final XUserRepository userRepository;
+    private final AdaptiveLimiter launchLimiter;
+
+    private FairJudgeQueue queue;
+    private final BlockingQueue<Staged> ready = new PriorityBlockingQueue<>();
+    private final AtomicLong sequence = new AtomicLong();
+    private final Set<Long> inFlight = ConcurrentHashMap.newKeySet();
+    private final List<Thread> workers = new ArrayList<>();
+
+    /** Free places in the ready queue; a compile worker holds one from compiling until execution starts. */
+    private Semaphore readySlots;
+
+    @Value("${judge.workers:0}")
+    private int configuredWorkers;
+
+    @Value("${judge.compile.workers:0}")
+    private int configuredCompileWorkers;
+
+    @Value("${judge.execute.queue-capacity:0}")
+    private int configuredReadyCapacity;
+
+    @Value("${judge.scheduling.reserved.live-contest:0}")
+    private int reservedLiveContest;
+
+    @Value("${judge.scheduling.reserved.practice:1}")
+    private int reservedPractice;
+
+    @Value("${judge.scheduling.reserved.custom-run:1}")
+    private int reservedCustomRun;
+
+    @Value("${judge.scheduling.reserved.rejudge:1}")
+    private int reservedRejudge;
+
+    /** How long a custom run may wait in the queue and run before the request gives up. */
+    @Value("${judge.scheduling.custom-run-timeout-ms:60000}")
+    private long customRunTimeoutMs;
+
+    private int executeWorkers;
+    private int compileWorkers;
+
+    public JudgeDispatcher(JudgingService judgingService,
+                           SubmissionRepository submissionRepository,
+                           ScoreboardService scoreboardService,
+                           ContestService contestService,
+                           XUserRepository userRepository,
+                           AdaptiveLimiter launchLimiter) {
+        this.judgingService = judgingService;
+        this.submissionRepository = submissionRepository;
+        this.scoreboardService = scoreboardService;
+        this.contestService = contestService;
+        this.userRepository = userRepository;
+        this.launchLimiter = launchLimiter;
+    }
+
+    /** A compiled submission waiting for an execute worker. */
+    private record Staged(Job job, JudgingService.Prepared prepared) implements Comparable<Staged> {
+        @Override
+        public int compareTo(Staged o) {
+            return job.compareTo(o.job);
+        }
+    }
+
+    /** Queue depths and pool sizes of both stages, plus the adaptive sandbox launch limit (-1 = off). */
+    public record PipelineStats(int compileQueue, int executeQueue, int compileWorkers, int executeWorkers,
+                                Map<String, Integer> waitingByClass, int launchLimit, int launchesInFlight) {}
+
+    // ---------- Public API ----------
+
+    /**
+     * Entry point for new submissions: an identical earlier submission's verdict is reused
+     * right away, anything else is queued for judging.
+     */
+    public Submission submit(Submission submission) {
+        try {
+            if (judgingService.completeFromCache(submission)) {
+                onJudged(submission);
+                return submission;
+            }
+        } catch (Exception e) {
+            System.out.println("Verdict cache lookup failed for submission " + submission.getId() + ": " + e);
+        }
+        enqueue(submission);
+        return submission;
+    }
+
+    /** Queue a persisted PENDING submission for judging. Returns immediately. */
+    public void enqueue(Submission submission) {
+        offer(submission.getId(), submission.getUserId(), classOf(submission), null, null);
+    }
+
+    /** Queue an accepted pretest verdict for re-judging on the full test set, at the lowest priority. */
+    public void enqueueSystemTest(Long submissionId) {
+        offer(submissionId, null, JudgeClass.REJUDGE, null, null);
+    }
+
+    /**
+     * Compile and run code on a custom input through the judge queue (custom-run class, fair
+     * share per user). Blocks the caller until the run finishes.
+     */
+    public RunResult runCustom(Long userId, String code, String input) throws IOException, InterruptedException {
+        CompletableFuture<Object> result = new CompletableFuture<>();
+        offer(null, userId, JudgeClass.CUSTOM_RUN, () -> judgingService.runCodeWithTest(code, input), result);
+        try {
+            return (RunResult) result.get(customRunTimeoutMs, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            result.cancel(false);
+            throw new IllegalStateException("Custom run timed out in the judge queue");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException io) throw io;
+            throw new IllegalStateException("Custom run failed: " + e.getCause().getMessage(), e.getCause());
+        }
+    }
+
+    public boolean isQueued(Long submissionId) {
+        return inFlight.contains(submissionId);
+    }
+
+    public int queueDepth() {
+        return queue.size();
+    }
+
+    public PipelineStats stats() {
+        return new PipelineStats(queue.size(), ready.size(), compileWorkers, executeWorkers, queue.sizeByClass(),
+                launchLimiter.limit(), launchLimiter.inFlight());
+    }
+
+    private void offer(Long submissionId, Long userId, JudgeClass judgeClass, Callable<?> task, CompletableFuture<Object> result) {
+        if (task == null && (submissionId == null || !inFlight.add(submissionId))) return;
+        queue.offer(new Job(submissionId, userId, judgeClass, sequence.incrementAndGet(), task, result));
+    }
+
+    /** Contest submissions count as live until the contest ends; everything else is practice. */
+    private JudgeClass classOf(Submission s) {
+        Long contestId = s.getContestId();
+        if (contestId == null || contestId <= 0) return JudgeClass.PRACTICE;
+        LocalDateTime endTime = contestService.getContestEndTime(contestId);
+        return endTime != null && LocalDateTime.now().isBefore(endTime) ? JudgeClass.LIVE_CONTEST : JudgeClass.PRACTICE;
+    }
+
+    // ---------- Lifecycle ----------
+
+    @PostConstruct
+    public void init() {
+        Map<JudgeClass, Integer> reserved = new EnumMap<>(JudgeClass.class);
+        reserved.put(JudgeClass.LIVE_CONTEST, reservedLiveContest);
+        reserved.put(JudgeClass.PRACTICE, reservedPractice);
+        reserved.put(JudgeClass.CUSTOM_RUN, reservedCustomRun);
+        reserved.put(JudgeClass.REJUDGE, reservedRejudge);
+        queue = new FairJudgeQueue(reserved);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        int cores = Runtime.getRuntime().availableProcessors();
+        executeWorkers = configuredWorkers > 0 ? configuredWorkers : cores;
+        compileWorkers = configuredCompileWorkers > 0 ? configuredCompileWorkers : Math.max(1, cores / 2);
+        readySlots = new Semaphore(configuredReadyCapacity > 0 ? configuredReadyCapacity : executeWorkers);
+
+        for (int i = 0; i < compileWorkers; i++) startWorker(this::compileLoop, "judge-compile-" + i);
+        for (int i = 0; i < executeWorkers; i++) startWorker(this::executeLoop, "judge-worker-" + i);
+        recoverUnfinished();
+        System.out.println("Judge dispatcher started with " + compileWorkers + " compile and "
+                + executeWorkers + " execute worker slots");
+    }
+
+    private void startWorker(Runnable loop, String name) {
+        Thread t = new Thread(loop, name);
+        t.setDaemon(true);
+        t.start();
+        workers.add(t);
+    }
+
+    @PreDestroy
+    public void stop() {
+        workers.forEach(Thread::interrupt);
+    }
+
+    /** Re-queue submissions that never got a verdict (server restarted mid-judge). */
+    private void recoverUnfinished() {
+        List<Submission> unfinished = submissionRepository.findByStatusInOrderByIdAsc(
+                List.of(SubmissionStatus.PENDING, SubmissionStatus.RUNNING));
+        for (Submission s : unfinished) {
+            if (s.getStatus() == SubmissionStatus.RUNNING) {
+                s.setStatus(SubmissionStatus.PENDING);
+                submissionRepository.save(s);
+            }
+            enqueue(s);
+        }
+        if (!unfinished.isEmpty()) {
+            System.out.println("Re-queued " + unfinished.size() + " unfinished submissions");
+        }
+    }
+
+    // ---------- Workers ----------
+
+    /** Compile stage: prepare one submission at a time, then hand it to the execute stage. */
+    private void compileLoop() {
+        while (!Thread.currentThread().isInterrupted()) {
+            Job job;
+            try {
+                readySlots.acquire();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            try {
+                job = queue.take();
+            } catch (InterruptedException e) {
+                readySlots.release();
+                Thread.currentThread().interrupt();
+                return;
+            }
+            boolean handedOver = false;
+            try {
+                if (job.isCustom()) {
+                    // Nothing to compile ahead of time; the run itself belongs to the execute stage
+                    ready.offer(new Staged(job, null));
+                    handedOver = true;
+                    continue;
+                }
+                JudgingService.Prepared prepared = prepare(job);
+                if (prepared == null) continue;
+                if (prepared.isFinished()) {
+                    complete(job, prepared.submission());
+                } else {
+                    ready.offer(new Staged(job, prepared));
+                    handedOver = true;
+                }
+            } catch (Exception e) {
+                System.out.println("Compiling submission " + job.submissionId() + " failed: " + e);
+            } finally {
+                if (!handedOver) {
+                    readySlots.release();
+                    finish(job);
+                }
+            }
+        }
+    }
+
+    /** Execute stage: run the tests of compiled submissions. */
+    private void executeLoop() {
+        while (!Thread.currentThread().isInterrupted()) {
+            Staged staged;
+            try {
+                staged = ready.take();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            readySlots.release();
+            Job job = staged.job();
+            try {
+                if (job.isCustom()) {
+                    runCustomTask(job);
+                } else {
+                    complete(job, judgingService.execute(staged.prepared()));
+                }
+            } catch (Exception e) {
+                System.out.println("Judging submission " + job.submissionId() + " failed: " + e);
+            } finally {
+                finish(job);
+            }
+        }
+    }
+
+    /** Null when the submission no longer needs judging. */
+    private JudgingService.Prepared prepare(Job job) throws Exception {
+        Submission submission = submissionRepository.findById(job.submissionId()).orElse(null);
+        if (submission == null) return null;
+        if (job.judgeClass() == JudgeClass.REJUDGE) {
+            if (submission.getStatus() != SubmissionStatus.ACCEPTED
+                    || submission.getJudgeScope() != JudgeScope.PRETESTS) return null;
+            return judgingService.prepare(submission, true);
+        }
+        if (submission.getStatus() != SubmissionStatus.PENDING) return null;
+        return judgingService.prepare(submission, false);
+    }
+
+    /** The standings are rebuilt once system testing of the contest completes, not per submission. */
+    private void complete(Job job, Submission judged) {
+        if (job.judgeClass() != JudgeClass.REJUDGE) onJudged(judged);
+    }
+
+    private void runCustomTask(Job job) {
+        if (job.result().isDone()) return; // caller gave up while it was queued
+        try {
+            job.result().complete(job.task().call());
+        } catch (Exception e) {
+            job.result().completeExceptionally(e);
+        }
+    }
+
+    private void finish(Job job) {
+        queue.done(job);
+        if (job.submissionId() != null) inFlight.remove(job.submissionId());
+    }
+
+    /** Completion path: contest submissions made before the end time update the scoreboard. */
+    private void onJudged(Submission s) {
+        Long contestId = s.getContestId();
+        if (contestId == null || contestId <= 0) return;
+
+        LocalDateTime endTime = contestService.getContestEndTime(contestId);
+        if (endTime == null || !endTime.isAfter(s.getSubmissionTime())) return;
+
+        XUser user = userRepository.findById(s.getUserId()).orElse(null);
+        scoreboardService.updateStandingsForSubmission(
+                contestId,
+                s.getProblemId(),
+                s.getUserId(),
+                user != null ? user.getUsername() : String.valueOf(s.getUserId()),
+                s.getStatus() == SubmissionStatus.ACCEPTED,
+                s.getSubmissionTime()
+        );
+    }
+}
@@ -1,27 +1,49 @@
 package com.Judge_Mental.XorOJ.service;
 
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 import com.Judge_Mental.XorOJ.entity.GeneratorFile;
 import com.Judge_Mental.XorOJ.entity.Problem;
 import com.Judge_Mental.XorOJ.entity.Submission;
+import com.Judge_Mental.XorOJ.entity.Submission.JudgeScope;
 import com.Judge_Mental.XorOJ.entity.Submission.SubmissionStatus;
 import com.Judge_Mental.XorOJ.entity.TestFile;
+import com.Judge_Mental.XorOJ.entity.TestStat;
+import com.Judge_Mental.XorOJ.judge.CancelToken;
+import com.Judge_Mental.XorOJ.judge.Checker;
+import com.Judge_Mental.XorOJ.judge.CheckerRegistry;
 import com.Judge_Mental.XorOJ.judge.CppExecutor;
+import com.Judge_Mental.XorOJ.judge.CppExecutor.CompiledProgram;
 import com.Judge_Mental.XorOJ.judge.CppExecutor.JudgeVerdict;
 import com.Judge_Mental.XorOJ.judge.CppExecutor.RunResult;
+import com.Judge_Mental.XorOJ.repo.ContestReadRepository;
 import com.Judge_Mental.XorOJ.repo.GeneratorFileRepository;
 import com.Judge_Mental.XorOJ.repo.ProblemRepository;
 import com.Judge_Mental.XorOJ.repo.SubmissionRepository;
 import com.Judge_Mental.XorOJ.repo.TestFileRepository;
+import com.Judge_Mental.XorOJ.util.Hashing;
+
+import jakarta.annotation.PostConstruct;
 
 @Service
 public class JudgingService {
@@ -40,36 +62,155 @@ public class JudgingService {
     @Autowired
     private SubmissionRepository submissionRepository;
 
+    @Autowired
+    private ContestReadRepository contestReadRepository;
+
+    @Autowired
+    private ProblemBuildService problemBuildService;
+
+    @Autowired
+    private CheckerRegistry checkerRegistry;
+
+    @Autowired
+    private VerdictCache verdictCache;
+
+    @Autowired
+    private TestStatsService testStatsService;
+
+    /**
+     * Run historically discriminating tests first; the reported verdict does not change. Only
+     * used with parallel tests: a sequential run must pass every test below the first failure
+     * anyway, so running a later test early can only add runs there.
+     */
+    @Value("${judge.adaptive-test-order:true}")
+    private boolean adaptiveTestOrder;
+
+    /** Tests of one submission judged concurrently; 1 keeps the classic sequential run. */
+    @Value("${judge.parallel-tests:1}")
+    private int parallelTests;
+
+    /** All tests of a submission in one sandbox lease (sequential, in-JVM checkers only). */
+    @Value("${judge.batch.enabled:false}")
+    private boolean batchTests;
+
+    /** A TLE at most this fraction over the limit is rerun before it becomes final; 0 = off. */
+    @Value("${judge.tle-confirmation.margin:0.1}")
+    private double tleMargin;
+
+    @Value("${judge.tle-confirmation.reruns:2}")
+    private int tleReruns;
+
+    /**
+     * Confirmation reruns in flight across all submissions. This only caps how many reruns add
+     * load at once; a rerun still takes an ordinary sandbox slot next to regular judging.
+     */
+    @Value("${judge.tle-confirmation.concurrency:1}")
+    private int tleConfirmConcurrency;
+
+    private Semaphore confirmSlots;
+
     public JudgingService(CppExecutor cppExecutor) {
         this.cppExecutor = cppExecutor;
     }
 
+    @PostConstruct
+    public void init() {
+        confirmSlots = new Semaphore(Math.max(1, tleConfirmConcurrency), true);
+    }
+
     public RunResult runCodeWithTest(String code, String input) throws IOException, InterruptedException {
         return cppExecutor.execute(code, input, 2000, 128 * 1024, 1.0);
     }
     
+    /**
+     * Finish a new submission from the verdict cache when the same source was already judged
+     * against the current tests and limits. Returns false (submission untouched) on a miss.
+     */
+    public boolean completeFromCache(Submission submission) throws IOException {
+        Problem problem = problemRepository.findById(submission.getProblemId()).orElse(null);
+        if (problem == null) return false;
+        JudgeScope scope = scopeFor(submission, problem);
+        var hit = verdictCache.lookup(verdictCache.keyFor(submission, problem, scope == JudgeScope.PRETESTS));
+        if (hit.isEmpty()) return false;
+        verdictCache.apply(hit.get(), submission);
+        submission.setJudgeScope(scope);
+        submissionRepository.save(submission);
+        return true;
+    }
+
+    /** Judge a new submission: pretests only while its contest is running, otherwise every test. */
     public Submission judgeSubmission(Submission submission) throws IOException, InterruptedException {
-        // Check if submission is null
+        return execute(prepare(submission, false));
+    }
+
+    /** Contest system testing: re-judge a pretest-passed submission on every test. */
+    public Submission judgeSystemTest(Submission submission) throws IOException, InterruptedException {
+        return execute(prepare(submission, true));
+    }
+
+    /**
+     * A submission after the compile stage: either already finished (compile error, cache hit,
+     * unusable problem) or ready to run its tests in the execute stage.
+     */
+    public static final class Prepared {
+        private final Submission submission;
+        private final boolean finished;
+        private final String cacheKey;
+        private Problem problem;
+        private CompiledProgram candidate;
+        private CompiledProgram mainSolution;
+        private Checker checker;
+        private List<TestCase> tests;
+
+        private Prepared(Submission submission, boolean finished, String cacheKey) {
+            this.submission = submission;
+            this.finished = finished;
+            this.cacheKey = cacheKey;
+        }
+
+        public Submission submission() { return submission; }
+
+        public boolean isFinished() { return finished; }
+    }
+
+    /**
+     * Compile stage: mark the submission RUNNING, resolve its test scope, compile it together
+     * with the main solution and checker (all cached per source hash) and plan the tests.
+     */
+    public Prepared prepare(Submission submission, boolean systemTest) throws IOException {
         if (submission == null) {
             throw new IllegalArgumentException("Submission cannot be null");
         }
-        
+        Problem loaded = problemRepository.findById(submission.getProblemId()).orElse(null);
+        JudgeScope scope = systemTest ? JudgeScope.SYSTEM : scopeFor(submission, loaded);
+        boolean pretestsOnly = scope == JudgeScope.PRETESTS;
+
+        // Keyed by the test-set version seen before judging, so a concurrent edit cannot be masked
+        String cacheKey = loaded == null ? null : verdictCache.keyFor(submission, loaded, pretestsOnly);
+        submission.setJudgeScope(scope);
+        submission.setTleReruns(null);
+        if (systemTest) {
+            var hit = verdictCache.lookup(cacheKey);
+            if (hit.isPresent()) {
+                verdictCache.apply(hit.get(), submission);
+                return new Prepared(submissionRepository.save(submission), true, null);
+            }
+        }
+
         // Set status to running
         submission.setStatus(SubmissionStatus.RUNNING);
         submission = submissionRepository.save(submission);
-        
-        long executionTime = 0, memoryUsed = 0;
 
         // Check if the language is C++ (only support C++ for now)
         if (!"cpp".equals(submission.getLanguage()) && !"c".equals(submission.getLanguage())) {
             submission.setStatus(SubmissionStatus.RUNTIME_ERROR);
             submission.setErrorMessage("Unsupported language: " + submission.getLanguage());
-            return submissionRepository.save(submission);
+            return finished(submission, null);
         }
         
         try {
             // Get problem details
-            Problem problem = problemRepository.findById(submission.getProblemId())
+            Problem problem = Optional.ofNullable(loaded)
                 .orElseThrow(() -> new IllegalArgumentException("Problem not found"));
             
             // Read submission file
@@ -79,7 +220,7 @@ public class JudgingService {
                 System.out.println("Submission file not found: " + submissionFilePath);
                 submission.setStatus(SubmissionStatus.RUNTIME_ERROR);
                 submission.setErrorMessage("Submission file not found: " + submissionFilePath);
-                return submissionRepository.save(submission);
+                return finished(submission, null);
             }
             
             // Get the main solution path
@@ -88,84 +229,410 @@ public class JudgingService {
                 System.out.println("No main solution available for problem ID: " + problem.getId());
                 submission.setStatus(SubmissionStatus.ACCEPTED);
                 submission.setErrorMessage("No main solution available for this problem");
-                return submissionRepository.save(submission);
+                return finished(submission, null);
             }
             
-            int timeLimitMs = problem.getTimeLimit();
-            int memoryLimitKB = problem.getMemoryLimit();
-            
-            // Results storage
-            List<JudgeVerdict> verdicts = new ArrayList<>();
-            
-            // First try to judge with generator files if available
-            List<GeneratorFile> generatorFiles = generatorFileRepository.findByProblemId(problem.getId());
-            if (!generatorFiles.isEmpty()) {
-                for (GeneratorFile generator : generatorFiles) {
-                    JudgeVerdict verdict = cppExecutor.compareWithGenerator(
-                            submissionFilePath,
-                            mainSolutionPath,
-                            generator.getFilePath(),
-                            timeLimitMs,
-                            memoryLimitKB
-                    );
-                    verdicts.add(verdict);
-                    
-                    executionTime = Math.max(executionTime, verdict.timeUsedMillis);
-                    memoryUsed = Math.max(memoryUsed, verdict.memoryUsedKB);
-                    submission.setExecutionTime(executionTime);
-                    submission.setMemoryUsed(memoryUsed);
-
-                    // If any test fails with a non-AC status, we can stop judging
-                    if (verdict.status != SubmissionStatus.ACCEPTED) {
-                        System.out.println(verdict);
-                        submission.setStatus(verdict.status);
-                        submission.setErrorMessage(verdict.message);
-                        return submissionRepository.save(submission);
-                    }
-                    
-                }
+            // One build per source hash, shared by every test of the execute stage
+            CompiledProgram candidate = cppExecutor.compile(path);
+            if (!candidate.success) {
+                JudgeVerdict verdict = cppExecutor.compilationError("Submission", candidate);
+                submission.setStatus(verdict.status);
+                submission.setErrorMessage(verdict.message);
+                return finished(submission, cacheKey);
+            }
+
+            CompiledProgram mainSolution = cppExecutor.compile(Paths.get(mainSolutionPath));
+            if (!mainSolution.success) {
+                JudgeVerdict verdict = cppExecutor.compilationError("Main solution", mainSolution);
+                submission.setStatus(verdict.status);
+                submission.setErrorMessage(verdict.message);
+                return finished(submission, null);
             }
             
-            // Then judge with test files if available
-            List<TestFile> testFiles = testFileRepository.findByProblemId(problem.getId());
-            if (!testFiles.isEmpty()) {
-                for (TestFile test : testFiles) {
-                    JudgeVerdict verdict = cppExecutor.compareWithInputFile(
-                            submissionFilePath,
-                            mainSolutionPath,
-                            test.getFilePath(),
-                            timeLimitMs,
-                            memoryLimitKB
-                    );
-                    verdicts.add(verdict);
-                    System.out.println(verdict.message);
-                    executionTime = Math.max(executionTime, verdict.timeUsedMillis);
-                    memoryUsed = Math.max(memoryUsed, verdict.memoryUsedKB);
-                    submission.setExecutionTime(executionTime);
-                    submission.setMemoryUsed(memoryUsed);
-
-                    // If any test fails with a non-AC status, we can stop judging
-                    if (verdict.status != SubmissionStatus.ACCEPTED) {
-                        System.out.println(verdict);
-                        submission.setStatus(verdict.status);
-                        submission.setErrorMessage(verdict.message);
-                        return submissionRepository.save(submission);
-                    }
-                    
-                }
+            Checker checker;
+            try {
+                checker = checkerRegistry.forPath(problem.getCheckerPath());
+            } catch (IllegalArgumentException | IllegalStateException e) {
+                submission.setStatus(SubmissionStatus.RUNTIME_ERROR);
+                submission.setErrorMessage("Problem checker unavailable: " + e.getMessage());
+                return finished(submission, null);
+            }
+
+            Prepared prepared = new Prepared(submission, false, cacheKey);
+            prepared.problem = problem;
+            prepared.candidate = candidate;
+            prepared.mainSolution = mainSolution;
+            prepared.checker = checker;
+            prepared.tests = buildTestPlan(problem, pretestsOnly);
+            return prepared;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return failed(submission, e);
+        } catch (Exception e) {
+            return failed(submission, e);
+        }
+    }
+
+    /** Execute stage: run the planned tests; the verdict is the first failing test in test-id order. */
+    public Submission execute(Prepared prepared) {
+        if (prepared.finished) return prepared.submission;
+        Submission submission = prepared.submission;
+        try {
+            JudgeVerdict failure = runTests(prepared.problem, prepared.candidate, prepared.mainSolution,
+                    prepared.checker, prepared.tests, submission);
+            if (failure != null) {
+                System.out.println(failure.message);
+                submission.setStatus(failure.status);
+                submission.setErrorMessage(failure.message);
+                return finished(submission, prepared.cacheKey).submission;
             }
             
             submission.setStatus(SubmissionStatus.ACCEPTED);
             submission.setErrorMessage(null);
             
-            return  submissionRepository.save(submission);
+            return finished(submission, prepared.cacheKey).submission;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return failed(submission, e).submission;
         } catch (Exception e) {
-            System.out.println(e);
-            // Handle any exceptions
-            submission.setStatus(SubmissionStatus.RUNTIME_ERROR);
-            submission.setErrorMessage("Error during judging: " + e.getMessage());
-            return submissionRepository.save(submission);
+            return failed(submission, e).submission;
         }
     }
 
+    /** Persist a final verdict, remembering it for identical resubmissions when it is cacheable. */
+    private Prepared finished(Submission submission, String cacheKey) {
+        Submission saved = submissionRepository.save(submission);
+        if (cacheKey != null && VerdictCache.cacheable(saved)) {
+            verdictCache.store(cacheKey, saved);
+        }
+        return new Prepared(saved, true, null);
+    }
+
+    private Prepared failed(Submission submission, Exception e) {
+        System.out.println(e);
+        // Handle any exceptions
+        submission.setStatus(SubmissionStatus.RUNTIME_ERROR);
+        submission.setErrorMessage("Error during judging: " + e.getMessage());
+        return finished(submission, null);
+    }
+
+    /**
+     * Pretests only for contest submissions while the contest is running and the problem has
+     * pretests; everything else is judged on the full test set.
+     */
+    private JudgeScope scopeFor(Submission submission, Problem problem) {
+        Long contestId = submission.getContestId();
+        if (problem == null || contestId == null || contestId <= 0) return JudgeScope.FULL;
+        var times = contestReadRepository.getTimes(contestId);
+        if (times == null || times.getStartTime() == null || times.getEndTime() == null) return JudgeScope.FULL;
+        LocalDateTime now = LocalDateTime.now();
+        if (now.isBefore(times.getStartTime()) || !now.isBefore(times.getEndTime())) return JudgeScope.FULL;
+
+        boolean hasPretests = testFileRepository.findByProblemId(problem.getId()).stream().anyMatch(TestFile::isPretest)
+                || generatorFileRepository.findByProblemId(problem.getId()).stream().anyMatch(GeneratorFile::isPretest);
+        return hasPretests ? JudgeScope.PRETESTS : JudgeScope.FULL;
+    }
+
+    @FunctionalInterface
+    interface InputSource {
+        Path resolve() throws IOException, InterruptedException;
+    }
+
+    /** One test of the problem: a readable label for messages and its key in the test statistics. */
+    record TestCase(String label, String key, InputSource input) {
+        TestCase(String label, InputSource input) {
+            this(label, label, input);
+        }
+    }
+
+    /**
+     * Statistics key of one seeded generator run. Arguments can be arbitrarily long, so they are
+     * folded into a hash prefix that keeps the key within {@link TestStat#KEY_LENGTH}.
+     */
+    static String generatorKey(int generatorId, String args) {
+        return "generator " + generatorId + ":" + Hashing.sha256(args.getBytes(StandardCharsets.UTF_8)).substring(0, 40);
+    }
+
+    /** Reporting order: generators first (by generator id), then uploaded test files (by test id). */
+    List<TestCase> buildTestPlan(Problem problem, boolean pretestsOnly) {
+        List<TestCase> tests = new ArrayList<>();
+
+        List<GeneratorFile> generatorFiles = new ArrayList<>(generatorFileRepository.findByProblemId(problem.getId()));
+        generatorFiles.sort(Comparator.comparingInt(GeneratorFile::getGeneratorId));
+        for (GeneratorFile generator : generatorFiles) {
+            if (pretestsOnly && !generator.isPretest()) continue;
+            List<String> seeds = generator.seedList();
+            for (String args : seeds) {
+                InputSource input = () -> problemBuildService.generatedInput(problem, generator, args);
+                // Unseeded generators keep their old key, and with it their test statistics
+                if (seeds.size() == 1 && args.isEmpty()) {
+                    tests.add(new TestCase("generator " + generator.getGeneratorId(), input));
+                } else {
+                    tests.add(new TestCase("generator " + generator.getGeneratorId() + " (" + args + ")",
+                            generatorKey(generator.getGeneratorId(), args), input));
+                }
+            }
+        }
+
+        List<TestFile> testFiles = new ArrayList<>(testFileRepository.findByProblemId(problem.getId()));
+        testFiles.sort(Comparator.comparingInt(TestFile::getTestId));
+        for (TestFile test : testFiles) {
+            if (pretestsOnly && !test.isPretest()) continue;
+            tests.add(new TestCase("test " + test.getTestId(), () -> Paths.get(test.getFilePath())));
+        }
+        return tests;
+    }
+
+    /**
+     * Run the tests with up to {@code judge.parallel-tests} in flight, in the order suggested by
+     * {@link TestStatsService} when more than one runs at a time and in test order otherwise.
+     * When a test fails, every higher-numbered test is cancelled (its sandbox killed) while
+     * lower-numbered ones still run, so the reported verdict is always the lowest-numbered
+     * failure, exactly as in a sequential run. In batch mode the same rules apply to tests run
+     * one after another in a single sandbox.
+     *
+     * @return the failing verdict, or null when every test passed
+     */
+    JudgeVerdict runTests(Problem problem, CompiledProgram candidate, CompiledProgram mainSolution,
+                                  Checker checker, List<TestCase> tests, Submission submission) throws InterruptedException {
+        int n = tests.size();
+        JudgeVerdict[] verdicts = new JudgeVerdict[n];
+
+        List<String> keys = tests.stream().map(TestCase::key).toList();
+        List<Integer> order = adaptiveTestOrder && parallelTests > 1
+                ? testStatsService.order(problem.getId(), keys)
+                : IntStream.range(0, n).boxed().toList();
+
+        AtomicInteger firstFailure = new AtomicInteger(n);
+        AtomicInteger reruns = new AtomicInteger();
+        if (batchTests && parallelTests <= 1 && !checker.needsSandbox()) {
+            runBatched(problem, candidate, mainSolution, checker, tests, order, verdicts, firstFailure, reruns);
+        } else {
+            runEach(problem, candidate, mainSolution, checker, tests, order, verdicts, firstFailure, reruns);
+        }
+
+        recordStats(problem, keys, verdicts, firstFailure.get());
+
+        int last = Math.min(firstFailure.get(), n - 1);
+        long executionTime = 0, wallTime = 0, memoryUsed = 0;
+        for (int i = 0; i <= last; i++) {
+            if (verdicts[i] == null) continue;
+            executionTime = Math.max(executionTime, verdicts[i].timeUsedMillis);
+            wallTime = Math.max(wallTime, verdicts[i].wallTimeMillis);
+            memoryUsed = Math.max(memoryUsed, verdicts[i].memoryUsedKB);
+        }
+        submission.setExecutionTime(executionTime);
+        submission.setWallTime(wallTime);
+        submission.setMemoryUsed(memoryUsed);
+        submission.setTleReruns(reruns.get() > 0 ? reruns.get() : null);
+
+        return firstFailure.get() < n ? verdicts[firstFailure.get()] : null;
+    }
+
+    /** One sandbox lease per test, up to {@code judge.parallel-tests} at a time. */
+    private void runEach(Problem problem, CompiledProgram candidate, CompiledProgram mainSolution, Checker checker,
+                         List<TestCase> tests, List<Integer> order, JudgeVerdict[] verdicts,
+                         AtomicInteger firstFailure, AtomicInteger reruns) throws InterruptedException {
+        int n = tests.size();
+        CancelToken[] tokens = new CancelToken[n];
+        for (int i = 0; i < n; i++) tokens[i] = new CancelToken();
+        Semaphore permits = new Semaphore(Math.max(1, parallelTests));
+
+        try (ExecutorService pool = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int idx : order) {
+                permits.acquire();
+                if (idx > firstFailure.get()) {
+                    // Already beaten by a lower-numbered failure; later entries may still be lower
+                    permits.release();
+                    continue;
+                }
+                pool.submit(() -> {
+                    try {
+                        if (idx > firstFailure.get()) return;
+                        JudgeVerdict v = judgeTest(problem, candidate, mainSolution, checker, tests.get(idx),
+                                tokens[idx], reruns);
+                        if (tokens[idx].isCancelled()) return;
+                        verdicts[idx] = v;
+                        if (v.status != SubmissionStatus.ACCEPTED) {
+                            firstFailure.accumulateAndGet(idx, Math::min);
+                            for (int j = idx + 1; j < n; j++) tokens[j].cancel();
+                        }
+                    } finally {
+                        permits.release();
+                    }
+                });
+            }
+        } // close() waits for every submitted test
+    }
+
+    /**
+     * Batch mode ({@code judge.batch.enabled}): the tests run in one sandbox lease, in the same
+     * order and under the same lowest-failure rule as {@link #runEach}. Borderline TLEs are
+     * confirmed, and tests the batch did not report are judged one by one, after the lease.
+     */
+    private void runBatched(Problem problem, CompiledProgram candidate, CompiledProgram mainSolution, Checker checker,
+                            List<TestCase> tests, List<Integer> order, JudgeVerdict[] verdicts,
+                            AtomicInteger firstFailure, AtomicInteger reruns) throws InterruptedException {
+        List<Integer> batch = new ArrayList<>();
+        List<Path> inputs = new ArrayList<>();
+        List<Path> answers = new ArrayList<>();
+        for (int idx : order) {
+            if (idx > firstFailure.get()) continue;
+            try {
+                Path input = tests.get(idx).input().resolve();
+                answers.add(problemBuildService.expectedOutput(problem, mainSolution, input));
+                inputs.add(input);
+                batch.add(idx);
+            } catch (IllegalStateException e) {
+                fail(verdicts, firstFailure, idx, new JudgeVerdict(SubmissionStatus.RUNTIME_ERROR, e.getMessage()));
+            } catch (IOException e) {
+                fail(verdicts, firstFailure, idx, new JudgeVerdict(SubmissionStatus.RUNTIME_ERROR,
+                        "Error during judging " + tests.get(idx).label() + ": " + e.getMessage()));
+            }
+        }
+
+        // Smallest test index still ahead of each batch position
+        int[] lowestAfter = new int[batch.size() + 1];
+        lowestAfter[batch.size()] = Integer.MAX_VALUE;
+        for (int p = batch.size() - 1; p >= 0; p--) lowestAfter[p] = Math.min(batch.get(p), lowestAfter[p + 1]);
+
+        long limit = problem.getTimeLimit();
+        long killAfter = killAfter(limit);
+        List<Integer> borderline = new ArrayList<>();
+        int reported = 0;
+        try {
+            reported = cppExecutor.judgeBatch(candidate, checker, inputs, answers, (int) limit, (int) killAfter,
+                    problem.getMemoryLimit(), outputLimitBytes(problem), new CancelToken(), (p, v) -> {
+                        int idx = batch.get(p);
+                        verdicts[idx] = v;
+                        if (borderlineTle(v, limit, killAfter)) {
+                            borderline.add(p); // holds the lease; confirmed below
+                        } else if (v.status != SubmissionStatus.ACCEPTED) {
+                            firstFailure.accumulateAndGet(idx, Math::min);
+                        }
+                        return lowestAfter[p + 1] < firstFailure.get();
+                    });
+        } catch (IOException e) {
+            System.out.println("Batch run failed, judging test by test: " + e.getMessage());
+        }
+
+        for (int p : borderline) {
+            int idx = batch.get(p);
+            if (idx > firstFailure.get()) continue;
+            JudgeVerdict v = confirmTimeLimit(problem, candidate, checker, inputs.get(p), answers.get(p), killAfter,
+                    new CancelToken(), verdicts[idx], reruns);
+            if (v.status != SubmissionStatus.ACCEPTED) fail(verdicts, firstFailure, idx, v);
+            else verdicts[idx] = v;
+        }
+        for (int p = reported; p < batch.size(); p++) {
+            int idx = batch.get(p);
+            if (idx > firstFailure.get()) continue;
+            JudgeVerdict v = judgeTest(problem, candidate, mainSolution, checker, tests.get(idx), new CancelToken(), reruns);
+            if (v.status != SubmissionStatus.ACCEPTED) fail(verdicts, firstFailure, idx, v);
+            else verdicts[idx] = v;
+        }
+    }
+
+    private static void fail(JudgeVerdict[] verdicts, AtomicInteger firstFailure, int idx, JudgeVerdict v) {
+        verdicts[idx] = v;
+        firstFailure.accumulateAndGet(idx, Math::min);
+    }
+
+    private JudgeVerdict judgeTest(Problem problem, CompiledProgram candidate, CompiledProgram mainSolution,
+                                   Checker checker, TestCase test, CancelToken cancel, AtomicInteger reruns) {
+        try {
+            return judgeOnInput(problem, candidate, mainSolution, checker, test.input(), cancel, reruns);
+        } catch (Exception e) {
+            return new JudgeVerdict(SubmissionStatus.RUNTIME_ERROR,
+                    "Error during judging " + test.label() + ": " + e.getMessage());
+        }
+    }
+
+    /** Feed the test statistics; judge-side failures say nothing about the tests. */
+    private void recordStats(Problem problem, List<String> keys, JudgeVerdict[] verdicts, int firstFailure) {
+        if (firstFailure < verdicts.length && verdicts[firstFailure].status == SubmissionStatus.RUNTIME_ERROR
+                && (verdicts[firstFailure].message == null || !verdicts[firstFailure].message.startsWith("Submission runtime error"))) {
+            return;
+        }
+        Map<String, Long> timeByKey = new HashMap<>();
+        for (int i = 0; i < verdicts.length; i++) {
+            if (verdicts[i] != null) timeByKey.put(keys.get(i), verdicts[i].timeUsedMillis);
+        }
+        testStatsService.record(problem.getId(), timeByKey, firstFailure < verdicts.length ? keys.get(firstFailure) : null);
+    }
+
+    /**
+     * Judge one test against the stored expected answer (built once per solution/input hash).
+     * Failures of the generator or main solution are reported as RUNTIME_ERROR, as before.
+     * A TLE within the confirmation margin is only final once reruns confirm it.
+     */
+    private JudgeVerdict judgeOnInput(Problem problem, CompiledProgram candidate, CompiledProgram mainSolution,
+                                      Checker checker, InputSource inputSource, CancelToken cancel,
+                                      AtomicInteger reruns) throws IOException, InterruptedException {
+        Path input;
+        Path answer;
+        try {
+            input = inputSource.resolve();
+            answer = problemBuildService.expectedOutput(problem, mainSolution, input);
+        } catch (IllegalStateException e) {
+            return new JudgeVerdict(SubmissionStatus.RUNTIME_ERROR, e.getMessage());
+        }
+        long limit = problem.getTimeLimit();
+        long killAfter = killAfter(limit);
+        JudgeVerdict verdict = runCandidate(problem, candidate, checker, input, answer, killAfter, cancel);
+        if (!borderlineTle(verdict, limit, killAfter) || cancel.isCancelled()) {
+            return verdict;
+        }
+        return confirmTimeLimit(problem, candidate, checker, input, answer, killAfter, cancel, verdict, reruns);
+    }
+
+    /** CPU time after which a run is stopped: the limit plus the confirmation margin, when confirmation is on. */
+    private long killAfter(long limit) {
+        return tleReruns > 0 && tleMargin > 0 ? limit + (long) Math.ceil(limit * tleMargin) : limit;
+    }
+
+    /** Over the limit on CPU time but within the margin; a wall-clock kill below the limit is final. */
+    private static boolean borderlineTle(JudgeVerdict v, long limit, long killAfter) {
+        return v.status == SubmissionStatus.TIME_LIMIT_EXCEEDED && killAfter > limit
+                && v.timeUsedMillis > limit && v.timeUsedMillis <= killAfter;
+    }
+
+    /**
+     * Rerun a borderline TLE (at most judge.tle-confirmation.concurrency reruns at a time across
+     * the judge) and keep its best CPU time. A rerun that fits the limit decides the test.
+     */
+    private JudgeVerdict confirmTimeLimit(Problem problem, CompiledProgram candidate, Checker checker, Path input,
+                                          Path answer, long killAfter, CancelToken cancel, JudgeVerdict first,
+                                          AtomicInteger reruns) throws InterruptedException {
+        JudgeVerdict best = first;
+        int done = 0;
+        confirmSlots.acquire();
+        try {
+            while (done < tleReruns && !cancel.isCancelled()) {
+                done++;
+                reruns.incrementAndGet();
+                JudgeVerdict v = runCandidate(problem, candidate, checker, input, answer, killAfter, cancel);
+                if (v.status != SubmissionStatus.TIME_LIMIT_EXCEEDED) return v;
+                if (v.timeUsedMillis < best.timeUsedMillis) best = v;
+            }
+        } finally {
+            confirmSlots.release();
+        }
+        return new JudgeVerdict(SubmissionStatus.TIME_LIMIT_EXCEEDED,
+                best.message + " (confirmed by " + done + " reruns, best CPU " + best.timeUsedMillis + "ms)",
+                best.timeUsedMillis, best.wallTimeMillis, best.memoryUsedKB);
+    }
+
+    private JudgeVerdict runCandidate(Problem problem, CompiledProgram candidate, Checker checker, Path input,
+                                      Path answer, long killAfter, CancelToken cancel) {
+        return cppExecutor.compareWithAnswer(candidate, checker, input, answer, problem.getTimeLimit(), killAfter,
+                problem.getMemoryLimit(), outputLimitBytes(problem) / 1024, cancel);
+    }
+
+    /** Stdout cap in bytes; problems saved while the limit defaulted to 0 get the default instead. */
+    static long outputLimitBytes(Problem problem) {
+        int mb = problem.getOutputLimit() > 0 ? problem.getOutputLimit() : Problem.DEFAULT_OUTPUT_LIMIT_MB;
+        return mb * 1024L * 1024L;
+    }
+
 }
@@ -0,0 +1,331 @@
+package com.Judge_Mental.XorOJ.service;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import com.Judge_Mental.XorOJ.entity.GeneratorFile;
+import com.Judge_Mental.XorOJ.entity.Problem;
+import com.Judge_Mental.XorOJ.entity.TestFile;
+import com.Judge_Mental.XorOJ.judge.CheckerRegistry;
+import com.Judge_Mental.XorOJ.judge.CppExecutor;
+import com.Judge_Mental.XorOJ.judge.CppExecutor.CompiledProgram;
+import com.Judge_Mental.XorOJ.judge.CppExecutor.RunResult;
+import com.Judge_Mental.XorOJ.repo.GeneratorFileRepository;
+import com.Judge_Mental.XorOJ.repo.ProblemRepository;
+import com.Judge_Mental.XorOJ.repo.TestFileRepository;
+import com.Judge_Mental.XorOJ.util.Hashing;
+
+/**
+ * Problem "build" step: runs every generator and the main solution once and stores the results
+ * on disk so judging a submission only has to run the submission itself.
+ *
+ * Layout under {@code <upload-dir>/problems/<id>/}:
+ * <pre>
+ *   generated/&lt;generator hash&gt;[-&lt;args hash&gt;].in  generator output for one seed, used as a test input
+ *   answers/&lt;solution hash&gt;/&lt;input hash&gt;.ans  main solution output for that input
+ * </pre>
+ * Everything is keyed by content hash, so replacing the solution, a test or a generator simply
+ * produces new keys; {@link #rebuildAsync(Long)} precomputes them and drops the stale ones.
+ * The hashes of inputs and generator sources are kept in memory per test-set version, so judging
+ * looks them up instead of reading every input again for every submission.
+ */
+@Service
+public class ProblemBuildService {
+
+    private final CppExecutor cppExecutor;
+    private final CheckerRegistry checkerRegistry;
+    private final ProblemRepository problemRepository;
+    private final TestFileRepository testFileRepository;
+    private final GeneratorFileRepository generatorFileRepository;
+    private final VerdictCache verdictCache;
+
+    @Value("${file.upload-dir:./uploads}")
+    private String uploadDir;
+
+    /** Generator and main solution runs of one build in flight at once; 0 = half the cores. */
+    @Value("${judge.build.parallelism:0}")
+    private int buildParallelism;
+
+    /** Builds run off the request thread, one at a time, so authoring never competes with itself. */
+    private final ExecutorService buildPool = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "problem-build");
+        t.setDaemon(true);
+        return t;
+    });
+
+    /** Problems with a rebuild already queued; further change events for them are coalesced. */
+    private final Set<Long> pendingBuilds = ConcurrentHashMap.newKeySet();
+
+    /** Per-answer locks so a lazy fill during judging never races the background build. */
+    private final ConcurrentHashMap<Path, Object> fillLocks = new ConcurrentHashMap<>();
+
+    /** Content hashes by file of one problem's test set, valid for one {@code Problem.testSetVersion}. */
+    private record HashIndex(long testSetVersion, ConcurrentHashMap<Path, String> byFile) {}
+
+    private final ConcurrentHashMap<Long, HashIndex> hashIndexes = new ConcurrentHashMap<>();
+
+    public ProblemBuildService(CppExecutor cppExecutor,
+                               CheckerRegistry checkerRegistry,
+                               ProblemRepository problemRepository,
+                               TestFileRepository testFileRepository,
+                               GeneratorFileRepository generatorFileRepository,
+                               VerdictCache verdictCache) {
+        this.cppExecutor = cppExecutor;
+        this.checkerRegistry = checkerRegistry;
+        this.problemRepository = problemRepository;
+        this.testFileRepository = testFileRepository;
+        this.generatorFileRepository = generatorFileRepository;
+        this.verdictCache = verdictCache;
+    }
+
+    // ---------- Public API ----------
+
+    /**
+     * The solution, checker, a test or a generator changed: retire cached verdicts
+     * and schedule a rebuild.
+     */
+    public void testsChanged(Long problemId) {
+        verdictCache.invalidate(problemId);
+        rebuildAsync(problemId);
+    }
+
+    /** Schedule a rebuild of the problem's artifacts. */
+    public void rebuildAsync(Long problemId) {
+        if (!pendingBuilds.add(problemId)) return;
+        buildPool.submit(() -> {
+            pendingBuilds.remove(problemId);
+            try {
+                build(problemId);
+            } catch (Exception e) {
+                System.out.println("Problem " + problemId + " build failed: " + e.getMessage());
+            }
+        });
+    }
+
+    /**
+     * Precompute generated inputs and expected answers for every test of the problem,
+     * then delete artifacts that no longer belong to the current solution/test set.
+     */
+    public void build(Long problemId) throws IOException, InterruptedException {
+        Problem problem = problemRepository.findProblemById(problemId)
+                .orElseThrow(() -> new IllegalArgumentException("Problem not found"));
+
+        String mainSolutionPath = problem.getMainSolutionPath();
+        if (mainSolutionPath == null || mainSolutionPath.isEmpty()) return;
+
+        CompiledProgram mainSolution = cppExecutor.compile(Paths.get(mainSolutionPath));
+        if (!mainSolution.success) {
+            System.out.println("Problem " + problemId + " main solution does not compile");
+            return;
+        }
+
+        // Compile a custom checker now so the first submission does not pay for it
+        try {
+            checkerRegistry.forPath(problem.getCheckerPath());
+        } catch (IllegalArgumentException | IllegalStateException e) {
+            System.out.println("Problem " + problemId + " checker unusable: " + e.getMessage());
+        }
+
+        Set<Path> liveInputs = ConcurrentHashMap.newKeySet();
+        Set<Path> liveAnswers = ConcurrentHashMap.newKeySet();
+        AtomicReference<Exception> failure = new AtomicReference<>();
+        int parallelism = buildParallelism > 0 ? buildParallelism
+                : Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+        Semaphore permits = new Semaphore(parallelism);
+
+        // Every generator seed and every uploaded test is an independent generate -> answer chain
+        try (ExecutorService pool = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (GeneratorFile generator : generatorFileRepository.findByProblemId(problemId)) {
+                CompiledProgram generatorProgram = cppExecutor.compile(Paths.get(generator.getFilePath()));
+                if (!generatorProgram.success) continue;
+                for (String args : generator.seedList()) {
+                    submitStep(pool, permits, failure, () -> {
+                        Path input = generatedInput(problem, generatorProgram, args);
+                        liveInputs.add(input);
+                        liveAnswers.add(expectedOutput(problem, mainSolution, input));
+                    });
+                }
+            }
+
+            for (TestFile test : testFileRepository.findByProblemId(problemId)) {
+                submitStep(pool, permits, failure,
+                        () -> liveAnswers.add(expectedOutput(problem, mainSolution, Paths.get(test.getFilePath()))));
+            }
+        } // close() waits for every step
+
+        // A failed step leaves the previous artifacts in place
+        if (failure.get() instanceof IOException e) throw e;
+        if (failure.get() instanceof InterruptedException e) throw e;
+        if (failure.get() instanceof RuntimeException e) throw e;
+
+        pruneStale(problemDir(problemId).resolve("generated"), liveInputs);
+        pruneStale(problemDir(problemId).resolve("answers"), liveAnswers);
+        System.out.println("Problem " + problemId + " built: " + liveAnswers.size() + " answers");
+    }
+
+    /**
+     * Cached input of one generator seed. Judging normally only reads the file written by
+     * {@link #build(Long)}; the generator is compiled and run here only if the build has not
+     * reached it yet.
+     */
+    public Path generatedInput(Problem problem, GeneratorFile generator, String args) throws IOException, InterruptedException {
+        Path source = Paths.get(generator.getFilePath());
+        Path cached = generatedPath(problem.getId(), contentHash(problem, source), args);
+        if (Files.isRegularFile(cached)) return cached;
+
+        CompiledProgram generatorProgram = cppExecutor.compile(source);
+        if (!generatorProgram.success) {
+            throw new IllegalStateException("Generator failed: " + generatorProgram.compileLog);
+        }
+        return generatedInput(problem, generatorProgram, args);
+    }
+
+    /**
+     * Input produced by a generator run with {@code args}, generated once per generator source
+     * hash and argument line.
+     */
+    public Path generatedInput(Problem problem, CompiledProgram generator, String args) throws IOException, InterruptedException {
+        Path target = generatedPath(problem.getId(), generator.sourceHash, args);
+        return fill(target, out -> {
+            RunResult gen = cppExecutor.runGenerator(generator, args, out, problem.getTimeLimit(), problem.getMemoryLimit());
+            if (gen.exitCode != 0) {
+                throw new IllegalStateException("Generator failed: " + gen.stderr);
+            }
+        });
+    }
+
+    /**
+     * Expected answer for an input, keyed by main solution hash and input hash.
+     * Normally precomputed by {@link #build(Long)}; computed on demand if judging gets here first.
+     */
+    public Path expectedOutput(Problem problem, CompiledProgram mainSolution, Path input) throws IOException, InterruptedException {
+        String inputHash = contentHash(problem, input);
+        Path target = problemDir(problem.getId()).resolve("answers")
+                .resolve(mainSolution.sourceHash)
+                .resolve(inputHash + ".ans");
+        return fill(target, out -> {
+            RunResult main = cppExecutor.runToFile(mainSolution, input, out, problem.getTimeLimit(), problem.getMemoryLimit());
+            if (main.exitCode != 0) {
+                var verdict = cppExecutor.classifyNonZero("Main solution", main, problem.getTimeLimit(), problem.getMemoryLimit());
+                throw new IllegalStateException(verdict.message);
+            }
+        });
+    }
+
+    // ---------- Internal ----------
+
+    @FunctionalInterface
+    private interface Producer {
+        /** Write the artifact into {@code out}; throw to discard it. */
+        void produce(Path out) throws IOException, InterruptedException;
+    }
+
+    @FunctionalInterface
+    private interface BuildStep {
+        void run() throws IOException, InterruptedException;
+    }
+
+    /** Run one build step on the pool, at most {@code permits} at a time; the first failure is kept. */
+    private static void submitStep(ExecutorService pool, Semaphore permits, AtomicReference<Exception> failure,
+                                   BuildStep step) {
+        pool.submit(() -> {
+            try {
+                permits.acquire();
+                try {
+                    if (failure.get() == null) step.run();
+                } finally {
+                    permits.release();
+                }
+            } catch (IOException | InterruptedException | RuntimeException e) {
+                failure.compareAndSet(null, e);
+            }
+        });
+    }
+
+    /**
+     * SHA-256 of a test input or generator source, computed once per test-set version: the build
+     * hashes every test, judging then only looks them up. A file at a given path only changes
+     * together with a version bump, so its hash holds for the whole version.
+     */
+    private String contentHash(Problem problem, Path file) throws IOException {
+        long version = problem.getTestSetVersion();
+        HashIndex index = hashIndexes.compute(problem.getId(), (_, current) ->
+                current == null || current.testSetVersion() < version
+                        ? new HashIndex(version, new ConcurrentHashMap<>())
+                        : current);
+        // A judge still holding an older version of the problem: hash, but do not record it
+        if (index.testSetVersion() != version) return Hashing.sha256(file);
+
+        Path key = file.toAbsolutePath().normalize();
+        String hash = index.byFile().get(key);
+        if (hash == null) {
+            hash = Hashing.sha256(file);
+            index.byFile().put(key, hash);
+        }
+        return hash;
+    }
+
+    /** No arguments keeps the plain {@code <hash>.in} name of single-run generators. */
+    private Path generatedPath(Long problemId, String generatorHash, String args) {
+        String key = args == null || args.isBlank() ? generatorHash
+                : generatorHash + "-" + Hashing.sha256(args.trim().getBytes(StandardCharsets.UTF_8)).substring(0, 16);
+        return problemDir(problemId).resolve("generated").resolve(key + ".in");
+    }
+
+    private Path fill(Path target, Producer producer) throws IOException, InterruptedException {
+        if (Files.isRegularFile(target)) return target;
+        Object lock = fillLocks.computeIfAbsent(target, _ -> new Object());
+        try {
+            synchronized (lock) {
+                if (Files.isRegularFile(target)) return target;
+                Files.createDirectories(target.getParent());
+                Path tmp = Files.createTempFile(target.getParent(), ".fill-", ".tmp");
+                try {
+                    producer.produce(tmp);
+                    Files.move(tmp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+                } finally {
+                    Files.deleteIfExists(tmp);
+                }
+                return target;
+            }
+        } finally {
+            fillLocks.remove(target, lock);
+        }
+    }
+
+    private Path problemDir(Long problemId) {
+        return Paths.get(uploadDir, "problems", String.valueOf(problemId)).toAbsolutePath().normalize();
+    }
+
+    private static void pruneStale(Path root, Set<Path> live) throws IOException {
+        if (!Files.isDirectory(root)) return;
+        List<Path> files;
+        try (var walk = Files.walk(root)) {
+            files = walk.filter(Files::isRegularFile).toList();
+        }
+        for (Path f : files) {
+            if (!live.contains(f)) Files.deleteIfExists(f);
+        }
+        try (var dirs = Files.list(root)) {
+            for (Path d : dirs.filter(Files::isDirectory).toList()) {
+                try (var entries = Files.list(d)) {
+                    if (entries.findAny().isEmpty()) Files.deleteIfExists(d);
+                }
+            }
+        }
+    }
+}
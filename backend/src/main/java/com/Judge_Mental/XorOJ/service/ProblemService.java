@@ -8,6 +8,8 @@ import com.Judge_Mental.XorOJ.dto.ContestResponseDTO;
 import com.Judge_Mental.XorOJ.dto.ProblemViewDTO;
 import com.Judge_Mental.XorOJ.entity.Problem;
 import com.Judge_Mental.XorOJ.entity.ProblemContributor;
+import com.Judge_Mental.XorOJ.judge.BuiltinChecker;
+import com.Judge_Mental.XorOJ.judge.CheckerRegistry;
 import com.Judge_Mental.XorOJ.repo.ContestRepository;
 import com.Judge_Mental.XorOJ.repo.ProblemContributorRepository;
 import com.Judge_Mental.XorOJ.repo.ProblemRepository;
@@ -34,6 +36,9 @@ public class ProblemService {
     @Autowired
     private FileStorageService fileStorageService;
 
+    @Autowired
+    private ProblemBuildService problemBuildService;
+
     public Problem findProblemById(Long id) {
         Problem problem = problemRepo.findProblemById(id).orElse(null);
         if(problem == null){
@@ -65,6 +70,7 @@ public class ProblemService {
     }
     public Problem createProblem(Problem problem, Long authorId) {
         problem.setAuthorId(authorId);
+        if (problem.getOutputLimit() <= 0) problem.setOutputLimit(Problem.DEFAULT_OUTPUT_LIMIT_MB);
         // Save the problem first to get the ID
         Problem savedProblem = problemRepo.save(problem);
         
@@ -95,7 +101,7 @@ public class ProblemService {
         return exists;
     }
 
-    public boolean updateProblem(Long problemId, Long userId, String inputFileType, String outputFileType, int timeLimit, int memoryLimit, Integer difficultyRating, List<String> tags) {
+    public boolean updateProblem(Long problemId, Long userId, String inputFileType, String outputFileType, int timeLimit, int memoryLimit, Integer outputLimit, Integer difficultyRating, List<String> tags) {
         Problem problem = problemRepo.findProblemById(problemId).orElse(null);
         if (problem == null || !authorHaveAccess(userId, problemId)) {
             return false;
@@ -104,6 +110,7 @@ public class ProblemService {
         problem.setOutputFileType(outputFileType);
         problem.setTimeLimit(timeLimit);
         problem.setMemoryLimit(memoryLimit);
+        if (outputLimit != null && outputLimit > 0) problem.setOutputLimit(outputLimit);
         problem.setDifficultyRating(difficultyRating);
         problem.setTags(tags);
         problemRepo.save(problem);
@@ -139,6 +146,32 @@ public class ProblemService {
 
         problem.setMainSolutionPath(fileStorageService.storeFile(file, directory, file.getOriginalFilename()));
         
-        return problemRepo.save(problem) != null;
+        boolean saved = problemRepo.save(problem) != null;
+        // New solution hash -> every expected answer must be regenerated
+        problemBuildService.testsChanged(problemId);
+        return saved;
+    }
+
+    /**
+     * Set the problem's checker: an uploaded C++ checker, or a built-in spec such as
+     * {@code tokens}, {@code exact} or {@code float:1e-6} when no file is given.
+     */
+    public boolean updateChecker(Long userId, Long problemId, MultipartFile file, String builtin) throws IOException {
+        Problem problem = problemRepo.findProblemById(problemId).orElse(null);
+        if (problem == null || !authorHaveAccess(userId, problemId)) {
+            return false;
+        }
+        if (file != null && !file.isEmpty()) {
+            String directory = "problems/" + problemId + "/checker";
+            problem.setCheckerPath(fileStorageService.storeFile(file, directory, file.getOriginalFilename()));
+        } else {
+            BuiltinChecker.parse(builtin); // rejects unknown specs
+            problem.setCheckerPath(builtin == null ? null : CheckerRegistry.BUILTIN_PREFIX + builtin.trim());
+        }
+
+        boolean saved = problemRepo.save(problem) != null;
+        // Compiles a custom checker ahead of the first submission
+        problemBuildService.testsChanged(problemId);
+        return saved;
     }
 }
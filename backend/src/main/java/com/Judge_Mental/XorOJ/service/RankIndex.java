@@ -0,0 +1,280 @@
+package com.Judge_Mental.XorOJ.service;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.TreeMap;
+import java.util.function.LongConsumer;
+
+/**
+ * ICPC order of one contest's rows, kept incrementally: an order-statistic treap over a packed
+ * {@code long} per user, so an upsert is O(log n), a rank is O(log n) and reading the board in
+ * order is a plain in-order walk with no comparator and no string comparisons.
+ *
+ * Key layout (compared as a signed long, smaller ranks higher):
+ * <pre>
+ *   bit 62..52  2047 - solved          more solved first
+ *   bit 51..24  penalty minutes        less penalty first
+ *   bit 23..0   name ordinal           case-insensitive username order, then user id
+ * </pre>
+ * Name ordinals are spread over the 24-bit space and a new name takes the midpoint of its
+ * neighbours. When two neighbours touch, only the names in the smallest aligned range around
+ * them that is sparse enough are spread out again (list order maintenance: a range of 2^i
+ * ordinals may hold (2 / 1.2)^i names), which moves amortised O(log n) rows per new name. Only
+ * a board too dense for the whole space (about 200k names) is respaced and rebuilt in full.
+ *
+ * Not thread-safe; the owning snapshot synchronizes.
+ */
+final class RankIndex {
+
+    private static final int ORDINAL_BITS = 24;
+    private static final int PENALTY_BITS = 28;
+    private static final long ORDINAL_SPACE = 1L << ORDINAL_BITS;
+    private static final long ORDINAL_MASK = ORDINAL_SPACE - 1;
+    private static final int MAX_SOLVED = (1 << 11) - 1;
+    private static final long MAX_PENALTY = (1L << PENALTY_BITS) - 1;
+    // Names a range of 2^i ordinals may hold before it is too dense to spread out
+    private static final long[] CAPACITY = new long[ORDINAL_BITS + 1];
+
+    static {
+        for (int i = 0; i <= ORDINAL_BITS; i++) CAPACITY[i] = (long) Math.pow(2 / 1.2, i);
+    }
+
+    private static final class Node {
+        final long key;
+        final long userId;
+        final int priority;
+        int size = 1;
+        Node left, right;
+
+        Node(long key, long userId, int priority) {
+            this.key = key;
+            this.userId = userId;
+            this.priority = priority;
+        }
+    }
+
+    /** Username order with the user id as tie-break, so every user has a distinct ordinal. */
+    private record NameKey(String name, long userId) {}
+
+    private static final Comparator<NameKey> NAME_ORDER = Comparator
+            .comparing(NameKey::name, String.CASE_INSENSITIVE_ORDER)
+            .thenComparingLong(NameKey::userId);
+
+    private final SplittableRandom random = new SplittableRandom();
+    private final TreeMap<NameKey, Long> ordinals = new TreeMap<>(NAME_ORDER);
+    private final TreeMap<Long, NameKey> byOrdinal = new TreeMap<>();
+    private final Map<Long, NameKey> nameByUser = new HashMap<>();
+    private final Map<Long, Long> keyByUser = new HashMap<>();
+    private Node root;
+
+    int size() {
+        return keyByUser.size();
+    }
+
+    void clear() {
+        root = null;
+        ordinals.clear();
+        byOrdinal.clear();
+        nameByUser.clear();
+        keyByUser.clear();
+    }
+
+    /** Insert or move a user's row. */
+    void upsert(long userId, String username, int solved, int penaltyMinutes) {
+        // Out of the tree before any ordinal moves, so a relabelled neighbour cannot take its key
+        Long old = keyByUser.remove(userId);
+        if (old != null) root = removeKey(root, old);
+        long key = pack(solved, penaltyMinutes, ordinalOf(userId, username == null ? "" : username));
+        keyByUser.put(userId, key);
+        root = insert(root, new Node(key, userId, random.nextInt()));
+    }
+
+    /** 1-based position of the user on the board, or 0 when the user has no row. */
+    int rank(long userId) {
+        Long key = keyByUser.get(userId);
+        if (key == null) return 0;
+        int less = 0;
+        Node t = root;
+        while (t != null) {
+            if (key <= t.key) {
+                t = t.left;
+            } else {
+                less += size(t.left) + 1;
+                t = t.right;
+            }
+        }
+        return less + 1;
+    }
+
+    /** Visit user ids from first to last place. */
+    void forEachInOrder(LongConsumer action) {
+        ArrayDeque<Node> stack = new ArrayDeque<>();
+        Node t = root;
+        while (t != null || !stack.isEmpty()) {
+            while (t != null) {
+                stack.push(t);
+                t = t.left;
+            }
+            t = stack.pop();
+            action.accept(t.userId);
+            t = t.right;
+        }
+    }
+
+    // ---------- Keys ----------
+
+    private static long pack(int solved, int penaltyMinutes, long ordinal) {
+        long s = MAX_SOLVED - Math.max(0, Math.min(solved, MAX_SOLVED));
+        long p = Math.max(0, Math.min(penaltyMinutes, MAX_PENALTY));
+        return (s << (PENALTY_BITS + ORDINAL_BITS)) | (p << ORDINAL_BITS) | ordinal;
+    }
+
+    private long ordinalOf(long userId, String username) {
+        NameKey current = nameByUser.get(userId);
+        if (current != null) {
+            if (current.name().equals(username)) return ordinals.get(current);
+            byOrdinal.remove(ordinals.remove(current));
+        }
+        NameKey name = new NameKey(username, userId);
+        nameByUser.put(userId, name);
+
+        var lower = ordinals.lowerEntry(name);
+        var higher = ordinals.higherEntry(name);
+        long lo = lower == null ? -1 : lower.getValue();
+        long hi = higher == null ? ORDINAL_SPACE : higher.getValue();
+        long ordinal = hi - lo >= 2 ? (lo + hi) >>> 1 : relabel(name, lower == null ? hi : lo);
+        if (ordinal < 0) {
+            ordinals.put(name, 0L);
+            respace();
+            return ordinals.get(name);
+        }
+        ordinals.put(name, ordinal);
+        byOrdinal.put(ordinal, name);
+        return ordinal;
+    }
+
+    /**
+     * Spread the names of the smallest aligned range around {@code anchor} that has room for one
+     * more evenly over it, leaving a slot for {@code name}, and move their rows in the tree.
+     *
+     * @return the new name's ordinal, or -1 when even the whole space is too dense
+     */
+    private long relabel(NameKey name, long anchor) {
+        for (int level = 1; level <= ORDINAL_BITS; level++) {
+            long width = 1L << level;
+            long base = anchor & -width;
+            var range = byOrdinal.subMap(base, base + width);
+            int count = range.size() + 1;
+            if (count > CAPACITY[level]) continue;
+
+            List<NameKey> names = new ArrayList<>(range.values());
+            int at = -Collections.binarySearch(names, name, NAME_ORDER) - 1;
+            names.add(at, name);
+            range.clear();
+            // Every moved row leaves the tree before any enters, so no two nodes share a key
+            List<Long> moved = new ArrayList<>();
+            long ordinal = -1;
+            for (int j = 0; j < count; j++) {
+                long next = base + (2L * j + 1) * width / (2L * count);
+                NameKey n = names.get(j);
+                if (n == name) {
+                    ordinal = next;
+                    continue;
+                }
+                ordinals.put(n, next);
+                byOrdinal.put(next, n);
+                Long key = keyByUser.get(n.userId());
+                if (key != null && (key & ORDINAL_MASK) != next) {
+                    root = removeKey(root, key);
+                    keyByUser.put(n.userId(), (key & ~ORDINAL_MASK) | next);
+                    moved.add(n.userId());
+                }
+            }
+            for (long userId : moved) root = insert(root, new Node(keyByUser.get(userId), userId, random.nextInt()));
+            return ordinal;
+        }
+        return -1;
+    }
+
+    /** Spread every ordinal evenly again and rebuild the tree with the new keys; only for very large boards. */
+    private void respace() {
+        long step = Math.max(1, ORDINAL_SPACE / (ordinals.size() + 1));
+        long next = step;
+        byOrdinal.clear();
+        for (var e : ordinals.entrySet()) {
+            e.setValue(next);
+            byOrdinal.put(next, e.getKey());
+            next += step;
+        }
+        root = null;
+        for (var e : keyByUser.entrySet()) {
+            long key = (e.getValue() & ~ORDINAL_MASK) | ordinals.get(nameByUser.get(e.getKey()));
+            e.setValue(key);
+            root = insert(root, new Node(key, e.getKey(), random.nextInt()));
+        }
+    }
+
+    // ---------- Treap ----------
+
+    private static int size(Node t) {
+        return t == null ? 0 : t.size;
+    }
+
+    private static Node update(Node t) {
+        t.size = 1 + size(t.left) + size(t.right);
+        return t;
+    }
+
+    private static Node insert(Node t, Node n) {
+        if (t == null) return n;
+        if (n.priority > t.priority) {
+            Node[] parts = split(t, n.key);
+            n.left = parts[0];
+            n.right = parts[1];
+            return update(n);
+        }
+        if (n.key < t.key) t.left = insert(t.left, n);
+        else t.right = insert(t.right, n);
+        return update(t);
+    }
+
+    private static Node removeKey(Node t, long key) {
+        if (t == null) return null;
+        if (key == t.key) return merge(t.left, t.right);
+        if (key < t.key) t.left = removeKey(t.left, key);
+        else t.right = removeKey(t.right, key);
+        return update(t);
+    }
+
+    /** Split into keys {@code < key} and {@code >= key}. */
+    private static Node[] split(Node t, long key) {
+        if (t == null) return new Node[2];
+        if (t.key < key) {
+            Node[] parts = split(t.right, key);
+            t.right = parts[0];
+            parts[0] = update(t);
+            return parts;
+        }
+        Node[] parts = split(t.left, key);
+        t.left = parts[1];
+        parts[1] = update(t);
+        return parts;
+    }
+
+    private static Node merge(Node a, Node b) {
+        if (a == null) return b;
+        if (b == null) return a;
+        if (a.priority > b.priority) {
+            a.right = merge(a.right, b);
+            return update(a);
+        }
+        b.left = merge(a, b.left);
+        return update(b);
+    }
+}
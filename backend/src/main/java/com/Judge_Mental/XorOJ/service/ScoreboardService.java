@@ -2,16 +2,22 @@ package com.Judge_Mental.XorOJ.service;
 
 import com.Judge_Mental.XorOJ.dto.*;
 import com.Judge_Mental.XorOJ.repo.ContestReadRepository;
+import com.Judge_Mental.XorOJ.entity.Contest;
 import com.Judge_Mental.XorOJ.entity.StandingsSnapshotEntity;
+import com.Judge_Mental.XorOJ.live.StandingsBroadcaster;
 import com.Judge_Mental.XorOJ.repo.StandingsSnapshotRepository;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import org.springframework.stereotype.Service;
 
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDateTime;
 import java.time.ZoneOffset;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPOutputStream;
 
 @Service
 public class ScoreboardService {
@@ -19,13 +25,16 @@ public class ScoreboardService {
     private final StandingsSnapshotRepository snapshotRepo;
     private final ContestReadRepository contestRepo;
     private final ObjectMapper objectMapper;
+    private final StandingsBroadcaster broadcaster;
 
     public ScoreboardService(StandingsSnapshotRepository snapshotRepo,
                              ContestReadRepository contestRepo,
-                             ObjectMapper objectMapper) {
+                             ObjectMapper objectMapper,
+                             StandingsBroadcaster broadcaster) {
         this.snapshotRepo = snapshotRepo;
         this.contestRepo = contestRepo;
         this.objectMapper = objectMapper;
+        this.broadcaster = broadcaster;
     }
 
     // contestId -> in-memory snapshot
@@ -38,12 +47,23 @@ public class ScoreboardService {
         return s.toDTO();
     }
 
+    /** Serialized board, plus its gzip form, for one version; built once and shared by every reader. */
+    public record EncodedStandings(long version, String status, byte[] json, byte[] gzip) {}
+
+    /**
+     * The current board as JSON bytes, serialized and compressed once per version (and contest
+     * status, which changes with the clock). The embedded nowEpochMs is the time of encoding.
+     */
+    public EncodedStandings getEncodedSnapshot(Long contestId) {
+        Snapshot s = boards.computeIfAbsent(contestId, this::createSnapshotFromDb);
+        return encode(s);
+    }
+
     public long applyRowUpdate(Long contestId, List<Long> problemIds, StandingRow row) {
         Snapshot s = boards.computeIfAbsent(contestId, this::createSnapshotFromDb);
         if (s.finalized) return s.version.get(); // ignore updates after finalize
         s.setProblemIds(problemIds);
-        s.upsertRow(row);
-        return s.version.incrementAndGet();
+        return commitRow(s, row);
     }
 
     /** Replace whole snapshot (used on rebuild). */
@@ -51,9 +71,12 @@ public class ScoreboardService {
         Snapshot s = boards.computeIfAbsent(contestId, this::createSnapshotFromDb);
         if (s.finalized) return s.version.get();
         s.setProblemIds(problemIds);
-        s.rowsByUser.clear();
-        for (var r : rows) s.rowsByUser.put(r.userId(), r);
-        return s.version.incrementAndGet();
+        synchronized (s) {
+            s.replaceRows(rows);
+            long v = s.version.incrementAndGet();
+            broadcaster.publish(new StandingsEvent("SNAPSHOT", contestId, v, s.toDTO().rows()));
+            return v;
+        }
     }
 
     /** Persist current snapshot (not marked finalized). */
@@ -63,13 +86,15 @@ public class ScoreboardService {
         writeSnapshotEntity(s, false);
     }
 
-    /** Finalize & persist once when contest ended. Safe to call repeatedly. */
+    /** Finalize & persist once when contest ended and system testing is done. Safe to call repeatedly. */
     public void finalizeIfEnded(Long contestId) {
         Snapshot s = boards.computeIfAbsent(contestId, this::createSnapshotFromDb);
         if (s.finalized) return;
         
         // Check if the contest has ended
         if (s.now() >= s.endEpochMs) {
+            // Pretest verdicts are provisional until system testing has re-judged them
+            if (!s.systemTested) return;
             s.finalized = true;
             // Save final standings to the database
             writeSnapshotEntity(s, true);
@@ -82,6 +107,31 @@ public class ScoreboardService {
         }
     }
 
+    /** Drop every row before standings are replayed from final verdicts. */
+    public long resetStandings(Long contestId) {
+        Snapshot s = boards.computeIfAbsent(contestId, this::createSnapshotFromDb);
+        if (s.finalized) return s.version.get();
+        synchronized (s) {
+            s.replaceRows(List.of());
+            long v = s.version.incrementAndGet();
+            broadcaster.publish(new StandingsEvent("RESET", contestId, v, List.of()));
+            return v;
+        }
+    }
+
+    /** System testing finished: the standings may now be finalized. */
+    public void markSystemTested(Long contestId) {
+        Snapshot s = boards.computeIfAbsent(contestId, this::createSnapshotFromDb);
+        s.systemTested = true;
+        finalizeIfEnded(contestId);
+    }
+
+    /** 1-based place of the user on the contest's board, or 0 when the user has no row. */
+    public int getRank(Long contestId, Long userId) {
+        Snapshot s = boards.computeIfAbsent(contestId, this::createSnapshotFromDb);
+        return s.rank(userId);
+    }
+
     /** Called by scheduler to finalize all ended contests currently in memory. */
     public void finalizeEndedContests() {
         boards.keySet().forEach(this::finalizeIfEnded);
@@ -96,8 +146,7 @@ public class ScoreboardService {
             StandingsDTO dto = objectMapper.readValue(e.getPayloadJson(), StandingsDTO.class);
             Snapshot s = boards.computeIfAbsent(contestId, id -> new Snapshot(id));
             s.problemIds = dto.problemIds() == null ? List.of() : List.copyOf(dto.problemIds());
-            s.rowsByUser.clear();
-            if (dto.rows() != null) for (var r : dto.rows()) s.rowsByUser.put(r.userId(), r);
+            s.replaceRows(dto.rows() == null ? List.of() : dto.rows());
             s.version.set(e.getVersion());
             s.startEpochMs = dto.startEpochMs();
             s.endEpochMs = dto.endEpochMs();
@@ -126,45 +175,47 @@ public class ScoreboardService {
             s.setProblemIds(problemIds);
         }
         
-        // Get existing row or create new one
-        StandingRow existingRow = s.rowsByUser.getOrDefault(userId, 
-                new StandingRow(userId, username, 0, 0, new HashMap<>()));
+        synchronized (s) { // read-modify-write of the user's row
+            // Get existing row or create new one
+            StandingRow existingRow = s.rowsByUser.getOrDefault(userId, 
+                    new StandingRow(userId, username, 0, 0, new HashMap<>()));
         
-        // Get existing cell or create new one
-        Map<Long, StandingCell> cells = new HashMap<>(existingRow.cells());
-        StandingCell cell = cells.getOrDefault(problemId, new StandingCell(false, null, 0));
+            // Get existing cell or create new one
+            Map<Long, StandingCell> cells = new HashMap<>(existingRow.cells());
+            StandingCell cell = cells.getOrDefault(problemId, new StandingCell(false, null, 0));
         
-        // Only update if not already solved
-        if (cell.timeFromStartMin() == null) {
-            if (accepted) {
-                // Calculate time from start in minutes
-                long startTimeMs = s.startEpochMs;
-                long submissionTimeMs = submissionTime.toInstant(ZoneOffset.UTC).toEpochMilli();
-                int timeFromStartMin = (int) ((submissionTimeMs - startTimeMs) / (1000 * 60));
+            // Only update if not already solved
+            if (cell.timeFromStartMin() == null) {
+                if (accepted) {
+                    // Calculate time from start in minutes
+                    long startTimeMs = s.startEpochMs;
+                    long submissionTimeMs = submissionTime.toInstant(ZoneOffset.UTC).toEpochMilli();
+                    int timeFromStartMin = (int) ((submissionTimeMs - startTimeMs) / (1000 * 60));
                 
-                // Create updated cell
-                boolean isFirstSolved = s.rowsByUser.values().stream()
-                        .noneMatch(r -> r.cells().containsKey(problemId) && 
-                                   r.cells().get(problemId).timeFromStartMin() != null);
+                    // Create updated cell
+                    boolean isFirstSolved = s.rowsByUser.values().stream()
+                            .noneMatch(r -> r.cells().containsKey(problemId) && 
+                                       r.cells().get(problemId).timeFromStartMin() != null);
                         
-                cells.put(problemId, new StandingCell(isFirstSolved, timeFromStartMin, cell.rejections()));
+                    cells.put(problemId, new StandingCell(isFirstSolved, timeFromStartMin, cell.rejections()));
                 
-                // Update row's solved count and penalty
-                int solved = existingRow.solved() + 1;
-                int penalty = existingRow.penaltyMinutes() + timeFromStartMin + (cell.rejections() * 20);
+                    // Update row's solved count and penalty
+                    int solved = existingRow.solved() + 1;
+                    int penalty = existingRow.penaltyMinutes() + timeFromStartMin + (cell.rejections() * 20);
                 
-                // Create and insert updated row
-                StandingRow updatedRow = new StandingRow(userId, username, solved, penalty, cells);
-                s.upsertRow(updatedRow);
-            } else {
-                // Increment rejection count for unsuccessful submissions
-                cells.put(problemId, new StandingCell(false, null, cell.rejections() + 1));
-                StandingRow updatedRow = new StandingRow(userId, username, existingRow.solved(), 
-                                                      existingRow.penaltyMinutes(), cells);
-                s.upsertRow(updatedRow);
+                    // Create and insert updated row
+                    StandingRow updatedRow = new StandingRow(userId, username, solved, penalty, cells);
+                    commitRow(s, updatedRow);
+                } else {
+                    // Increment rejection count for unsuccessful submissions
+                    cells.put(problemId, new StandingCell(false, null, cell.rejections() + 1));
+                    StandingRow updatedRow = new StandingRow(userId, username, existingRow.solved(), 
+                                                          existingRow.penaltyMinutes(), cells);
+                    commitRow(s, updatedRow);
+                }
             }
         }
-        
+
         // Persist snapshot after update if contest is about to end
         if (s.now() >= s.endEpochMs - (5 * 60 * 1000)) { // 5 minutes before contest ends
             persistSnapshot(contestId);
@@ -179,6 +230,7 @@ public class ScoreboardService {
         if (t != null) {
             s.startEpochMs = toEpochMs(t.getStartTime());
             s.endEpochMs = toEpochMs(t.getEndTime());
+            s.systemTested = t.getSystemTestStatus() == Contest.SystemTestStatus.DONE;
         }
         s.problemIds = Optional.ofNullable(contestRepo.findProblemIds(contestId)).orElseGet(List::of);
         // If we have a stored snapshot, prefer it:
@@ -186,18 +238,56 @@ public class ScoreboardService {
         return s;
     }
 
+    /** Apply one row and publish it as a delta, under the board lock so events leave in version order. */
+    private long commitRow(Snapshot s, StandingRow row) {
+        synchronized (s) {
+            s.upsertRow(row);
+            long v = s.version.incrementAndGet();
+            broadcaster.publish(new StandingsEvent("ROW_UPDATE", s.contestId, v, List.of(row)));
+            return v;
+        }
+    }
+
     private static long toEpochMs(LocalDateTime ldt) {
         return ldt == null ? 0L : ldt.toInstant(ZoneOffset.UTC).toEpochMilli();
     }
 
+    private EncodedStandings encode(Snapshot s) {
+        EncodedStandings cached = s.encoded;
+        long now = s.now();
+        if (cached != null && cached.version() == s.version.get()
+                && cached.status().equals(statusOf(now, s.startEpochMs, s.endEpochMs))) {
+            return cached;
+        }
+        synchronized (s.encodeLock) {
+            cached = s.encoded;
+            if (cached != null && cached.version() == s.version.get()
+                    && cached.status().equals(statusOf(s.now(), s.startEpochMs, s.endEpochMs))) {
+                return cached;
+            }
+            try {
+                StandingsDTO dto = s.toDTO();
+                byte[] json = objectMapper.writeValueAsBytes(dto);
+                ByteArrayOutputStream buf = new ByteArrayOutputStream(json.length / 4 + 64);
+                try (GZIPOutputStream gz = new GZIPOutputStream(buf)) {
+                    gz.write(json);
+                }
+                EncodedStandings encoded = new EncodedStandings(dto.version(), dto.status(), json, buf.toByteArray());
+                s.encoded = encoded;
+                return encoded;
+            } catch (IOException ex) {
+                throw new RuntimeException("Failed to serialize standings", ex);
+            }
+        }
+    }
+
     private void writeSnapshotEntity(Snapshot s, boolean finalized) {
         try {
-            StandingsDTO dto = s.toDTO();
-            String json = objectMapper.writeValueAsString(dto);
+            EncodedStandings encoded = encode(s);
             StandingsSnapshotEntity e = new StandingsSnapshotEntity();
             e.setContestId(s.contestId);
-            e.setVersion(dto.version());
-            e.setPayloadJson(json);
+            e.setVersion(encoded.version());
+            e.setPayloadJson(new String(encoded.json(), StandardCharsets.UTF_8));
             e.setFinalized(finalized);
             e.setUpdatedAt(LocalDateTime.now());
             snapshotRepo.save(e);
@@ -206,14 +296,6 @@ public class ScoreboardService {
         }
     }
 
-    private static final Comparator<StandingRow> ICPC = (a, b) -> {
-        int s = Integer.compare(b.solved(), a.solved());
-        if (s != 0) return s;
-        int p = Integer.compare(a.penaltyMinutes(), b.penaltyMinutes());
-        if (p != 0) return p;
-        return a.username().compareToIgnoreCase(b.username());
-    };
-
     private static String statusOf(long now, long start, long end) {
         if (start == 0 || end == 0) return "UPCOMING";
         if (now < start) return "UPCOMING";
@@ -227,9 +309,15 @@ public class ScoreboardService {
         final AtomicLong version = new AtomicLong(0);
         volatile List<Long> problemIds = List.of();
         final Map<Long, StandingRow> rowsByUser = new ConcurrentHashMap<>();
+        // ICPC order (solved desc, penalty asc, username), maintained on every upsert
+        private final RankIndex ranks = new RankIndex();
         volatile long startEpochMs = 0L;
         volatile long endEpochMs = 0L;
         volatile boolean finalized = false;
+        volatile boolean systemTested = false;
+        // Latest serialized form; replaced when the version or the contest status moves on
+        volatile EncodedStandings encoded;
+        final Object encodeLock = new Object();
 
         Snapshot(Long contestId) { this.contestId = contestId; }
 
@@ -237,20 +325,37 @@ public class ScoreboardService {
             if (ids != null && !ids.isEmpty()) this.problemIds = List.copyOf(ids);
         }
 
-        void upsertRow(StandingRow row) {
+        synchronized void upsertRow(StandingRow row) {
             rowsByUser.put(row.userId(), row);
+            ranks.upsert(row.userId(), row.username(), row.solved(), row.penaltyMinutes());
+        }
+
+        synchronized void replaceRows(List<StandingRow> rows) {
+            rowsByUser.clear();
+            ranks.clear();
+            for (var r : rows) upsertRow(r);
+        }
+
+        synchronized int rank(Long userId) {
+            return ranks.rank(userId);
         }
 
         long now() { return toEpochMs(LocalDateTime.now()); }
 
         StandingsDTO toDTO() {
-            var rows = new ArrayList<>(rowsByUser.values());
-            rows.sort(ICPC);
+            List<StandingRow> rows;
+            long v;
+            synchronized (this) {
+                List<StandingRow> ordered = new ArrayList<>(ranks.size());
+                ranks.forEachInOrder(userId -> ordered.add(rowsByUser.get(userId)));
+                rows = ordered;
+                v = version.get();
+            }
             long now = now();
 
             return new StandingsDTO(
                 contestId,
-                version.get(),
+                v,
                 problemIds,
                 rows,
                 startEpochMs,
@@ -7,9 +7,17 @@ import org.springframework.stereotype.Component;
 public class StandingsScheduler {
 
     private final ScoreboardService scoreboard;
+    private final SystemTestService systemTests;
 
-    public StandingsScheduler(ScoreboardService scoreboard) {
+    public StandingsScheduler(ScoreboardService scoreboard, SystemTestService systemTests) {
         this.scoreboard = scoreboard;
+        this.systemTests = systemTests;
+    }
+
+    // Re-judge pretest-passed submissions of ended contests; finalization waits for this
+    @Scheduled(fixedDelay = 15000)
+    public void systemTestEnded() {
+        systemTests.advanceEndedContests();
     }
 
     // Check every 15s; if a contest ended, persist & finalize once
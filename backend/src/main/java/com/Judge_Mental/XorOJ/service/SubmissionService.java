@@ -60,6 +60,10 @@ public class SubmissionService {
         return submissionRepository.save(submission);
     }
 
+    public Submission findById(Long id) {
+        return submissionRepository.findById(id).orElse(null);
+    }
+
     public List<Submission> getAllSubmissions() {
         return submissionRepository.findAll();
     }
@@ -0,0 +1,108 @@
+package com.Judge_Mental.XorOJ.service;
+
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.springframework.stereotype.Service;
+
+import com.Judge_Mental.XorOJ.entity.Contest;
+import com.Judge_Mental.XorOJ.entity.Contest.SystemTestStatus;
+import com.Judge_Mental.XorOJ.entity.Submission;
+import com.Judge_Mental.XorOJ.entity.Submission.JudgeScope;
+import com.Judge_Mental.XorOJ.entity.Submission.SubmissionStatus;
+import com.Judge_Mental.XorOJ.entity.XUser;
+import com.Judge_Mental.XorOJ.repo.ContestRepository;
+import com.Judge_Mental.XorOJ.repo.SubmissionRepository;
+import com.Judge_Mental.XorOJ.repo.XUserRepository;
+
+/**
+ * Contest system testing. While a contest runs, submissions are judged on pretests only; after
+ * the end, the earliest pretest-passed submission of every user and problem is re-judged on the
+ * full test set at the lowest queue priority. If it fails, the next pass takes the following
+ * one, until one passes (it is the solve the standings score) or none are left. When nothing is
+ * left to judge the standings are replayed from the final verdicts and the scoreboard may
+ * finalize; a pretest pass that was never system tested counts neither as a solve nor as a
+ * rejection.
+ *
+ * Progress is derived from the submissions themselves on every pass, so a restart simply
+ * picks up where it left off.
+ */
+@Service
+public class SystemTestService {
+
+    private final ContestRepository contestRepository;
+    private final SubmissionRepository submissionRepository;
+    private final XUserRepository userRepository;
+    private final JudgeDispatcher judgeDispatcher;
+    private final ScoreboardService scoreboardService;
+
+    public SystemTestService(ContestRepository contestRepository,
+                             SubmissionRepository submissionRepository,
+                             XUserRepository userRepository,
+                             JudgeDispatcher judgeDispatcher,
+                             ScoreboardService scoreboardService) {
+        this.contestRepository = contestRepository;
+        this.submissionRepository = submissionRepository;
+        this.userRepository = userRepository;
+        this.judgeDispatcher = judgeDispatcher;
+        this.scoreboardService = scoreboardService;
+    }
+
+    /** One pass over every ended contest that is not fully system tested yet. */
+    public void advanceEndedContests() {
+        for (Contest contest : contestRepository.findEndedWithoutSystemTest(LocalDateTime.now())) {
+            try {
+                advance(contest);
+            } catch (Exception e) {
+                System.out.println("System testing of contest " + contest.getId() + " failed: " + e.getMessage());
+            }
+        }
+    }
+
+    private void advance(Contest contest) {
+        Long contestId = contest.getId();
+
+        // Pretest verdicts of last-minute submissions must be in before picking what to re-judge
+        long unjudged = submissionRepository.countByContestIdAndStatusIn(contestId,
+                List.of(SubmissionStatus.PENDING, SubmissionStatus.RUNNING));
+        if (unjudged > 0) return;
+
+        List<Long> awaiting = submissionRepository.findAwaitingSystemTest(contestId, contest.getEndTime());
+        if (!awaiting.isEmpty()) {
+            if (contest.getSystemTestStatus() != SystemTestStatus.RUNNING) {
+                contest.setSystemTestStatus(SystemTestStatus.RUNNING);
+                contestRepository.save(contest);
+                System.out.println("System testing contest " + contestId + ": " + awaiting.size() + " submissions");
+            }
+            awaiting.forEach(judgeDispatcher::enqueueSystemTest);
+            return;
+        }
+
+        replayStandings(contestId, contest.getEndTime());
+        contest.setSystemTestStatus(SystemTestStatus.DONE);
+        contestRepository.save(contest);
+        scoreboardService.markSystemTested(contestId);
+        System.out.println("System testing of contest " + contestId + " complete");
+    }
+
+    /** Rebuild the standings from final verdicts, in submission order. */
+    private void replayStandings(Long contestId, LocalDateTime endTime) {
+        List<Submission> submissions = submissionRepository.findByContestIdOrderBySubmissionTimeDesc(contestId);
+        Map<Long, String> usernames = new HashMap<>();
+
+        scoreboardService.resetStandings(contestId);
+        for (int i = submissions.size() - 1; i >= 0; i--) {
+            Submission s = submissions.get(i);
+            if (endTime != null && !endTime.isAfter(s.getSubmissionTime())) continue;
+            // Only reached after the problem was solved, so it can change nothing
+            if (s.getStatus() == SubmissionStatus.ACCEPTED && s.getJudgeScope() == JudgeScope.PRETESTS) continue;
+            String username = usernames.computeIfAbsent(s.getUserId(), id -> userRepository.findById(id)
+                    .map(XUser::getUsername)
+                    .orElse(String.valueOf(id)));
+            scoreboardService.updateStandingsForSubmission(contestId, s.getProblemId(), s.getUserId(), username,
+                    s.getStatus() == SubmissionStatus.ACCEPTED, s.getSubmissionTime());
+        }
+    }
+}
@@ -23,12 +23,15 @@ public class TestFileService {
     
     @Autowired
     private ProblemService problemService;
+
+    @Autowired
+    private ProblemBuildService problemBuildService;
     
     public List<TestFile> getTestFiles(Long problemId) {
         return testFileRepository.findByProblemId(problemId);
     }
     
-    public TestFile createTestFile(Long problemId, Long userId, int testId, MultipartFile file) throws IOException {
+    public TestFile createTestFile(Long problemId, Long userId, int testId, MultipartFile file, boolean pretest) throws IOException {
         // Check if user has access to the problem
         if (!problemService.authorHaveAccess(userId, problemId)) {
             System.out.println("User does not have access to problem: " + problemId);
@@ -62,10 +65,13 @@ public class TestFileService {
         testFile.setFileName(file.getOriginalFilename());
         testFile.setFilePath(filePath);
         testFile.setProblem(problem);
+        testFile.setPretest(pretest);
 
         System.out.println("Created test file: " + testFile.getFileName());
 
-        return testFileRepository.save(testFile);
+        TestFile saved = testFileRepository.save(testFile);
+        problemBuildService.testsChanged(problemId);
+        return saved;
     }
     
     public boolean deleteTestFile(Long problemId, Long userId, int testId) {
@@ -93,7 +99,25 @@ public class TestFileService {
         // Also delete the physical file if needed
         String filePath = testFileOpt.get().getFilePath();
         fileStorageService.deleteFile(filePath);
+        problemBuildService.testsChanged(problemId);
+
+        return true;
+    }
 
+    /** Mark or unmark a test as a pretest. */
+    public boolean setPretest(Long problemId, Long userId, int testId, boolean pretest) {
+        if (!problemService.authorHaveAccess(userId, problemId)) {
+            return false;
+        }
+        Optional<TestFile> existing = testFileRepository.findById(new TestFile.TestFileId(problemId, testId));
+        if (existing.isEmpty()) {
+            return false;
+        }
+        TestFile testFile = existing.get();
+        testFile.setPretest(pretest);
+        testFileRepository.save(testFile);
+        // The pretest set is part of what a cached verdict was judged against
+        problemBuildService.testsChanged(problemId);
         return true;
     }
 }
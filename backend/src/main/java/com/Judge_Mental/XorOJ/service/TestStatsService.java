@@ -0,0 +1,145 @@
+package com.Judge_Mental.XorOJ.service;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import com.Judge_Mental.XorOJ.entity.TestStat;
+import com.Judge_Mental.XorOJ.repo.TestStatRepository;
+
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Per-test judging history used to order tests so rejections happen early.
+ *
+ * Tests are tried by decreasing "failure chance per millisecond": the fraction of judged
+ * submissions for which the test was the reported failure, divided by its average CPU time
+ * plus a fixed start-up cost. Counters live in memory and are flushed as deltas every 30s.
+ */
+@Service
+public class TestStatsService {
+
+    /** Rough cost of starting a run in a sandbox, so instant tests are not all ranked alike. */
+    private static final double START_COST_MS = 20.0;
+
+    private final TestStatRepository statRepository;
+
+    private final Map<Long, Board> boards = new ConcurrentHashMap<>();
+
+    public TestStatsService(TestStatRepository statRepository) {
+        this.statRepository = statRepository;
+    }
+
+    private static final class Counters {
+        long runs;
+        long firstFails;
+        long totalTime;
+
+        boolean isEmpty() {
+            return runs == 0 && firstFails == 0 && totalTime == 0;
+        }
+    }
+
+    /** One problem's counters: totals (persisted + pending) and the deltas not flushed yet. */
+    private static final class Board {
+        final Map<String, Counters> totals = new HashMap<>();
+        final Map<String, Counters> pending = new HashMap<>();
+    }
+
+    // ---------- Public API ----------
+
+    /**
+     * Order in which to run the given tests (listed in reporting order), as indexes into
+     * {@code keys}. Tests without history are treated as likely failures, so new tests run early.
+     */
+    public List<Integer> order(Long problemId, List<String> keys) {
+        Board board = board(problemId);
+        double[] score = new double[keys.size()];
+        synchronized (board) {
+            for (int i = 0; i < keys.size(); i++) {
+                Counters c = board.totals.get(keys.get(i));
+                score[i] = score(c == null ? new Counters() : c);
+            }
+        }
+        List<Integer> order = new ArrayList<>(keys.size());
+        for (int i = 0; i < keys.size(); i++) order.add(i);
+        // Stable: ties (e.g. no history at all) stay in reporting order
+        order.sort(Comparator.comparingDouble((Integer i) -> score[i]).reversed());
+        return order;
+    }
+
+    /**
+     * Record one judged submission: CPU time of every test that ran to completion and the
+     * reported failing test, if any.
+     */
+    public void record(Long problemId, Map<String, Long> timeByKey, String firstFailKey) {
+        Board board = board(problemId);
+        synchronized (board) {
+            timeByKey.forEach((key, time) -> {
+                add(board.totals, key, 1, 0, time);
+                add(board.pending, key, 1, 0, time);
+            });
+            if (firstFailKey != null) {
+                add(board.totals, firstFailKey, 0, 1, 0);
+                add(board.pending, firstFailKey, 0, 1, 0);
+            }
+        }
+    }
+
+    @Scheduled(fixedDelay = 30000)
+    public void flush() {
+        for (Map.Entry<Long, Board> e : boards.entrySet()) {
+            Map<String, Counters> deltas;
+            synchronized (e.getValue()) {
+                if (e.getValue().pending.isEmpty()) continue;
+                deltas = new HashMap<>(e.getValue().pending);
+                e.getValue().pending.clear();
+            }
+            deltas.forEach((key, c) -> {
+                if (c.isEmpty()) return;
+                try {
+                    statRepository.addCounts(e.getKey(), key, c.runs, c.firstFails, c.totalTime);
+                } catch (RuntimeException ex) {
+                    System.out.println("Failed to persist test stats for problem " + e.getKey() + ": " + ex.getMessage());
+                }
+            });
+        }
+    }
+
+    @PreDestroy
+    public void flushOnShutdown() {
+        flush();
+    }
+
+    // ---------- Internal ----------
+
+    private Board board(Long problemId) {
+        return boards.computeIfAbsent(problemId, id -> {
+            Board b = new Board();
+            for (TestStat s : statRepository.findByProblemId(id)) {
+                add(b.totals, s.getId().getTestKey(), s.getRuns(), s.getFirstFails(), s.getTotalTimeMillis());
+            }
+            return b;
+        });
+    }
+
+    private static double score(Counters c) {
+        // Laplace-smoothed failure rate, so a single early failure does not dominate
+        double failRate = (c.firstFails + 1.0) / (c.runs + 2.0);
+        double avgTime = c.runs == 0 ? 0 : (double) c.totalTime / c.runs;
+        return failRate / (avgTime + START_COST_MS);
+    }
+
+    private static void add(Map<String, Counters> map, String key, long runs, long firstFails, long time) {
+        Counters c = map.computeIfAbsent(key, _ -> new Counters());
+        c.runs += runs;
+        c.firstFails += firstFails;
+        c.totalTime += time;
+    }
+}
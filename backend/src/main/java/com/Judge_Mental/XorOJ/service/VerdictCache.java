@@ -0,0 +1,124 @@
+package com.Judge_Mental.XorOJ.service;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDateTime;
+import java.util.Optional;
+
+import org.springframework.stereotype.Service;
+
+import com.Judge_Mental.XorOJ.entity.Problem;
+import com.Judge_Mental.XorOJ.entity.Submission;
+import com.Judge_Mental.XorOJ.entity.Submission.SubmissionStatus;
+import com.Judge_Mental.XorOJ.entity.VerdictCacheEntry;
+import com.Judge_Mental.XorOJ.repo.ProblemRepository;
+import com.Judge_Mental.XorOJ.repo.VerdictCacheRepository;
+import com.Judge_Mental.XorOJ.util.Hashing;
+
+/**
+ * Verdicts of byte-identical resubmissions. An entry is keyed by
+ * {@code sha256(source hash | problem | test-set version | test scope | limits | language)}, so a
+ * hit means the same program would be judged against exactly the same tests under the same limits.
+ *
+ * Changing tests, generators, the checker or the main solution bumps
+ * {@code Problem.testSetVersion} (see {@link #invalidate(Long)}), which retires every old key.
+ */
+@Service
+public class VerdictCache {
+
+    private static final int MAX_MESSAGE_LENGTH = 1000; // VerdictCacheEntry.errorMessage column length
+
+    private final VerdictCacheRepository cacheRepository;
+    private final ProblemRepository problemRepository;
+
+    public VerdictCache(VerdictCacheRepository cacheRepository, ProblemRepository problemRepository) {
+        this.cacheRepository = cacheRepository;
+        this.problemRepository = problemRepository;
+    }
+
+    /**
+     * Cache key of a submission against the problem as loaded, or null if the source is gone.
+     * Pretest-only and full-set verdicts are kept apart.
+     */
+    public String keyFor(Submission submission, Problem problem, boolean pretestsOnly) throws IOException {
+        Path source = Paths.get(submission.getFilePath());
+        if (!Files.isRegularFile(source)) return null;
+        String material = Hashing.sha256(source)
+                + "|" + problem.getId()
+                + "|" + problem.getTestSetVersion()
+                + "|" + (pretestsOnly ? "pretests" : "all")
+                + "|" + problem.getTimeLimit()
+                + "|" + problem.getMemoryLimit()
+                + "|" + problem.getOutputLimit()
+                + "|" + submission.getLanguage();
+        return Hashing.sha256(material.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public Optional<VerdictCacheEntry> lookup(String key) {
+        return key == null ? Optional.empty() : cacheRepository.findById(key);
+    }
+
+    /** Remember a final verdict; only call with results that depend on nothing but the key. */
+    public void store(String key, Submission judged) {
+        if (key == null) return;
+        VerdictCacheEntry entry = new VerdictCacheEntry();
+        entry.setCacheKey(key);
+        entry.setProblemId(judged.getProblemId());
+        entry.setStatus(judged.getStatus());
+        entry.setExecutionTime(judged.getExecutionTime());
+        entry.setWallTime(judged.getWallTime());
+        entry.setMemoryUsed(judged.getMemoryUsed());
+        entry.setErrorMessage(truncate(judged.getErrorMessage()));
+        entry.setCreatedAt(LocalDateTime.now());
+        try {
+            cacheRepository.save(entry);
+        } catch (RuntimeException e) {
+            // A concurrent identical submission stored it first; either copy is fine
+            System.out.println("Verdict cache store skipped: " + e.getMessage());
+        }
+    }
+
+    /** Copy a cached verdict onto a submission. */
+    public void apply(VerdictCacheEntry entry, Submission submission) {
+        submission.setStatus(entry.getStatus());
+        submission.setErrorMessage(entry.getErrorMessage());
+        submission.setExecutionTime(entry.getExecutionTime());
+        submission.setWallTime(entry.getWallTime());
+        submission.setMemoryUsed(entry.getMemoryUsed());
+    }
+
+    /** The problem's tests, checker or main solution changed: no old verdict may be reused. */
+    public void invalidate(Long problemId) {
+        problemRepository.incrementTestSetVersion(problemId);
+        cacheRepository.deleteByProblemId(problemId);
+    }
+
+    /**
+     * Whether a verdict is a property of the submitted program alone. Judge-side failures
+     * (missing main solution, broken checker or generator, internal errors) are not cached, and
+     * neither is a time limit verdict: it depends on how loaded the machine was.
+     */
+    public static boolean cacheable(Submission judged) {
+        SubmissionStatus status = judged.getStatus();
+        if (status == null) return false;
+        return switch (status) {
+            case ACCEPTED -> judged.getErrorMessage() == null;
+            case WRONG_ANSWER, MEMORY_LIMIT_EXCEEDED, OUTPUT_LIMIT_EXCEEDED -> true;
+            case COMPILATION_ERROR -> startsWith(judged, "Submission compilation");
+            case RUNTIME_ERROR -> startsWith(judged, "Submission runtime error");
+            default -> false;
+        };
+    }
+
+    private static String truncate(String message) {
+        if (message == null || message.length() <= MAX_MESSAGE_LENGTH) return message;
+        return message.substring(0, MAX_MESSAGE_LENGTH - 3) + "...";
+    }
+
+    private static boolean startsWith(Submission judged, String prefix) {
+        return judged.getErrorMessage() != null && judged.getErrorMessage().startsWith(prefix);
+    }
+}
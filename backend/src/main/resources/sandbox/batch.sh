@@ -0,0 +1,71 @@
+#!/bin/bash
+# batch.sh - run every test of one submission inside a single sandbox lease (judge.batch.enabled).
+#
+#   bash batch.sh COUNT CPU_LIMIT_S WALL_LIMIT_S OUTPUT_LIMIT_KB
+#
+# Runs as root from the work dir; the tests run as its owner, which must not be root. First the
+# work dir and what was staged there (main, in/, this script) are handed to root, so the job
+# can neither change them nor read another test's input. Test i is then a fresh process in an
+# empty directory run/ with its own limits (RLIMIT_CPU, RLIMIT_FSIZE and a wall-clock timeout);
+# root opens in/i as its stdin and two files under out/ with random names as its stdout and
+# stderr. Afterwards every process of the job user is killed and run/, /tmp and /dev/shm are
+# wiped. Usage comes from /usr/bin/time, written as root to a file the job cannot open, and
+# nothing the job can reach is ever read back. One line per test goes to stdout, in order:
+#
+#   RESULT <i> <exit code> <cpu ms> <wall ms> <max rss KB> <sha256 of stdout> <output name>
+#
+# The judge checks out/<output name> (stderr in out/<output name>.err) as each line arrives,
+# writes <i> back on stdin once it is done with them, and kills the job once the verdict is known.
+set -u
+count=$1 cpu=$2 wall=$3 fsize=$4
+box=$PWD
+
+if [ "$(id -u)" != 0 ] || [ ! -x /usr/bin/time ] || ! command -v setpriv > /dev/null; then
+    echo "UNSUPPORTED"
+    exit 0
+fi
+uid=$(stat -c %u "$box") gid=$(stat -c %g "$box")
+if [ "$uid" = 0 ]; then
+    echo "UNSUPPORTED"
+    exit 0
+fi
+as_job=(setpriv --reuid="$uid" --regid="$gid" --clear-groups --no-new-privs)
+# The job keeps only stdin, stdout and stderr: /usr/bin/time opens its report before forking
+job_line='for fd in /proc/self/fd/*; do fd=${fd##*/}; [ "$fd" -gt 2 ] && eval "exec $fd>&-"; done'
+job_line+="; ulimit -t $cpu; ulimit -f $fsize; exec $box/main"
+
+chown -R 0:0 "$box"
+chmod 755 "$box" main
+chmod 700 in
+mkdir -m 711 out
+names=()
+
+for ((i = 0; i < count; i++)); do
+    name=$(head -c 16 /dev/urandom | od -An -tx1 | tr -d ' \n')
+    names[i]=$name
+    mkdir -m 700 run
+    chown "$uid:$gid" run
+    rm -f .usage
+    start=$(date +%s%N)
+    (cd run && exec /usr/bin/time -f '%U %S %M' -o "$box/.usage" \
+        timeout --foreground -s KILL "$wall" "${as_job[@]}" \
+        bash -c "$job_line" \
+        < "$box/in/$i" > "$box/out/$name" 2> "$box/out/$name.err") &
+    job=$!
+    wait "$job"
+    code=$?
+    end=$(date +%s%N)
+    # Whatever the job left running; kill -1 spares the caller and PID 1, the container's idle process
+    "${as_job[@]}" bash -c 'kill -9 -1' 2> /dev/null
+    rm -rf run /tmp/* /tmp/.[!.]* /dev/shm/* /dev/shm/.[!.]* 2> /dev/null
+
+    read -r user sys rss < <(tail -n 1 .usage 2> /dev/null)
+    cpu_ms=$(awk -v u="${user:-x}" -v s="${sys:-0}" 'BEGIN { if (u == "x") print -1; else printf "%d\n", (u + s) * 1000 }')
+    digest=$(sha256sum "out/$name" | cut -c1-64)
+    echo "RESULT $i $code $cpu_ms $(( (end - start) / 1000000 )) ${rss:--1} $digest $name"
+
+    # Outputs the judge has finished with
+    while read -r -t 0 && read -r done; do
+        [[ $done =~ ^[0-9]+$ ]] && [ -n "${names[done]:-}" ] && rm -f "out/${names[done]}" "out/${names[done]}.err"
+    done
+done
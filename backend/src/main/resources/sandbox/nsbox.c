@@ -0,0 +1,230 @@
+/*
+ * nsbox - run one command in fresh Linux namespaces for the native sandbox backend.
+ *
+ *   nsbox -r ROOTFS -w WORKDIR -c CGROUP -- command [args...]
+ *
+ * The process joins CGROUP (limits are set there by the JVM), unshares user, pid, mount, net,
+ * ipc and uts namespaces and builds a new root on a small tmpfs:
+ *
+ *   /usr /bin /lib* /sbin /etc /opt   read-only binds from ROOTFS
+ *   /box                              WORKDIR, read-write, the working directory
+ *   /tmp                              fresh tmpfs, noexec
+ *   /proc /dev/{null,zero,full,random,urandom}
+ *
+ * PID 1 of the new pid namespace is a small reaper, so the job never runs as init. When this
+ * process dies, the reaper and everything below it are killed with it.
+ *
+ * Exit status is the command's, or 128+signal; 125 means the sandbox could not be set up.
+ */
+#define _GNU_SOURCE
+#include <errno.h>
+#include <fcntl.h>
+#include <sched.h>
+#include <signal.h>
+#include <stdio.h>
+#include <stdlib.h>
+#include <string.h>
+#include <sys/mount.h>
+#include <sys/prctl.h>
+#include <sys/resource.h>
+#include <sys/stat.h>
+#include <sys/statvfs.h>
+#include <sys/syscall.h>
+#include <sys/wait.h>
+#include <unistd.h>
+
+#define SETUP_FAILED 125
+#define NEW_ROOT "/tmp"   /* staging mount point, shadowed only inside our mount namespace */
+
+static void die(const char *what) {
+    fprintf(stderr, "nsbox: %s: %s\n", what, strerror(errno));
+    _exit(SETUP_FAILED);
+}
+
+static void write_file(const char *path, const char *data) {
+    int fd = open(path, O_WRONLY | O_CLOEXEC);
+    if (fd < 0) die(path);
+    ssize_t n = write(fd, data, strlen(data));
+    if (n != (ssize_t) strlen(data)) die(path);
+    close(fd);
+}
+
+/* Flags a read-only remount must keep; a user namespace may not clear locked ones. */
+static unsigned long locked_flags(const char *path) {
+    struct statvfs st;
+    unsigned long flags = 0;
+    if (statvfs(path, &st) != 0) return flags;
+    if (st.f_flag & ST_NOSUID) flags |= MS_NOSUID;
+    if (st.f_flag & ST_NODEV) flags |= MS_NODEV;
+    if (st.f_flag & ST_NOEXEC) flags |= MS_NOEXEC;
+    if (st.f_flag & ST_NOATIME) flags |= MS_NOATIME;
+    if (st.f_flag & ST_NODIRATIME) flags |= MS_NODIRATIME;
+    if (st.f_flag & ST_RELATIME) flags |= MS_RELATIME;
+    return flags;
+}
+
+static void bind(const char *src, const char *dst, int readonly, unsigned long extra) {
+    if (mount(src, dst, NULL, MS_BIND | MS_REC, NULL) != 0) die(dst);
+    unsigned long flags = MS_REMOUNT | MS_BIND | extra | locked_flags(dst);
+    if (readonly) flags |= MS_RDONLY;
+    if (mount(NULL, dst, NULL, flags, NULL) != 0) die(dst);
+}
+
+/* Mirror ROOTFS/name into the new root: directories are bound read-only, symlinks recreated. */
+static void mirror(int rootfd, const char *name) {
+    struct stat st;
+    char src[64], dst[256], target[256];
+    if (fstatat(rootfd, name, &st, AT_SYMLINK_NOFOLLOW) != 0) return;
+
+    snprintf(dst, sizeof dst, NEW_ROOT "/%s", name);
+    if (S_ISLNK(st.st_mode)) {
+        ssize_t n = readlinkat(rootfd, name, target, sizeof target - 1);
+        if (n < 0) die(name);
+        target[n] = '\0';
+        if (symlink(target, dst) != 0) die(dst);
+    } else if (S_ISDIR(st.st_mode)) {
+        if (mkdir(dst, 0755) != 0) die(dst);
+        snprintf(src, sizeof src, "/proc/self/fd/%d/%s", rootfd, name);
+        bind(src, dst, 1, MS_NOSUID | MS_NODEV);
+    }
+}
+
+static void bind_device(const char *name) {
+    char dst[64], src[64];
+    snprintf(src, sizeof src, "/dev/%s", name);
+    snprintf(dst, sizeof dst, NEW_ROOT "/dev/%s", name);
+    int fd = open(dst, O_CREAT | O_WRONLY | O_CLOEXEC, 0666);
+    if (fd < 0) die(dst);
+    close(fd);
+    if (mount(src, dst, NULL, MS_BIND, NULL) != 0) die(dst);
+}
+
+static void build_root(const char *rootfs, const char *workdir) {
+    /* Open both before the staging tmpfs may hide them (the work dir often lives under /tmp) */
+    int rootfd = open(rootfs, O_PATH | O_DIRECTORY | O_CLOEXEC);
+    if (rootfd < 0) die(rootfs);
+    int workfd = open(workdir, O_PATH | O_DIRECTORY | O_CLOEXEC);
+    if (workfd < 0) die(workdir);
+
+    if (mount(NULL, "/", NULL, MS_REC | MS_PRIVATE, NULL) != 0) die("make / private");
+    if (mount("nsbox", NEW_ROOT, "tmpfs", MS_NOSUID | MS_NODEV, "size=1m,mode=0755") != 0) die("root tmpfs");
+
+    static const char *dirs[] = { "usr", "bin", "sbin", "lib", "lib32", "lib64", "libx32", "etc", "opt" };
+    for (size_t i = 0; i < sizeof dirs / sizeof dirs[0]; i++) mirror(rootfd, dirs[i]);
+
+    char src[64];
+    if (mkdir(NEW_ROOT "/box", 0755) != 0) die("mkdir /box");
+    snprintf(src, sizeof src, "/proc/self/fd/%d", workfd);
+    bind(src, NEW_ROOT "/box", 0, MS_NOSUID | MS_NODEV);
+
+    if (mkdir(NEW_ROOT "/tmp", 01777) != 0) die("mkdir /tmp");
+    if (mount("tmp", NEW_ROOT "/tmp", "tmpfs", MS_NOSUID | MS_NODEV | MS_NOEXEC, "size=256m,mode=1777") != 0) die("/tmp");
+
+    if (mkdir(NEW_ROOT "/dev", 0755) != 0) die("mkdir /dev");
+    static const char *devs[] = { "null", "zero", "full", "random", "urandom" };
+    for (size_t i = 0; i < sizeof devs / sizeof devs[0]; i++) bind_device(devs[i]);
+    if (symlink("/proc/self/fd", NEW_ROOT "/dev/fd") != 0) die("/dev/fd");
+
+    if (mkdir(NEW_ROOT "/proc", 0555) != 0) die("mkdir /proc");
+    if (mount("proc", NEW_ROOT "/proc", "proc", MS_NOSUID | MS_NODEV | MS_NOEXEC, NULL) != 0) {
+        fprintf(stderr, "nsbox: /proc not mounted: %s\n", strerror(errno));
+    }
+
+    close(rootfd);
+    close(workfd);
+
+    if (chdir(NEW_ROOT) != 0) die("chdir new root");
+    if (syscall(SYS_pivot_root, ".", ".") != 0) die("pivot_root");
+    if (umount2(".", MNT_DETACH) != 0) die("detach old root");
+    if (chdir("/") != 0) die("chdir /");
+    if (mount(NULL, "/", NULL, MS_REMOUNT | MS_BIND | MS_RDONLY | MS_NOSUID | MS_NODEV, NULL) != 0) die("read-only root");
+}
+
+static int status_code(int status) {
+    if (WIFEXITED(status)) return WEXITSTATUS(status);
+    if (WIFSIGNALED(status)) return 128 + WTERMSIG(status);
+    return SETUP_FAILED;
+}
+
+static void exec_job(char **argv) {
+    struct rlimit core = { 0, 0 };
+    struct rlimit files = { 256, 256 };
+    setrlimit(RLIMIT_CORE, &core);
+    setrlimit(RLIMIT_NOFILE, &files);
+    if (prctl(PR_SET_NO_NEW_PRIVS, 1, 0, 0, 0) != 0) die("no_new_privs");
+    if (chdir("/box") != 0) die("chdir /box");
+
+    clearenv();
+    setenv("PATH", "/usr/local/bin:/usr/bin:/bin", 1);
+    setenv("HOME", "/tmp", 1);
+    setenv("LANG", "C", 1);
+
+    execvp(argv[0], argv);
+    die(argv[0]);
+}
+
+/* PID 1 of the new namespace: reap everything, report the job's status. */
+static int reaper(const char *rootfs, const char *workdir, char **argv) {
+    if (prctl(PR_SET_PDEATHSIG, SIGKILL) != 0) die("pdeathsig");
+    sethostname("sandbox", 7);
+    build_root(rootfs, workdir);
+
+    pid_t job = fork();
+    if (job < 0) die("fork job");
+    if (job == 0) exec_job(argv);
+
+    /* Returning tears the namespace down, including anything the job left running */
+    int status;
+    pid_t pid;
+    while ((pid = wait(&status)) != job) {
+        if (pid < 0 && errno != EINTR) die("wait");
+    }
+    return status_code(status);
+}
+
+int main(int argc, char **argv) {
+    const char *rootfs = NULL, *workdir = NULL, *cgroup = NULL;
+    int opt;
+    while ((opt = getopt(argc, argv, "+r:w:c:")) != -1) {
+        switch (opt) {
+            case 'r': rootfs = optarg; break;
+            case 'w': workdir = optarg; break;
+            case 'c': cgroup = optarg; break;
+            default: goto usage;
+        }
+    }
+    if (!rootfs || !workdir || !cgroup || optind >= argc) goto usage;
+
+    char path[4096], buf[64];
+    uid_t uid = getuid();
+    gid_t gid = getgid();
+
+    /* Join the cgroup first so every process of the job is accounted and limited */
+    snprintf(path, sizeof path, "%s/cgroup.procs", cgroup);
+    snprintf(buf, sizeof buf, "%d", getpid());
+    write_file(path, buf);
+
+    if (unshare(CLONE_NEWUSER | CLONE_NEWNS | CLONE_NEWPID | CLONE_NEWNET | CLONE_NEWIPC | CLONE_NEWUTS) != 0) {
+        die("unshare");
+    }
+    /* Keep the caller's ids inside, so files in the work dir stay owned by the JVM user */
+    write_file("/proc/self/setgroups", "deny");
+    snprintf(buf, sizeof buf, "%d %d 1", uid, uid);
+    write_file("/proc/self/uid_map", buf);
+    snprintf(buf, sizeof buf, "%d %d 1", gid, gid);
+    write_file("/proc/self/gid_map", buf);
+
+    pid_t init = fork();
+    if (init < 0) die("fork");
+    if (init == 0) _exit(reaper(rootfs, workdir, argv + optind));
+
+    int status;
+    while (waitpid(init, &status, 0) < 0) {
+        if (errno != EINTR) die("waitpid");
+    }
+    return status_code(status);
+
+usage:
+    fprintf(stderr, "usage: nsbox -r ROOTFS -w WORKDIR -c CGROUP -- command [args...]\n");
+    return SETUP_FAILED;
+}
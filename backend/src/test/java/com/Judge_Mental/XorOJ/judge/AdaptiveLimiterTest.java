@@ -0,0 +1,50 @@
+package com.Judge_Mental.XorOJ.judge;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+class AdaptiveLimiterTest {
+
+    private AdaptiveLimiter limiter;
+
+    @BeforeEach
+    void setUp() {
+        limiter = new AdaptiveLimiter();
+        ReflectionTestUtils.setField(limiter, "enabled", true);
+        ReflectionTestUtils.setField(limiter, "initialLimit", 8);
+        ReflectionTestUtils.setField(limiter, "minLimit", 1);
+        ReflectionTestUtils.setField(limiter, "maxLimit", 32);
+        ReflectionTestUtils.setField(limiter, "tolerance", 1.5);
+        limiter.init();
+    }
+
+    @Test
+    void oneUnusuallyFastLaunchDoesNotCollapseTheLimit() throws Exception {
+        for (int i = 0; i < 100; i++) launch(50);
+        int before = limiter.limit();
+
+        launch(0);
+        for (int i = 0; i < 100; i++) launch(50);
+
+        assertTrue(limiter.limit() >= before, "limit fell from " + before + " to " + limiter.limit());
+    }
+
+    @Test
+    void sustainedSlowLaunchesStillBackOff() throws Exception {
+        for (int i = 0; i < 100; i++) launch(50);
+        int before = limiter.limit();
+
+        for (int i = 0; i < 50; i++) launch(200);
+
+        assertTrue(limiter.limit() < before, "limit stayed at " + limiter.limit());
+    }
+
+    /** One launch with every permit in use, so the limit counts as saturated. */
+    private void launch(long overheadMs) throws InterruptedException {
+        while (limiter.inFlight() < limiter.limit()) limiter.acquire();
+        limiter.release(overheadMs);
+    }
+}
@@ -0,0 +1,52 @@
+package com.Judge_Mental.XorOJ.judge;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.Mockito.mock;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class BuiltinCheckerTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void problemsWithoutACheckerIgnoreWhitespaceDifferences() throws Exception {
+        Checker checker = new CheckerRegistry(mock(CppExecutor.class), mock(WorkspaceManager.class)).forPath(null);
+
+        assertEquals(Checker.Outcome.ACCEPTED, check(checker, "1 2\n3\n", "1 2 \r\n3"));
+        assertEquals(Checker.Outcome.ACCEPTED, check(checker, "1 2\n3\n", "\n1  2\n3\n\n"));
+        assertEquals(Checker.Outcome.WRONG_ANSWER, check(checker, "1 2\n3\n", "1 2\n4\n"));
+    }
+
+    @Test
+    void exactComparesTrimmedOutputs() throws Exception {
+        Checker exact = BuiltinChecker.parse("exact");
+
+        assertEquals(Checker.Outcome.ACCEPTED, check(exact, "1 2\n3\n", "1 2\n3"));
+        assertEquals(Checker.Outcome.ACCEPTED, check(exact, "1 2\n3\n", "  1 2\n3 \n\n"));
+        assertEquals(Checker.Outcome.ACCEPTED, check(exact, "\n1 2\n3", "1 2\n3\n"));
+        assertEquals(Checker.Outcome.WRONG_ANSWER, check(exact, "1 2\n3\n", "1  2\n3\n"));
+        assertEquals(Checker.Outcome.WRONG_ANSWER, check(exact, "1 2\n3\n", "1 2 \n3\n"));
+        assertEquals(Checker.Outcome.WRONG_ANSWER, check(exact, "1 2\n3\n", "1 2\n"));
+    }
+
+    private Checker.Outcome check(Checker checker, String answer, String output) throws Exception {
+        Path answerFile = Files.writeString(dir.resolve("answer.txt"), answer);
+        byte[] out = output.getBytes(StandardCharsets.US_ASCII);
+        Checker.Session session = checker.begin(dir.resolve("input.txt"), answerFile, 1 << 20);
+        try {
+            // One byte at a time: whitespace runs split across writes
+            for (int i = 0; i < out.length; i++) session.write(out, i, 1);
+            session.close();
+            return session.verdict().outcome();
+        } finally {
+            session.dispose();
+        }
+    }
+}
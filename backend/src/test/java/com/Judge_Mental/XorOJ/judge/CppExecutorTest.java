@@ -0,0 +1,70 @@
+package com.Judge_Mental.XorOJ.judge;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.Judge_Mental.XorOJ.judge.CppExecutor.RunResult;
+
+class CppExecutorTest {
+
+    @TempDir
+    Path cache;
+
+    @Test
+    void compileErrorsWithLocationsAreDeterministic() {
+        assertTrue(CppExecutor.isDeterministicFailure(new RunResult(1, "",
+                "main.cpp: In function 'int main()':\nmain.cpp:3:5: error: 'x' was not declared in this scope", -1, -1)));
+        assertTrue(CppExecutor.isDeterministicFailure(new RunResult(1, "",
+                "/usr/bin/ld: main.cpp:(.text+0x5): undefined reference to `solve()'\ncollect2: error: ld returned 1 exit status",
+                -1, -1)));
+    }
+
+    @Test
+    void killedOrStarvedCompilerIsNotRemembered() {
+        assertFalse(CppExecutor.isDeterministicFailure(new RunResult(1, "",
+                "g++: fatal error: Killed signal terminated program cc1plus\ncompilation terminated.", -1, -1)));
+        assertFalse(CppExecutor.isDeterministicFailure(new RunResult(1, "",
+                "main.cpp:9:1: error: out of memory allocating 65536 bytes", -1, -1)));
+        assertFalse(CppExecutor.isDeterministicFailure(new RunResult(137, "", "", -1, -1)));
+        assertFalse(CppExecutor.isDeterministicFailure(new RunResult(124, "", "main.cpp:1:1: error: x", -1, -1)));
+    }
+
+    @Test
+    void trimRemovesLeastRecentlyUsedBuildsOverTheCap() throws Exception {
+        CppExecutor executor = new CppExecutor(mock(SandboxBackend.class), mock(AdaptiveLimiter.class),
+                mock(WorkspaceManager.class));
+        ReflectionTestUtils.setField(executor, "binaryCacheDir", cache.toString());
+        ReflectionTestUtils.setField(executor, "cacheMaxMB", 2L);
+
+        long hourAgo = System.currentTimeMillis() - 3_600_000L;
+        Path oldest = build("a", hourAgo - 2_000);
+        Path older = build("b", hourAgo - 1_000);
+        Path recent = build("c", System.currentTimeMillis());
+        Path helper = cache.resolve("nsbox-" + "d".repeat(64));
+        Files.createDirectories(helper);
+        Files.write(helper.resolve("nsbox"), new byte[1 << 20]);
+
+        executor.trimCache();
+
+        assertFalse(Files.exists(oldest));
+        assertTrue(Files.exists(older));
+        assertTrue(Files.exists(recent));
+        assertTrue(Files.exists(helper));
+    }
+
+    private Path build(String hashChar, long usedMs) throws Exception {
+        Path dir = Files.createDirectories(cache.resolve(hashChar.repeat(64)));
+        Files.write(dir.resolve("main"), new byte[1 << 20]);
+        Files.setLastModifiedTime(dir, FileTime.fromMillis(usedMs));
+        return dir;
+    }
+}
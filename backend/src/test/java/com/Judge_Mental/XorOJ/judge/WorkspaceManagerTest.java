@@ -0,0 +1,71 @@
+package com.Judge_Mental.XorOJ.judge;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+class WorkspaceManagerTest {
+
+    @TempDir
+    Path root;
+
+    private WorkspaceManager workspaces;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        workspaces = new WorkspaceManager();
+        ReflectionTestUtils.setField(workspaces, "configuredRoot", root.toString());
+        ReflectionTestUtils.setField(workspaces, "quotaMB", 1L);
+        workspaces.init();
+    }
+
+    @Test
+    void nestedReservationDoesNotWaitForTheQuota() throws Exception {
+        try (WorkspaceManager.Workspace spool = workspaces.allocate(1 << 20)) {
+            // A sandbox lease inside the spool's lifetime, with the whole quota already taken
+            try (WorkspaceManager.Reservation _ = workspaces.reserve(1 << 20)) {
+                assertTrue(Files.isDirectory(spool.dir()));
+            }
+
+            // Another thread holds nothing, so it waits until the spool is gone
+            CompletableFuture<Void> other = CompletableFuture.runAsync(() -> {
+                try {
+                    workspaces.reserve(1 << 20).close();
+                } catch (InterruptedException e) {
+                    throw new IllegalStateException(e);
+                }
+            });
+            try {
+                other.get(200, TimeUnit.MILLISECONDS);
+                throw new AssertionError("reservation did not wait for the quota");
+            } catch (TimeoutException expected) {
+                spool.close();
+            }
+            other.get(5, TimeUnit.SECONDS);
+        }
+    }
+
+    @Test
+    void sandboxDirectoriesLiveUnderTheRootAndSurviveRestartCleanup() throws Exception {
+        Path slot = Files.createDirectories(workspaces.sandboxRoot().resolve("slot-0"));
+        Files.writeString(slot.resolve("main"), "left over");
+        Path stale = workspaces.allocate(1).dir();
+
+        workspaces.init();
+
+        assertTrue(slot.startsWith(root));
+        assertFalse(Files.exists(slot.resolve("main")));
+        assertFalse(Files.exists(stale));
+        assertTrue(Files.isDirectory(workspaces.sandboxRoot()));
+    }
+}
@@ -0,0 +1,185 @@
+package com.Judge_Mental.XorOJ.live;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter.DataWithMediaType;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import com.Judge_Mental.XorOJ.dto.StandingRow;
+import com.Judge_Mental.XorOJ.dto.StandingsDTO;
+import com.Judge_Mental.XorOJ.dto.StandingsEvent;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+class StandingsBroadcasterTest {
+
+    private static final long CONTEST = 1L;
+    private static final Pattern EVENT = Pattern.compile("event:(\\w+)\n");
+    private static final Pattern DATA = Pattern.compile("data:(.*)\n\n", Pattern.DOTALL);
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final AtomicLong boardVersion = new AtomicLong();
+    private final AtomicInteger snapshots = new AtomicInteger();
+    private StandingsBroadcaster broadcaster;
+    private String boot;
+
+    @BeforeEach
+    void setUp() {
+        broadcaster = new StandingsBroadcaster(objectMapper);
+        ReflectionTestUtils.setField(broadcaster, "replayEvents", 256);
+        ReflectionTestUtils.setField(broadcaster, "queueEvents", 64);
+        ReflectionTestUtils.setField(broadcaster, "maxLagMs", 15_000L);
+        boot = (String) ReflectionTestUtils.getField(StandingsBroadcaster.class, "BOOT");
+    }
+
+    @Test
+    void resumeInsideTheRingReplaysOnlyMissedEvents() throws Exception {
+        for (long v = 1; v <= 5; v++) rowUpdate(v, v);
+
+        Viewer viewer = connect(boot + "-3");
+
+        assertEquals(List.of("ROW_UPDATE 4", "ROW_UPDATE 5"), viewer.await(2));
+        assertEquals(0, snapshots.get());
+    }
+
+    @Test
+    void resumeFromBeforeTheRingGetsASnapshot() throws Exception {
+        ReflectionTestUtils.setField(broadcaster, "replayEvents", 2);
+        for (long v = 1; v <= 5; v++) rowUpdate(v, v);
+
+        Viewer behind = connect(boot + "-1");
+        Viewer otherProcess = connect("0-4");
+
+        assertEquals(List.of("SNAPSHOT 5"), behind.await(1));
+        assertEquals(List.of("SNAPSHOT 5"), otherProcess.await(1));
+    }
+
+    @Test
+    void overflowingViewerGetsOneSnapshotAndNothingItCovers() throws Exception {
+        ReflectionTestUtils.setField(broadcaster, "queueEvents", 2);
+        Viewer viewer = connect(null);
+        assertEquals(List.of("SNAPSHOT 0"), viewer.await(1));
+
+        // The viewer stalls writing version 1 while 2..5 arrive; its queue holds two
+        viewer.stallOnNextDelta();
+        rowUpdate(1, 1);
+        assertTrue(viewer.stalled.await(5, TimeUnit.SECONDS));
+        for (long v = 2; v <= 5; v++) rowUpdate(v, v);
+        viewer.resume();
+
+        assertEquals(List.of("SNAPSHOT 0", "ROW_UPDATE 1", "SNAPSHOT 5"), viewer.await(3));
+        rowUpdate(6, 6);
+        assertEquals(List.of("SNAPSHOT 0", "ROW_UPDATE 1", "SNAPSHOT 5", "ROW_UPDATE 6"), viewer.await(4));
+    }
+
+    @Test
+    void rowUpdatesWithinOneTickGoOutAsOneFrame() throws Exception {
+        Viewer viewer = connect(null);
+        assertEquals(List.of("SNAPSHOT 0"), viewer.await(1));
+
+        broadcaster.publish(new StandingsEvent("ROW_UPDATE", CONTEST, 1L, List.of(row(1, 1))));
+        broadcaster.publish(new StandingsEvent("ROW_UPDATE", CONTEST, 2L, List.of(row(2, 1))));
+        broadcaster.publish(new StandingsEvent("ROW_UPDATE", CONTEST, 3L, List.of(row(1, 2))));
+        broadcaster.flush();
+
+        assertEquals(List.of("SNAPSHOT 0", "ROW_UPDATE 3"), viewer.await(2));
+        StandingsEvent merged = viewer.event(1);
+        assertEquals(List.of(row(1, 2), row(2, 1)), merged.rows());
+    }
+
+    // ---------- Helpers ----------
+
+    private void rowUpdate(long version, long userId) {
+        boardVersion.set(version);
+        broadcaster.publish(new StandingsEvent("ROW_UPDATE", CONTEST, version, List.of(row(userId, (int) version))));
+        broadcaster.flush();
+    }
+
+    private static StandingRow row(long userId, int solved) {
+        return new StandingRow(userId, "user" + userId, solved, 0, null);
+    }
+
+    private Viewer connect(String lastEventId) throws Exception {
+        SseEmitter emitter = broadcaster.register(CONTEST, lastEventId, () -> {
+            snapshots.incrementAndGet();
+            return new StandingsDTO(CONTEST, boardVersion.get(), List.of(), List.of(), null, null, null, "RUNNING");
+        });
+        Viewer viewer = new Viewer();
+        viewer.attach(emitter);
+        return viewer;
+    }
+
+    /** Stands in for the HTTP response: records every frame the emitter writes. */
+    private final class Viewer {
+        final List<String> frames = Collections.synchronizedList(new ArrayList<>());
+        final CountDownLatch stalled = new CountDownLatch(1);
+        private final CountDownLatch resumed = new CountDownLatch(1);
+        private volatile boolean stallNext;
+
+        void attach(SseEmitter emitter) throws Exception {
+            Class<?> handlerType = Class.forName(
+                    "org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter$Handler");
+            Object handler = Proxy.newProxyInstance(handlerType.getClassLoader(), new Class<?>[] { handlerType },
+                    (_, method, args) -> {
+                        if (method.getName().equals("send") && args.length == 1) {
+                            for (Object part : (Set<?>) args[0]) sent((String) ((DataWithMediaType) part).getData());
+                        }
+                        return null;
+                    });
+            ReflectionTestUtils.invokeMethod(emitter, "initialize", handler);
+        }
+
+        void stallOnNextDelta() {
+            stallNext = true;
+        }
+
+        void resume() {
+            resumed.countDown();
+        }
+
+        private void sent(String frame) throws InterruptedException {
+            frames.add(frame);
+            if (stallNext && frame.contains("event:ROW_UPDATE")) {
+                stallNext = false;
+                stalled.countDown();
+                resumed.await(5, TimeUnit.SECONDS);
+            }
+        }
+
+        /** "TYPE version" of every frame once {@code count} have arrived, after a moment for strays. */
+        List<String> await(int count) throws Exception {
+            long deadline = System.currentTimeMillis() + 5_000;
+            while (frames.size() < count && System.currentTimeMillis() < deadline) Thread.sleep(10);
+            Thread.sleep(100);
+            List<String> seen = new ArrayList<>();
+            for (int i = 0; i < frames.size(); i++) {
+                StandingsEvent ev = event(i);
+                seen.add(ev.version() == null ? ev.type() : ev.type() + " " + ev.version());
+            }
+            return seen;
+        }
+
+        StandingsEvent event(int i) throws Exception {
+            String frame = frames.get(i);
+            Matcher type = EVENT.matcher(frame);
+            Matcher data = DATA.matcher(frame);
+            assertTrue(type.find() && data.find(), frame);
+            return objectMapper.readValue(data.group(1), StandingsEvent.class);
+        }
+    }
+}
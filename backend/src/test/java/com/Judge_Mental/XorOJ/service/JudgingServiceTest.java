@@ -0,0 +1,210 @@
+package com.Judge_Mental.XorOJ.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.IntStream;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.Judge_Mental.XorOJ.entity.GeneratorFile;
+import com.Judge_Mental.XorOJ.entity.Problem;
+import com.Judge_Mental.XorOJ.entity.Submission;
+import com.Judge_Mental.XorOJ.entity.Submission.SubmissionStatus;
+import com.Judge_Mental.XorOJ.entity.TestStat;
+import com.Judge_Mental.XorOJ.judge.BuiltinChecker;
+import com.Judge_Mental.XorOJ.judge.CancelToken;
+import com.Judge_Mental.XorOJ.judge.Checker;
+import com.Judge_Mental.XorOJ.judge.CppExecutor;
+import com.Judge_Mental.XorOJ.judge.CppExecutor.CompiledProgram;
+import com.Judge_Mental.XorOJ.judge.CppExecutor.JudgeVerdict;
+import com.Judge_Mental.XorOJ.repo.GeneratorFileRepository;
+import com.Judge_Mental.XorOJ.repo.TestFileRepository;
+
+class JudgingServiceTest {
+
+    private static final int TESTS = 6;
+    private static final int FAILING = 2;
+
+    private CppExecutor cppExecutor;
+    private TestStatsService testStatsService;
+    private JudgingService judgingService;
+    private final List<String> ran = Collections.synchronizedList(new ArrayList<>());
+
+    @BeforeEach
+    void setUp() throws Exception {
+        cppExecutor = mock(CppExecutor.class);
+        testStatsService = mock(TestStatsService.class);
+        ProblemBuildService problemBuildService = mock(ProblemBuildService.class);
+        when(problemBuildService.expectedOutput(any(), any(), any())).thenAnswer(inv -> inv.getArgument(2));
+
+        // Test FAILING is wrong; the statistics rank the tests in reverse, as if later ones reject often
+        when(cppExecutor.compareWithAnswer(any(), any(), any(), any(), anyLong(), anyLong(), anyLong(), anyLong(),
+                any(CancelToken.class))).thenAnswer(inv -> {
+                    String name = inv.<Path>getArgument(2).getFileName().toString();
+                    ran.add(name);
+                    return name.equals(FAILING + ".in")
+                            ? new JudgeVerdict(SubmissionStatus.WRONG_ANSWER, "wrong", 10, 10, 100)
+                            : new JudgeVerdict(SubmissionStatus.ACCEPTED, null, 10, 10, 100);
+                });
+        when(testStatsService.order(any(), any())).thenReturn(
+                IntStream.range(0, TESTS).map(i -> TESTS - 1 - i).boxed().toList());
+
+        judgingService = new JudgingService(cppExecutor);
+        ReflectionTestUtils.setField(judgingService, "problemBuildService", problemBuildService);
+        ReflectionTestUtils.setField(judgingService, "testStatsService", testStatsService);
+        ReflectionTestUtils.setField(judgingService, "adaptiveTestOrder", true);
+        ReflectionTestUtils.setField(judgingService, "tleReruns", 0);
+        judgingService.init();
+    }
+
+    @Test
+    void sequentialRunStopsAtFirstFailureInTestOrder() throws Exception {
+        ReflectionTestUtils.setField(judgingService, "parallelTests", 1);
+
+        JudgeVerdict verdict = run();
+
+        assertEquals(SubmissionStatus.WRONG_ANSWER, verdict.status);
+        // Only tests 0..FAILING run; the reverse statistics order would have run all six
+        assertEquals(List.of("0.in", "1.in", "2.in"), ran);
+        verify(testStatsService, never()).order(any(), any());
+    }
+
+    @Test
+    void parallelRunStillReportsLowestFailure() throws Exception {
+        ReflectionTestUtils.setField(judgingService, "parallelTests", 3);
+
+        JudgeVerdict verdict = run();
+
+        assertEquals(SubmissionStatus.WRONG_ANSWER, verdict.status);
+        verify(testStatsService).order(any(), any());
+    }
+
+    @Test
+    void wallClockKillUnderTheLimitIsNotRerun() throws Exception {
+        ReflectionTestUtils.setField(judgingService, "parallelTests", 1);
+        ReflectionTestUtils.setField(judgingService, "tleReruns", 2);
+        ReflectionTestUtils.setField(judgingService, "tleMargin", 0.1);
+        // Sleeps on test 0: stopped by the wall-clock cap with almost no CPU time used
+        when(cppExecutor.compareWithAnswer(any(), any(), any(), any(), anyLong(), anyLong(), anyLong(), anyLong(),
+                any(CancelToken.class))).thenAnswer(inv -> {
+                    ran.add(inv.<Path>getArgument(2).getFileName().toString());
+                    return new JudgeVerdict(SubmissionStatus.TIME_LIMIT_EXCEEDED, "wall-clock limit exceeded", 5, 4000, 100);
+                });
+
+        JudgeVerdict verdict = run();
+
+        assertEquals(SubmissionStatus.TIME_LIMIT_EXCEEDED, verdict.status);
+        assertEquals(List.of("0.in"), ran);
+    }
+
+    @Test
+    void cpuTimeJustOverTheLimitIsRerun() throws Exception {
+        ReflectionTestUtils.setField(judgingService, "parallelTests", 1);
+        ReflectionTestUtils.setField(judgingService, "tleReruns", 2);
+        ReflectionTestUtils.setField(judgingService, "tleMargin", 0.1);
+        when(cppExecutor.compareWithAnswer(any(), any(), any(), any(), anyLong(), anyLong(), anyLong(), anyLong(),
+                any(CancelToken.class))).thenAnswer(inv -> {
+                    ran.add(inv.<Path>getArgument(2).getFileName().toString());
+                    return new JudgeVerdict(SubmissionStatus.TIME_LIMIT_EXCEEDED, "time limit exceeded", 1050, 1100, 100);
+                });
+
+        JudgeVerdict verdict = run();
+
+        assertEquals(SubmissionStatus.TIME_LIMIT_EXCEEDED, verdict.status);
+        assertEquals(List.of("0.in", "0.in", "0.in"), ran);
+    }
+
+    @Test
+    void batchRunAcceptsOutputOverSixtyFourKilobytes(@TempDir Path dir) throws Exception {
+        ReflectionTestUtils.setField(judgingService, "parallelTests", 1);
+        ReflectionTestUtils.setField(judgingService, "batchTests", true);
+        byte[] output = "1 ".repeat(100 * 1024).getBytes(StandardCharsets.US_ASCII);
+        Path answer = Files.write(dir.resolve("big.out"), output);
+        ProblemBuildService problemBuildService = mock(ProblemBuildService.class);
+        when(problemBuildService.expectedOutput(any(), any(), any())).thenReturn(answer);
+        ReflectionTestUtils.setField(judgingService, "problemBuildService", problemBuildService);
+
+        // Checks the 200 KB output the way the batch sink does, under the limit it was given
+        List<Long> limits = new ArrayList<>();
+        when(cppExecutor.judgeBatch(any(), any(), any(), any(), anyInt(), anyInt(), anyInt(), anyLong(),
+                any(CancelToken.class), any())).thenAnswer(inv -> {
+                    long limit = inv.getArgument(7);
+                    limits.add(limit);
+                    List<Path> inputs = inv.getArgument(2);
+                    for (int p = 0; p < inputs.size(); p++) {
+                        Checker.Session session = BuiltinChecker.parse(BuiltinChecker.DEFAULT_SPEC)
+                                .begin(inputs.get(p), answer, limit);
+                        session.write(output, 0, output.length);
+                        session.close();
+                        JudgeVerdict v = session.limitExceeded()
+                                ? new JudgeVerdict(SubmissionStatus.OUTPUT_LIMIT_EXCEEDED, "too much", 10, 10, 100)
+                                : new JudgeVerdict(SubmissionStatus.ACCEPTED, null, 10, 10, 100);
+                        session.dispose();
+                        if (!inv.<CppExecutor.BatchVerdicts>getArgument(9).accept(p, v)) return p + 1;
+                    }
+                    return inputs.size();
+                });
+
+        JudgeVerdict verdict = run(BuiltinChecker.parse(BuiltinChecker.DEFAULT_SPEC));
+
+        assertNull(verdict);
+        assertEquals(List.of(64L * 1024 * 1024), limits);
+    }
+
+    @Test
+    void longGeneratorArgumentsFitTheStatisticsKey() {
+        Problem problem = new Problem();
+        problem.setId(1L);
+        GeneratorFile generator = new GeneratorFile(3, "gen.cpp", "gen.cpp", problem);
+        String longArgs = "--n 200000 --pattern " + "ab".repeat(100);
+        generator.setSeeds("1\n" + longArgs + "\n" + longArgs + " x");
+        GeneratorFileRepository generators = mock(GeneratorFileRepository.class);
+        when(generators.findByProblemId(1L)).thenReturn(List.of(generator));
+        ReflectionTestUtils.setField(judgingService, "generatorFileRepository", generators);
+        ReflectionTestUtils.setField(judgingService, "testFileRepository", mock(TestFileRepository.class));
+
+        List<JudgingService.TestCase> tests = judgingService.buildTestPlan(problem, false);
+
+        assertEquals(3, tests.size());
+        assertEquals("generator 3 (" + longArgs + ")", tests.get(1).label());
+        assertTrue(tests.stream().allMatch(t -> t.key().length() <= TestStat.KEY_LENGTH));
+        assertEquals(3, tests.stream().map(JudgingService.TestCase::key).distinct().count());
+    }
+
+    private JudgeVerdict run() throws InterruptedException {
+        return run(mock(Checker.class));
+    }
+
+    private JudgeVerdict run(Checker checker) throws InterruptedException {
+        Problem problem = new Problem();
+        problem.setId(1L);
+        problem.setTimeLimit(1000);
+        problem.setMemoryLimit(256);
+        problem.setOutputLimit(Problem.DEFAULT_OUTPUT_LIMIT_MB);
+        List<JudgingService.TestCase> tests = new ArrayList<>();
+        for (int i = 0; i < TESTS; i++) {
+            Path input = Path.of(i + ".in");
+            tests.add(new JudgingService.TestCase("test " + i, () -> input));
+        }
+        return judgingService.runTests(problem, mock(CompiledProgram.class), mock(CompiledProgram.class),
+                checker, tests, new Submission());
+    }
+}
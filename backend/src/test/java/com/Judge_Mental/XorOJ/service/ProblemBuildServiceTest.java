@@ -0,0 +1,56 @@
+package com.Judge_Mental.XorOJ.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.Judge_Mental.XorOJ.entity.Problem;
+import com.Judge_Mental.XorOJ.judge.CheckerRegistry;
+import com.Judge_Mental.XorOJ.judge.CppExecutor;
+import com.Judge_Mental.XorOJ.judge.CppExecutor.CompiledProgram;
+import com.Judge_Mental.XorOJ.judge.CppExecutor.RunResult;
+import com.Judge_Mental.XorOJ.repo.GeneratorFileRepository;
+import com.Judge_Mental.XorOJ.repo.ProblemRepository;
+import com.Judge_Mental.XorOJ.repo.TestFileRepository;
+
+class ProblemBuildServiceTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void inputHashIsLookedUpUntilTheTestSetVersionChanges() throws Exception {
+        CppExecutor cppExecutor = mock(CppExecutor.class);
+        when(cppExecutor.runToFile(any(), any(), any(), anyInt(), anyInt())).thenReturn(mock(RunResult.class));
+        ProblemBuildService service = new ProblemBuildService(cppExecutor, mock(CheckerRegistry.class),
+                mock(ProblemRepository.class), mock(TestFileRepository.class), mock(GeneratorFileRepository.class),
+                mock(VerdictCache.class));
+        ReflectionTestUtils.setField(service, "uploadDir", dir.resolve("uploads").toString());
+        CompiledProgram mainSolution = mock(CompiledProgram.class);
+        ReflectionTestUtils.setField(mainSolution, "sourceHash", "main");
+
+        Problem problem = new Problem();
+        problem.setId(1L);
+        problem.setTimeLimit(1000);
+        problem.setMemoryLimit(256);
+        Path input = Files.writeString(dir.resolve("1.in"), "1 2\n");
+        Path answer = service.expectedOutput(problem, mainSolution, input);
+
+        // Within a version the hash is not recomputed; files only change together with a bump
+        Files.writeString(input, "3 4\n");
+        assertEquals(answer, service.expectedOutput(problem, mainSolution, input));
+
+        problem.setTestSetVersion(1);
+        assertNotEquals(answer, service.expectedOutput(problem, mainSolution, input));
+    }
+}
@@ -0,0 +1,76 @@
+package com.Judge_Mental.XorOJ.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.when;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Optional;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import com.Judge_Mental.XorOJ.entity.Problem;
+import com.Judge_Mental.XorOJ.judge.BuiltinChecker;
+import com.Judge_Mental.XorOJ.judge.Checker;
+import com.Judge_Mental.XorOJ.repo.ProblemContributorRepository;
+import com.Judge_Mental.XorOJ.repo.ProblemRepository;
+import com.Judge_Mental.XorOJ.repo.XUserRepository;
+
+@ExtendWith(MockitoExtension.class)
+class ProblemServiceTest {
+
+    @Mock
+    private ProblemRepository problemRepo;
+
+    @Mock
+    private XUserRepository xuserRepo;
+
+    @Mock
+    private ProblemContributorRepository problemContributorRepo;
+
+    @InjectMocks
+    private ProblemService problemService;
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void newProblemAcceptsCorrectOutput() throws Exception {
+        when(problemRepo.save(any(Problem.class))).thenAnswer(inv -> inv.getArgument(0));
+        when(xuserRepo.findById(7L)).thenReturn(Optional.empty());
+
+        // Same shape the editor posts: no outputLimit field at all
+        Problem form = new Problem();
+        form.setTitle("A + B");
+        Problem created = problemService.createProblem(form, 7L);
+
+        assertEquals(Problem.DEFAULT_OUTPUT_LIMIT_MB, created.getOutputLimit());
+        assertEquals(64L * 1024 * 1024, JudgingService.outputLimitBytes(created));
+
+        Path answer = Files.writeString(dir.resolve("1.out"), "3\n");
+        Checker.Session session = BuiltinChecker.parse(BuiltinChecker.DEFAULT_SPEC)
+                .begin(dir.resolve("1.in"), answer, JudgingService.outputLimitBytes(created));
+        byte[] out = "3\n".getBytes(StandardCharsets.US_ASCII);
+        assertTrue(session.write(out, 0, out.length));
+
+        assertFalse(session.limitExceeded());
+        assertEquals(Checker.Outcome.ACCEPTED, session.verdict().outcome());
+    }
+
+    @Test
+    void problemSavedWithZeroLimitFallsBackToDefault() {
+        Problem legacy = new Problem();
+        legacy.setOutputLimit(0);
+
+        assertEquals(64L * 1024 * 1024, JudgingService.outputLimitBytes(legacy));
+    }
+}
@@ -0,0 +1,91 @@
+package com.Judge_Mental.XorOJ.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+class RankIndexTest {
+
+    private record Row(long userId, String name, int solved, int penalty) {}
+
+    private static final Comparator<Row> ICPC = Comparator
+            .comparingInt((Row r) -> -r.solved())
+            .thenComparingInt(Row::penalty)
+            .thenComparing(Row::name, String.CASE_INSENSITIVE_ORDER)
+            .thenComparingLong(Row::userId);
+
+    private final RankIndex index = new RankIndex();
+    private final Map<Long, Row> rows = new HashMap<>();
+
+    @Test
+    void namesArrivingInOrderKeepTheBoardSorted() {
+        Random random = new Random(7);
+        // Registration order is often alphabetical: every new name lands after the previous one
+        for (int i = 0; i < 3000; i++) {
+            upsert(i, String.format("team%05d", i), random.nextInt(5), random.nextInt(300));
+        }
+        for (int i = 2999; i >= 2000; i--) {
+            upsert(10_000 + i, String.format("Team%05d", i), random.nextInt(5), random.nextInt(300));
+        }
+        assertBoard();
+    }
+
+    @Test
+    void namesSqueezedBetweenTheSameNeighboursKeepTheBoardSorted() {
+        upsert(1, "a", 0, 0);
+        upsert(2, "b", 0, 0);
+        // "a" < "aa" < "aaa" < ... < "b": always the same gap, halved every time
+        StringBuilder name = new StringBuilder("a");
+        for (int i = 0; i < 500; i++) {
+            upsert(100 + i, name.append('a').toString(), i % 3, 0);
+        }
+        assertBoard();
+    }
+
+    @Test
+    void renamesAndScoreChangesMoveRows() {
+        Random random = new Random(11);
+        for (int i = 0; i < 500; i++) upsert(i, "user" + random.nextInt(1000), 0, 0);
+        for (int step = 0; step < 5000; step++) {
+            long user = random.nextInt(500);
+            Row r = rows.get(user);
+            if (random.nextBoolean()) upsert(user, "user" + random.nextInt(1000), r.solved(), r.penalty());
+            else upsert(user, r.name(), r.solved() + 1, r.penalty() + random.nextInt(60));
+        }
+        assertBoard();
+    }
+
+    @Test
+    void manyAlphabeticalArrivalsStayFast() {
+        assertTimeoutPreemptively(Duration.ofSeconds(20), () -> {
+            for (int i = 0; i < 100_000; i++) index.upsert(i, String.format("u%06d", i), 0, 0);
+        });
+        assertEquals(1, index.rank(0));
+        assertEquals(100_000, index.rank(99_999));
+    }
+
+    private void upsert(long userId, String name, int solved, int penalty) {
+        rows.put(userId, new Row(userId, name, solved, penalty));
+        index.upsert(userId, name, solved, penalty);
+    }
+
+    private void assertBoard() {
+        List<Row> expected = new ArrayList<>(rows.values());
+        expected.sort(ICPC);
+        List<Long> actual = new ArrayList<>();
+        index.forEachInOrder(actual::add);
+        assertEquals(expected.stream().map(Row::userId).toList(), actual);
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(i + 1, index.rank(expected.get(i).userId()));
+        }
+    }
+}
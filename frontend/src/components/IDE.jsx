@@ -49,6 +49,7 @@ n = int(data[0])
   const [stdinText, setStdinText] = useState(initialStdin);
   const [isRunning, setIsRunning] = useState(false);
   const [isSubmitting, setIsSubmitting] = useState(false);
+  const [submitPhase, setSubmitPhase] = useState(""); // "" | "Submitting…" | "Judging…"
   const [error, setError] = useState("");
   const [result, setResult] = useState(null);
   const [showExtras, setShowExtras] = useState(true);
@@ -77,8 +78,8 @@ n = int(data[0])
   const normalizeResult = (d) => ({
     stdout: d?.stdout ?? d?.out ?? "",
     stderr: d?.stderr ?? d?.error ?? "",
-    time: d?.timeused ?? d?.timeUsedMillis ?? d?.time_ms ?? "",
-    memory: d?.memoryused ?? d?.memoryUsedKB ?? d?.memory_kb ?? "",
+    time: d?.timeused ?? d?.timeUsedMillis ?? d?.executionTime ?? d?.time_ms ?? "",
+    memory: d?.memoryused ?? d?.memoryUsedKB ?? d?.memoryUsed ?? d?.memory_kb ?? "",
   });
 
   const runCode = useCallback(async () => {
@@ -106,9 +107,21 @@ n = int(data[0])
     }
   }, [canRun, code, language, stdinText, endpointRun, onResult]);
 
+  // Submissions are judged in the background: the submit call returns { submissionId, status }
+  // and the verdict is polled from GET /api/submissions/{id} until it is no longer pending.
+  const waitForVerdict = async (submissionId) => {
+    for (let i = 0; i < VERDICT_POLL_LIMIT; i++) {
+      await new Promise((r) => setTimeout(r, VERDICT_POLL_MS));
+      const s = await apiFetch(`/api/submissions/${submissionId}`);
+      if (s?.status && !PENDING_STATUSES.includes(s.status)) return s;
+    }
+    throw new Error("Judging is taking longer than expected; check your submissions page for the verdict");
+  };
+
   const submitCode = useCallback(async () => {
     if (!canRun) return;
     setIsSubmitting(true);
+    setSubmitPhase("Submitting…");
     setError("");
     setResult(null);
     try {
@@ -120,16 +133,20 @@ n = int(data[0])
           language,
         }),
       });
-      const normalized = normalizeResult(data);
+      setSubmitPhase("Judging…");
+      const judged = PENDING_STATUSES.includes(data?.status)
+        ? await waitForVerdict(data.submissionId)
+        : { id: data?.submissionId, status: data?.status };
+      const normalized = { ...normalizeResult(judged), verdict: judged.status };
       setResult(normalized);
       onResult?.(normalized);
-      // Show success notification
-      alert("Submission successful!");
+      alert("Verdict: " + formatVerdict(judged.status));
     } catch (e) {
       setError(e?.message || "Submission failed");
       alert("Submission failed: " + (e?.message || "Unknown error"));
     } finally {
       setIsSubmitting(false);
+      setSubmitPhase("");
     }
   }, [canRun, code, language, stdinText, endpointSubmit, onResult]);
 
@@ -179,7 +196,7 @@ n = int(data[0])
                 loading={isSubmitting}
                 className={`px-3 py-1 w-full sm:w-auto ${canRun ? "bg-green-600 text-white hover:bg-green-700" : ""}`}
               >
-                {isSubmitting ? "Submitting…" : "Submit"}
+                {isSubmitting ? submitPhase || "Submitting…" : "Submit"}
               </Button>
             )}
           </div>
@@ -217,7 +234,14 @@ n = int(data[0])
           <section className="grid grid-cols-1 lg:grid-cols-2 gap-4 pb-4">
             <div className="space-y-2">
               <div className="flex items-center justify-between">
-                <h2 className="font-semibold">Output</h2>
+                <h2 className="font-semibold">
+                  Output
+                  {result?.verdict && (
+                    <span className="ml-2 text-xs font-normal text-gray-600">
+                      verdict: <span className="font-mono">{formatVerdict(result.verdict)}</span>
+                    </span>
+                  )}
+                </h2>
                 <Metrics result={result} />
               </div>
               <pre className="w-full h-24 sm:h-32 border rounded p-3 overflow-auto whitespace-pre-wrap text-sm">
@@ -261,6 +285,14 @@ n = int(data[0])
   );
 }
 
+const PENDING_STATUSES = ["PENDING", "RUNNING"];
+const VERDICT_POLL_MS = 1000;
+const VERDICT_POLL_LIMIT = 300;
+
+function formatVerdict(status) {
+  return String(status ?? "").replaceAll("_", " ");
+}
+
 function Metrics({ result }) {
   if (!result) return <div className="text-xs text-gray-500">time: — | memory: —</div>;
   return (